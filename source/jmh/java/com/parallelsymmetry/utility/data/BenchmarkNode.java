@@ -0,0 +1,16 @@
+package com.parallelsymmetry.utility.data;
+
+/**
+ * A plain data node for benchmarks. Unlike the mock data nodes it does not
+ * record the events it receives.
+ */
+public class BenchmarkNode extends DataNode {
+
+	public BenchmarkNode() {}
+
+	public BenchmarkNode( String name ) {
+		setAttribute( "name", name );
+		setModified( false );
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of setting and getting an attribute on a node without
+ * data listeners. The node has a varying number of attributes and the last one
+ * is changed, which is the worst case for the attribute store scan.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DataAttributeBenchmark {
+
+	@Param( { "1", "8", "32" } )
+	private int attributeCount;
+
+	private BenchmarkNode node;
+
+	private String key;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		node = new BenchmarkNode();
+		for( int index = 0; index < attributeCount; index++ ) {
+			key = "attribute-" + index;
+			node.setAttribute( key, index );
+		}
+		node.setModified( false );
+	}
+
+	@Benchmark
+	public void setAttribute() {
+		node.setAttribute( key, value++ );
+	}
+
+	@Benchmark
+	public Object getAttribute() {
+		return node.getAttribute( key );
+	}
+
+}
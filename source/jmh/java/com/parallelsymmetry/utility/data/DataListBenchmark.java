@@ -0,0 +1,76 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures single child inserts and removes on large data lists, at the end,
+ * at the front and in the middle of the list. Each benchmark restores the list
+ * so the size stays the same.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DataListBenchmark {
+
+	@Param( { "1000", "100000" } )
+	private int size;
+
+	@Param( { "false", "true" } )
+	private boolean indexed;
+
+	private DataList<BenchmarkNode> list;
+
+	private BenchmarkNode extra;
+
+	private BenchmarkNode middle;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		List<BenchmarkNode> nodes = new ArrayList<BenchmarkNode>( size );
+		for( int index = 0; index < size; index++ ) {
+			nodes.add( new BenchmarkNode( "node-" + index ) );
+		}
+		list = new DataList<BenchmarkNode>( nodes );
+		list.setIndexed( indexed );
+		middle = nodes.get( size / 2 );
+		extra = new BenchmarkNode( "extra" );
+	}
+
+	@Benchmark
+	public void addAndRemoveLast() {
+		list.add( extra );
+		list.remove( extra );
+	}
+
+	@Benchmark
+	public void addAndRemoveFirst() {
+		list.add( 0, extra );
+		list.remove( extra );
+	}
+
+	@Benchmark
+	public void removeAndAddMiddle() {
+		int index = list.indexOf( middle );
+		list.remove( middle );
+		list.add( index, middle );
+	}
+
+}
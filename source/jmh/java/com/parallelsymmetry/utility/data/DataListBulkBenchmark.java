@@ -0,0 +1,70 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures loading children into an empty data list, one operation per child
+ * in a single transaction compared to one bulk operation.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class DataListBulkBenchmark {
+
+	@Param( { "1000", "10000", "100000" } )
+	private int count;
+
+	private List<BenchmarkNode> nodes;
+
+	@Setup( Level.Invocation )
+	public void setup() {
+		nodes = new ArrayList<BenchmarkNode>( count );
+		for( int index = 0; index < count; index++ ) {
+			nodes.add( new BenchmarkNode( "node-" + index ) );
+		}
+	}
+
+	@Benchmark
+	public DataList<BenchmarkNode> addInTransaction() {
+		DataList<BenchmarkNode> list = new DataList<BenchmarkNode>();
+		Transaction.create();
+		for( BenchmarkNode node : nodes ) {
+			list.add( node );
+		}
+		Transaction.commit();
+		return list;
+	}
+
+	@Benchmark
+	public DataList<BenchmarkNode> addAll() {
+		DataList<BenchmarkNode> list = new DataList<BenchmarkNode>();
+		list.addAll( nodes );
+		return list;
+	}
+
+	@Benchmark
+	public DataList<BenchmarkNode> removeAll() {
+		DataList<BenchmarkNode> list = new DataList<BenchmarkNode>( nodes );
+		list.removeAll( nodes.subList( 0, count / 2 ) );
+		return list;
+	}
+
+}
@@ -0,0 +1,75 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures membership lookups and batch removal on a large data list with and
+ * without the child index.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DataListIndexBenchmark {
+
+	private static final int BATCH_SIZE = 100;
+
+	@Param( { "50000" } )
+	private int size;
+
+	@Param( { "false", "true" } )
+	private boolean indexed;
+
+	private DataList<BenchmarkNode> list;
+
+	private List<BenchmarkNode> batch;
+
+	private int next;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		list = new DataList<BenchmarkNode>();
+		list.setIndexed( indexed );
+		List<BenchmarkNode> nodes = new ArrayList<BenchmarkNode>( size );
+		for( int index = 0; index < size; index++ ) {
+			nodes.add( new BenchmarkNode( "node-" + index ) );
+		}
+		list.addAll( nodes );
+		list.setModified( false );
+
+		batch = new ArrayList<BenchmarkNode>( BATCH_SIZE );
+		for( int index = 0; index < BATCH_SIZE; index++ ) {
+			batch.add( list.get( index * ( size / BATCH_SIZE ) ) );
+		}
+	}
+
+	@Benchmark
+	public int indexOf() {
+		next = ( next + 7919 ) % size;
+		return list.indexOf( list.get( next ) );
+	}
+
+	@Benchmark
+	public void removeAndAddBatch() {
+		list.removeAll( batch );
+		list.addAll( batch );
+	}
+
+}
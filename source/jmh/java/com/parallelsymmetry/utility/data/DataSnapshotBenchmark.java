@@ -0,0 +1,74 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a reader scanning a snapshot of a large tree while a writer edits
+ * the tree. Each scan takes a new snapshot so only the path to the last edit
+ * is created again.
+ */
+@State( Scope.Group )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class DataSnapshotBenchmark {
+
+	private static final int LIST_COUNT = 1000;
+
+	private static final int NODE_COUNT = 10;
+
+	private DataList<DataList<BenchmarkNode>> root;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		root = new DataList<DataList<BenchmarkNode>>();
+		for( int index = 0; index < LIST_COUNT; index++ ) {
+			DataList<BenchmarkNode> list = new DataList<BenchmarkNode>();
+			for( int node = 0; node < NODE_COUNT; node++ ) {
+				list.add( new BenchmarkNode( "node-" + node ) );
+			}
+			root.add( list );
+		}
+		root.setModified( false );
+	}
+
+	@Benchmark
+	@Group( "edit" )
+	@GroupThreads( 1 )
+	public void write() {
+		int index = value++;
+		root.get( index % LIST_COUNT ).get( index % NODE_COUNT ).setAttribute( "value", index );
+	}
+
+	@Benchmark
+	@Group( "edit" )
+	@GroupThreads( 1 )
+	public int scan() {
+		int count = 0;
+		for( DataSnapshot list : root.getSnapshot().getChildren() ) {
+			for( DataSnapshot node : list.getChildren() ) {
+				count += node.getAttributeCount();
+			}
+		}
+		return count;
+	}
+
+}
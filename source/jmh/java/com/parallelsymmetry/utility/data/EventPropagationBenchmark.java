@@ -0,0 +1,63 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of changing an attribute on the leaf of a deep chain of
+ * nodes. The change event travels up to the root so the cost depends on the
+ * depth of the chain and on which of the ancestors have data listeners. Run
+ * with the GC profiler, for example -Djmh.args="EventPropagation -prof gc", to
+ * see the allocation per change.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EventPropagationBenchmark {
+
+	@Param( { "10", "50" } )
+	private int depth;
+
+	@Param( { "none", "root", "all" } )
+	private String listeners;
+
+	private BenchmarkNode leaf;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		BenchmarkNode root = new BenchmarkNode( "root" );
+		BenchmarkNode parent = root;
+		for( int level = 1; level < depth; level++ ) {
+			BenchmarkNode child = new BenchmarkNode( "node-" + level );
+			parent.setAttribute( "child", child );
+			if( "all".equals( listeners ) ) child.addDataListener( new DataAdapter() );
+			parent = child;
+		}
+		if( !"none".equals( listeners ) ) root.addDataListener( new DataAdapter() );
+		root.setModified( false );
+		leaf = parent;
+	}
+
+	@Benchmark
+	public void setAttribute() {
+		leaf.setAttribute( "value", value++ );
+	}
+
+}
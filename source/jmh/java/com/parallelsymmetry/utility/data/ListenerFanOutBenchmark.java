@@ -0,0 +1,51 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of changing an attribute on a node with a varying number of
+ * synchronous data listeners. Each change delivers an attribute event, a
+ * modified event and a changed event to every listener.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ListenerFanOutBenchmark {
+
+	@Param( { "0", "1", "10", "100" } )
+	private int listenerCount;
+
+	private BenchmarkNode node;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		node = new BenchmarkNode( "node" );
+		for( int index = 0; index < listenerCount; index++ ) {
+			node.addDataListener( new DataAdapter() );
+		}
+	}
+
+	@Benchmark
+	public void setAttribute() {
+		node.setAttribute( "value", value++ );
+	}
+
+}
@@ -0,0 +1,66 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the overhead of nested transactions. Transaction.create( true )
+ * pushes a new transaction for each level while Transaction.create() joins the
+ * current transaction, so the difference between the two is the cost of the
+ * extra transactions and commits.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class NestedTransactionBenchmark {
+
+	@Param( { "1", "4", "16" } )
+	private int depth;
+
+	private BenchmarkNode node;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		node = new BenchmarkNode( "node" );
+	}
+
+	@Benchmark
+	public void nested() {
+		for( int level = 0; level < depth; level++ ) {
+			Transaction.create( true );
+			node.setAttribute( "value", value++ );
+		}
+		for( int level = 0; level < depth; level++ ) {
+			Transaction.commit();
+		}
+	}
+
+	@Benchmark
+	public void joined() {
+		for( int level = 0; level < depth; level++ ) {
+			Transaction.create();
+			node.setAttribute( "value", value++ );
+		}
+		for( int level = 0; level < depth; level++ ) {
+			Transaction.commit();
+		}
+	}
+
+}
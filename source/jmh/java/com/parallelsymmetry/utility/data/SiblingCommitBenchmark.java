@@ -0,0 +1,76 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures one transaction that changes an attribute on each of 10,000 sibling
+ * nodes under the leaf of a deep chain of data lists. Submitting the edits and
+ * updating the modified state of the shared ancestors are both part of the
+ * measured time.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SiblingCommitBenchmark {
+
+	private static final int SIBLING_COUNT = 10000;
+
+	@Param( { "10", "50" } )
+	private int depth;
+
+	@Param( { "false", "true" } )
+	private boolean listeners;
+
+	private DataList<DataNode> root;
+
+	private List<BenchmarkNode> siblings;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		root = new DataList<DataNode>();
+		DataList<DataNode> parent = root;
+		for( int level = 1; level < depth; level++ ) {
+			DataList<DataNode> child = new DataList<DataNode>();
+			parent.add( child );
+			if( listeners ) child.addDataListener( new DataAdapter() );
+			parent = child;
+		}
+
+		siblings = new ArrayList<BenchmarkNode>( SIBLING_COUNT );
+		for( int index = 0; index < SIBLING_COUNT; index++ ) {
+			siblings.add( new BenchmarkNode( "node-" + index ) );
+		}
+		parent.addAll( siblings );
+		root.setModified( false );
+	}
+
+	@Benchmark
+	public void commit() {
+		Transaction.create();
+		for( BenchmarkNode node : siblings ) {
+			node.setAttribute( "value", value++ );
+		}
+		Transaction.commit();
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of one transaction as the number of operations in the
+ * transaction grows. Each operation changes an attribute on a different child
+ * of one data list so the cost per operation should stay flat.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TransactionCommitBenchmark {
+
+	@Param( { "1", "10", "100", "1000", "10000" } )
+	private int operationCount;
+
+	private BenchmarkNode[] nodes;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		DataList<BenchmarkNode> list = new DataList<BenchmarkNode>();
+		nodes = new BenchmarkNode[operationCount];
+		for( int index = 0; index < operationCount; index++ ) {
+			nodes[index] = new BenchmarkNode( "node-" + index );
+		}
+		list.addAll( Arrays.asList( nodes ) );
+		list.setModified( false );
+	}
+
+	@Benchmark
+	public void commit() {
+		Transaction.create();
+		for( BenchmarkNode node : nodes ) {
+			node.setAttribute( "value", value++ );
+		}
+		Transaction.commit();
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures commit throughput with a fixed number of threads editing a varying
+ * number of independent trees. With one tree every commit contends for the
+ * same commit stripe. As the number of trees approaches the number of threads
+ * the commits should proceed in parallel and the throughput should scale.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 8 )
+public class TransactionContentionBenchmark {
+
+	@Param( { "1", "2", "4", "8" } )
+	private int treeCount;
+
+	private DataList<BenchmarkNode>[] trees;
+
+	private final AtomicInteger threadIndex = new AtomicInteger();
+
+	@Setup( Level.Trial )
+	@SuppressWarnings( "unchecked" )
+	public void setup() {
+		trees = new DataList[treeCount];
+		for( int index = 0; index < treeCount; index++ ) {
+			DataList<BenchmarkNode> tree = new DataList<BenchmarkNode>();
+			for( int child = 0; child < 8; child++ ) {
+				tree.add( new BenchmarkNode( "node-" + child ) );
+			}
+			tree.setModified( false );
+			trees[index] = tree;
+		}
+	}
+
+	@State( Scope.Thread )
+	public static class Editor {
+
+		private BenchmarkNode node;
+
+		private int value;
+
+		@Setup( Level.Trial )
+		public void setup( TransactionContentionBenchmark benchmark ) {
+			int index = benchmark.threadIndex.getAndIncrement();
+			DataList<BenchmarkNode> tree = benchmark.trees[index % benchmark.treeCount];
+			node = tree.get( ( index / benchmark.treeCount ) % tree.size() );
+		}
+
+	}
+
+	@Benchmark
+	public void commit( Editor editor ) {
+		editor.node.setAttribute( "value", editor.value++ );
+	}
+
+}
@@ -0,0 +1,74 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares a deep tree, a chain of data lists, with a wide tree, one data list
+ * with all the nodes as children, holding the same number of nodes. A change
+ * to the deepest or last node travels up to the root and clearing the modified
+ * flag walks down from the root.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TreeShapeBenchmark {
+
+	private static final int NODE_COUNT = 1000;
+
+	@Param( { "deep", "wide" } )
+	private String shape;
+
+	private DataList<DataNode> root;
+
+	private DataNode leaf;
+
+	private int value;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		root = new DataList<DataNode>();
+		if( "deep".equals( shape ) ) {
+			DataList<DataNode> parent = root;
+			for( int index = 1; index < NODE_COUNT; index++ ) {
+				DataList<DataNode> child = new DataList<DataNode>();
+				parent.add( child );
+				parent = child;
+			}
+			leaf = parent;
+		} else {
+			for( int index = 1; index < NODE_COUNT; index++ ) {
+				leaf = new BenchmarkNode( "node-" + index );
+				root.add( leaf );
+			}
+		}
+		root.setModified( false );
+	}
+
+	@Benchmark
+	public void modifyLeaf() {
+		leaf.setAttribute( "value", value++ );
+	}
+
+	@Benchmark
+	public void modifyLeafAndUnmodify() {
+		leaf.setAttribute( "value", value++ );
+		root.setModified( false );
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of a high rate event source, such as progress
+ * updates, with a listener that receives one event per call, a batch listener
+ * and a listener on a coalescing queue. The source posts updates for a small
+ * number of keys and each invocation posts a burst of events and waits for the
+ * event bus to deliver them.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EventBusBatchBenchmark {
+
+	private static final int BURST = 1024;
+
+	private static final int KEYS = 16;
+
+	@Param( { "single", "batch", "coalesce" } )
+	private String delivery;
+
+	private EventBus bus;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		bus = new EventBus();
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.OFF );
+		if( "batch".equals( delivery ) ) {
+			bus.addEventListener( new BatchEventListener<UpdateEvent>() {
+
+				private long total;
+
+				@Override
+				public void eventsOccurred( List<UpdateEvent> events ) {
+					for( UpdateEvent event : events ) {
+						total += event.value;
+					}
+				}
+
+			}, UpdateEvent.class );
+		} else {
+			bus.addEventListener( new EventListener<UpdateEvent>() {
+
+				private long total;
+
+				@Override
+				public void eventOccurred( UpdateEvent event ) {
+					total += event.value;
+				}
+
+			}, UpdateEvent.class );
+		}
+		if( "coalesce".equals( delivery ) ) bus.setQueueCapacity( EventBus.DEFAULT_QUEUE_NAME, Integer.MAX_VALUE, EventBus.OverflowPolicy.COALESCE );
+		bus.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		bus.stopAndWait();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( BURST )
+	public void post() {
+		for( int index = 0; index < BURST; index++ ) {
+			bus.submit( new UpdateEvent( this, index % KEYS, index ) );
+		}
+		bus.eventWait();
+	}
+
+	private static class UpdateEvent extends Event {
+
+		private final Integer key;
+
+		private final int value;
+
+		public UpdateEvent( Object source, int key, int value ) {
+			super( source );
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public Object getCoalescingKey() {
+			return key;
+		}
+
+	}
+
+}
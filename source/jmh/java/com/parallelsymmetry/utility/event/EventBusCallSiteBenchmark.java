@@ -0,0 +1,77 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures event submission throughput for each call site policy. The events
+ * are submitted from a number of frames below the benchmark method because the
+ * cost of capturing the full stack trace grows with the depth of the stack
+ * while the lightweight policy only walks the first few frames.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EventBusCallSiteBenchmark {
+
+	private static final int BATCH = 1024;
+
+	@Param( { "OFF", "SAMPLED", "LIGHTWEIGHT", "FULL" } )
+	private String policy;
+
+	@Param( { "16", "256" } )
+	private int depth;
+
+	private EventBus bus;
+
+	private int count;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		bus = new EventBus();
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.valueOf( policy ) );
+		bus.addEventListener( new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {}
+
+		} );
+		bus.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		bus.stopAndWait();
+	}
+
+	@Benchmark
+	public void submit() {
+		submit( depth );
+		if( ++count % BATCH == 0 ) bus.eventWait();
+	}
+
+	private void submit( int depth ) {
+		if( depth > 0 ) {
+			submit( depth - 1 );
+		} else {
+			bus.submit( new Event( this ) );
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of a telemetry feed of samples that are a type id and
+ * a long value, submitted as an event object for each sample or published to a
+ * ring buffer channel. Each invocation posts a burst of samples and waits for
+ * the event bus to deliver them. Run with -prof gc to compare the allocation
+ * rate.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EventBusChannelBenchmark {
+
+	private static final int BURST = 1024;
+
+	private static final String QUEUE_NAME = "telemetry";
+
+	@Param( { "event", "channel" } )
+	private String delivery;
+
+	private EventBus bus;
+
+	private RingBufferChannel channel;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		bus = new EventBus();
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.OFF );
+		bus.addEventListener( new EventListener<SampleEvent>() {
+
+			private long total;
+
+			@Override
+			public void eventOccurred( SampleEvent event ) {
+				total += event.value;
+			}
+
+		}, QUEUE_NAME, SampleEvent.class );
+		bus.addEventListener( new EventListener<RingBufferEvent>() {
+
+			private long total;
+
+			@Override
+			public void eventOccurred( RingBufferEvent event ) {
+				total += event.getLong( 0 );
+			}
+
+		}, QUEUE_NAME, RingBufferEvent.class );
+
+		channel = new RingBufferChannel( 4096, 1, 0 );
+		bus.setChannel( QUEUE_NAME, channel );
+		bus.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		bus.stopAndWait();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation( BURST )
+	public void post() {
+		if( "channel".equals( delivery ) ) {
+			for( int index = 0; index < BURST; index++ ) {
+				channel.publish( 1, index );
+			}
+		} else {
+			for( int index = 0; index < BURST; index++ ) {
+				bus.submit( new SampleEvent( this, 1, index ), QUEUE_NAME );
+			}
+		}
+		bus.eventWait( QUEUE_NAME );
+	}
+
+	private static class SampleEvent extends Event {
+
+		private final int type;
+
+		private final long value;
+
+		public SampleEvent( Object source, int type, long value ) {
+			super( source );
+			this.type = type;
+			this.value = value;
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures event delivery throughput with listeners registered for each class
+ * in a three level event class hierarchy. Each benchmark invocation submits a
+ * batch of events and waits for them to be delivered so the cost of selecting
+ * the listeners on the event bus thread is included.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EventBusDispatchBenchmark {
+
+	private static final int BATCH = 256;
+
+	@Param( { "1", "10" } )
+	private int listenersPerClass;
+
+	private EventBus bus;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		bus = new EventBus();
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.OFF );
+		for( int index = 0; index < listenersPerClass; index++ ) {
+			bus.addEventListener( new CountingListener(), Event.class );
+			bus.addEventListener( new CountingListener(), ParentEvent.class );
+			bus.addEventListener( new CountingListener(), ChildEvent.class );
+		}
+		bus.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		bus.stopAndWait();
+	}
+
+	@Benchmark
+	public void deliver() {
+		for( int index = 0; index < BATCH; index++ ) {
+			bus.submit( new ChildEvent( this ) );
+		}
+		bus.eventWait();
+	}
+
+	private static class ParentEvent extends Event {
+
+		public ParentEvent( Object source ) {
+			super( source );
+		}
+
+	}
+
+	private static class ChildEvent extends ParentEvent {
+
+		public ChildEvent( Object source ) {
+			super( source );
+		}
+
+	}
+
+	private static class CountingListener implements EventListener<Event> {
+
+		private int count;
+
+		@Override
+		public void eventOccurred( Event event ) {
+			count++;
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures event submission throughput as the number of producer threads grows.
+ * The legacy implementation takes one lock for every submit and every removal
+ * while the current implementation adds events to lock-free queues and only
+ * wakes the event bus thread when it is parked. Each producer waits for the
+ * event bus to catch up every 1024 events so the queues stay bounded.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class EventBusSubmitBenchmark {
+
+	private static final int BATCH = 1024;
+
+	@Param( { "legacy", "lockfree" } )
+	private String impl;
+
+	private EventBus bus;
+
+	private LegacyEventBus legacy;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		EventListener<Event> listener = new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {}
+
+		};
+
+		if( "legacy".equals( impl ) ) {
+			legacy = new LegacyEventBus();
+			legacy.addEventListener( listener );
+			legacy.startAndWait();
+		} else {
+			bus = new EventBus();
+			bus.addEventListener( listener );
+			bus.startAndWait();
+		}
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		if( legacy != null ) legacy.stopAndWait();
+		if( bus != null ) bus.stopAndWait();
+	}
+
+	@State( Scope.Thread )
+	public static class Producer {
+
+		private int count;
+
+	}
+
+	@Benchmark
+	@Threads( 1 )
+	public void submit1( Producer producer ) {
+		submit( producer );
+	}
+
+	@Benchmark
+	@Threads( 4 )
+	public void submit4( Producer producer ) {
+		submit( producer );
+	}
+
+	@Benchmark
+	@Threads( 16 )
+	public void submit16( Producer producer ) {
+		submit( producer );
+	}
+
+	private void submit( Producer producer ) {
+		boolean wait = ++producer.count % BATCH == 0;
+		if( legacy != null ) {
+			legacy.submit( new Event( this ) );
+			if( wait ) legacy.eventWait();
+		} else {
+			bus.submit( new Event( this ) );
+			if( wait ) bus.eventWait();
+		}
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures adding and removing events with mixed priorities while a number of
+ * events are already waiting. The binary heap used before costs log(n) for
+ * each operation and does not keep the submit order of equal priority events.
+ * The priority lanes cost the same at any depth, with and without aging.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PriorityEventQueueBenchmark {
+
+	private static final long AGING_INTERVAL = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+	@Param( { "16", "65536" } )
+	private int depth;
+
+	private Event[] events;
+
+	private PriorityQueue<Event> heap;
+
+	private PriorityEventQueue lanes;
+
+	private int index;
+
+	@Setup( Level.Iteration )
+	public void setup() {
+		events = new Event[1024];
+		for( int index = 0; index < events.length; index++ ) {
+			events[index] = new Event( this, Event.LOWEST_PRIORITY + index % Event.HIGHEST_PRIORITY );
+			events[index].setSubmitTime( System.nanoTime() );
+		}
+
+		heap = new PriorityQueue<Event>();
+		lanes = new PriorityEventQueue();
+		for( int index = 0; index < depth; index++ ) {
+			heap.add( events[index % events.length] );
+			lanes.add( events[index % events.length] );
+		}
+	}
+
+	@Benchmark
+	public Event heap() {
+		heap.add( nextEvent() );
+		return heap.poll();
+	}
+
+	@Benchmark
+	public Event lanes() {
+		lanes.add( nextEvent() );
+		return lanes.poll();
+	}
+
+	@Benchmark
+	public Event lanesWithAging() {
+		lanes.add( nextEvent() );
+		return lanes.poll( AGING_INTERVAL );
+	}
+
+	private Event nextEvent() {
+		index = ( index + 1 ) & ( events.length - 1 );
+		return events[index];
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.parallelsymmetry.utility.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a burst of tasks that block, standing in for tasks waiting on file
+ * or socket I/O. In the pool mode the burst is limited by the pool thread
+ * count. In the virtual mode every task has its own thread.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TaskManagerBlockingBenchmark {
+
+	private static final int BURST = 256;
+
+	private static final int BLOCK_TIME = 2;
+
+	@Param( { "POOL", "VIRTUAL" } )
+	private TaskManager.ExecutionMode mode;
+
+	private TaskManager manager;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		manager = new TaskManager();
+		manager.setExecutionMode( mode );
+		manager.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		manager.stopAndWait();
+	}
+
+	@Benchmark
+	public void burst() throws Exception {
+		List<Task<Object>> tasks = new ArrayList<Task<Object>>( BURST );
+		for( int index = 0; index < BURST; index++ ) {
+			Task<Object> task = new Task<Object>() {
+
+				@Override
+				public Object execute() throws Exception {
+					Thread.sleep( BLOCK_TIME );
+					return null;
+				}
+
+			};
+			tasks.add( task );
+			manager.submit( task );
+		}
+		for( Task<Object> task : tasks ) {
+			task.get();
+		}
+	}
+
+}
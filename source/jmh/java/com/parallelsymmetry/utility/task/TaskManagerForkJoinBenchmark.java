@@ -0,0 +1,95 @@
+package com.parallelsymmetry.utility.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a recursive divide and conquer task that splits its range in two
+ * and invokes both halves. In the pool mode the halves run one after the other
+ * on the invoking thread. In the fork/join mode the halves are forked and idle
+ * threads steal them.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TaskManagerForkJoinBenchmark {
+
+	private static final int SIZE = 1 << 20;
+
+	private static final int LEAF = 1 << 12;
+
+	@Param( { "POOL", "FORK_JOIN" } )
+	private TaskManager.ExecutionMode mode;
+
+	private TaskManager manager;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		manager = new TaskManager();
+		manager.setExecutionMode( mode );
+		manager.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		manager.stopAndWait();
+	}
+
+	@Benchmark
+	public long sum() throws Exception {
+		return manager.submit( new SumTask( manager, 0, SIZE ) ).get();
+	}
+
+	private static class SumTask extends Task<Long> {
+
+		private final TaskManager manager;
+
+		private final long start;
+
+		private final long end;
+
+		public SumTask( TaskManager manager, long start, long end ) {
+			this.manager = manager;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Long execute() throws Exception {
+			if( end - start <= LEAF ) {
+				long sum = 0;
+				for( long value = start; value < end; value++ ) {
+					sum += value * value % 7;
+				}
+				return sum;
+			}
+
+			long middle = ( start + end ) / 2;
+			List<SumTask> tasks = new ArrayList<SumTask>();
+			tasks.add( new SumTask( manager, start, middle ) );
+			tasks.add( new SumTask( manager, middle, end ) );
+			manager.invokeAll( tasks );
+			return tasks.get( 0 ).get() + tasks.get( 1 ).get();
+		}
+
+	}
+
+}
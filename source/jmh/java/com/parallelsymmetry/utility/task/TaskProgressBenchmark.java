@@ -0,0 +1,78 @@
+package com.parallelsymmetry.utility.task;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a task that sets its progress for every record it processes, with
+ * a listener on the task manager. A progress rate of zero calls the listeners
+ * on every change.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class TaskProgressBenchmark {
+
+	private static final int RECORDS = 1000000;
+
+	@Param( { "0", "20" } )
+	private int progressRate;
+
+	private TaskManager manager;
+
+	@Setup( Level.Trial )
+	public void setup() throws Exception {
+		manager = new TaskManager();
+		manager.setProgressRate( progressRate );
+		manager.addTaskListener( new TaskListener() {
+
+			private long progress;
+
+			@Override
+			public void handleEvent( TaskEvent event ) {
+				if( event.getType() == TaskEvent.Type.TASK_PROGRESS ) progress = event.getProgress();
+			}
+
+		} );
+		manager.startAndWait();
+	}
+
+	@TearDown( Level.Trial )
+	public void teardown() throws Exception {
+		manager.stopAndWait();
+	}
+
+	@Benchmark
+	public Object records() throws Exception {
+		Task<Object> task = new Task<Object>() {
+
+			@Override
+			public Object execute() throws Exception {
+				for( int record = 1; record <= RECORDS; record++ ) {
+					setProgress( record );
+				}
+				return null;
+			}
+
+		};
+		task.setMaximum( RECORDS );
+		return manager.submit( task ).get();
+	}
+
+}
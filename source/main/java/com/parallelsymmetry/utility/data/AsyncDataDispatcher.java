@@ -0,0 +1,119 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.parallelsymmetry.utility.ThreadUtil;
+import com.parallelsymmetry.utility.log.Log;
+
+/**
+ * Delivers the events of one data node to the asynchronous data listeners of
+ * the node. The events are queued by the committing thread while the commit
+ * stripes are locked. The dispatchers with new events are kept for the thread
+ * and handed to an executor once the outermost commit has released the
+ * stripes. At most one executor thread delivers the events of a node at a time
+ * so the listeners of a node receive the events in commit order.
+ */
+final class AsyncDataDispatcher implements Runnable {
+
+	private static volatile Executor executor = Executors.newCachedThreadPool( ThreadUtil.createDaemonThreadFactory() );
+
+	/**
+	 * The dispatchers that have events to deliver once the commit of the thread
+	 * has released the commit stripes.
+	 */
+	private static final ThreadLocal<List<AsyncDataDispatcher>> pending = new ThreadLocal<List<AsyncDataDispatcher>>();
+
+	private final DataNode node;
+
+	private final Set<DataListener> listeners = new CopyOnWriteArraySet<DataListener>();
+
+	private final Queue<DataEvent> events = new ConcurrentLinkedQueue<DataEvent>();
+
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	public AsyncDataDispatcher( DataNode node ) {
+		this.node = node;
+	}
+
+	static Executor getExecutor() {
+		return executor;
+	}
+
+	static void setExecutor( Executor executor ) {
+		if( executor == null ) throw new NullPointerException( "Executor cannot be null." );
+		AsyncDataDispatcher.executor = executor;
+	}
+
+	/**
+	 * Hand the dispatchers queued by the current thread to the executor. Called
+	 * by a commit after it has released the commit stripes.
+	 */
+	static void schedulePending() {
+		List<AsyncDataDispatcher> dispatchers = pending.get();
+		if( dispatchers == null ) return;
+		pending.remove();
+
+		for( AsyncDataDispatcher dispatcher : dispatchers ) {
+			dispatcher.execute();
+		}
+	}
+
+	public Set<DataListener> getListeners() {
+		return listeners;
+	}
+
+	public boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	public void dispatch( DataEvent event ) {
+		if( listeners.isEmpty() ) return;
+		events.offer( event );
+		if( !scheduled.compareAndSet( false, true ) ) return;
+
+		List<AsyncDataDispatcher> dispatchers = pending.get();
+		if( dispatchers == null ) pending.set( dispatchers = new ArrayList<AsyncDataDispatcher>() );
+		dispatchers.add( this );
+	}
+
+	@Override
+	public void run() {
+		DataEvent event;
+		while( ( event = events.poll() ) != null ) {
+			try {
+				node.fireEvent( listeners, event );
+			} catch( Throwable throwable ) {
+				Log.write( throwable );
+			}
+		}
+
+		// An event may have been queued after the queue was found empty but before
+		// the scheduled flag was cleared.
+		scheduled.set( false );
+		if( !events.isEmpty() && scheduled.compareAndSet( false, true ) ) execute();
+	}
+
+	/**
+	 * Hand the dispatcher to the executor. If the executor rejects the
+	 * dispatcher the scheduled flag is cleared so the next event schedules the
+	 * dispatcher again.
+	 */
+	private void execute() {
+		try {
+			executor.execute( this );
+		} catch( RejectedExecutionException exception ) {
+			scheduled.set( false );
+			Log.write( exception );
+		}
+	}
+
+}
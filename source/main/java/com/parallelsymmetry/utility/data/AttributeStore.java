@@ -0,0 +1,272 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compact attribute store for data nodes. Each entry holds a key, the current
+ * value and, when the value has been modified, the original value. The entries
+ * are packed in one flat array, three slots per entry, and are found with a
+ * linear scan. Data nodes typically have a handful of attributes so a scan of
+ * the packed array is faster and much smaller than a hash map.
+ * <p>
+ * Keys are interned when an entry is created so the scan can usually match a
+ * key by identity and millions of nodes share the same key strings.
+ * <p>
+ * The store is not safe for concurrent changes. It is only used for the data
+ * and meta values, which are changed while a transaction is committed with the
+ * commit stripe of the node tree locked. Removing an entry or growing the array
+ * publishes a new array, so readers that do not hold the lock always see a
+ * consistent set of entries. Adding an entry to an unused slot and changing the
+ * value of an entry are done in place.
+ * <p>
+ * The original value of an entry is tracked separately from the current value.
+ * A null original means there is no original value. Callers that need to track
+ * an original null value must use a marker object.
+ */
+final class AttributeStore {
+
+	private static final int STRIDE = 3;
+
+	private static final int VALUE = 1;
+
+	private static final int ORIGINAL = 2;
+
+	private volatile Object[] table;
+
+	private int entryCount;
+
+	private int valueCount;
+
+	private int originalCount;
+
+	public AttributeStore() {
+		table = new Object[STRIDE];
+	}
+
+	/**
+	 * Get the number of entries with a value.
+	 *
+	 * @return The number of values.
+	 */
+	public int size() {
+		return valueCount;
+	}
+
+	public int getOriginalCount() {
+		return originalCount;
+	}
+
+	/**
+	 * Check if the store has neither values nor original values.
+	 *
+	 * @return True if the store can be discarded.
+	 */
+	public boolean isEmpty() {
+		return entryCount == 0;
+	}
+
+	public Object get( String key ) {
+		Object[] table = this.table;
+		int index = find( table, key );
+		return index < 0 ? null : table[index + VALUE];
+	}
+
+	/**
+	 * Set the value for a key. A null value removes the value.
+	 *
+	 * @param key The key.
+	 * @param value The value.
+	 * @return The previous value.
+	 */
+	public Object put( String key, Object value ) {
+		int index = find( table, key );
+		if( index < 0 ) {
+			if( value == null ) return null;
+			index = add( key );
+		}
+
+		Object previous = table[index + VALUE];
+		table[index + VALUE] = value;
+
+		if( previous == null && value != null ) valueCount++;
+		if( previous != null && value == null ) {
+			valueCount--;
+			if( table[index + ORIGINAL] == null ) remove( index );
+		}
+
+		return previous;
+	}
+
+	public boolean containsOriginal( String key ) {
+		return getOriginal( key ) != null;
+	}
+
+	public Object getOriginal( String key ) {
+		Object[] table = this.table;
+		int index = find( table, key );
+		return index < 0 ? null : table[index + ORIGINAL];
+	}
+
+	/**
+	 * Set the original value for a key. A null original value removes the
+	 * original value.
+	 *
+	 * @param key The key.
+	 * @param original The original value.
+	 */
+	public void putOriginal( String key, Object original ) {
+		int index = find( table, key );
+		if( index < 0 ) {
+			if( original == null ) return;
+			index = add( key );
+		}
+
+		Object previous = table[index + ORIGINAL];
+		table[index + ORIGINAL] = original;
+
+		if( previous == null && original != null ) originalCount++;
+		if( previous != null && original == null ) {
+			originalCount--;
+			if( table[index + VALUE] == null ) remove( index );
+		}
+	}
+
+	/**
+	 * Remove all the original values.
+	 */
+	public void clearOriginals() {
+		if( originalCount == 0 ) return;
+
+		Object[] table = this.table;
+		Object[] result = new Object[STRIDE * Math.max( 1, valueCount )];
+		int count = 0;
+		for( int index = 0; index < entryCount * STRIDE; index += STRIDE ) {
+			if( table[index + VALUE] == null ) continue;
+			result[count * STRIDE] = table[index];
+			result[count * STRIDE + VALUE] = table[index + VALUE];
+			count++;
+		}
+
+		entryCount = count;
+		originalCount = 0;
+		this.table = result;
+	}
+
+	/**
+	 * Get a snapshot of the keys that have a value.
+	 *
+	 * @return The key set.
+	 */
+	public Set<String> keySet() {
+		Object[] table = this.table;
+		Set<String> keys = new HashSet<String>();
+		for( int index = 0; index < table.length && table[index] != null; index += STRIDE ) {
+			if( table[index + VALUE] != null ) keys.add( (String)table[index] );
+		}
+		return keys;
+	}
+
+	/**
+	 * Get a snapshot of the keys that have an original value.
+	 *
+	 * @return The key set.
+	 */
+	public Set<String> originalKeySet() {
+		Object[] table = this.table;
+		Set<String> keys = new HashSet<String>();
+		for( int index = 0; index < table.length && table[index] != null; index += STRIDE ) {
+			if( table[index + ORIGINAL] != null ) keys.add( (String)table[index] );
+		}
+		return keys;
+	}
+
+	/**
+	 * Get a snapshot of the values.
+	 *
+	 * @return The value list.
+	 */
+	public List<Object> values() {
+		Object[] table = this.table;
+		List<Object> values = new ArrayList<Object>();
+		for( int index = 0; index < table.length && table[index] != null; index += STRIDE ) {
+			if( table[index + VALUE] != null ) values.add( table[index + VALUE] );
+		}
+		return values;
+	}
+
+	/**
+	 * Get a snapshot of the keys and values packed in one array, the key of each
+	 * entry followed by the value.
+	 *
+	 * @return The packed keys and values.
+	 */
+	public Object[] entries() {
+		Object[] table = this.table;
+		Object[] entries = new Object[2 * valueCount];
+		int count = 0;
+		for( int index = 0; index < table.length && table[index] != null && count < entries.length; index += STRIDE ) {
+			if( table[index + VALUE] == null ) continue;
+			entries[count++] = table[index];
+			entries[count++] = table[index + VALUE];
+		}
+		if( count < entries.length ) {
+			Object[] result = new Object[count];
+			System.arraycopy( entries, 0, result, 0, count );
+			entries = result;
+		}
+		return entries;
+	}
+
+	/**
+	 * Find the table index of the entry for the key. Unused entries are at the
+	 * end of the table and have a null key.
+	 */
+	private int find( Object[] table, String key ) {
+		int hash = key.hashCode();
+		for( int index = 0; index < table.length; index += STRIDE ) {
+			Object entry = table[index];
+			if( entry == null ) return -1;
+			if( entry == key || ( entry.hashCode() == hash && entry.equals( key ) ) ) return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Add an entry for the key. The key is written to the first unused entry, or
+	 * to a larger table that is published after the key is in place. Readers see
+	 * either no entry or an entry without a value.
+	 */
+	private int add( String key ) {
+		Object[] table = this.table;
+		int index = entryCount * STRIDE;
+
+		if( index < table.length ) {
+			table[index] = key.intern();
+		} else {
+			Object[] larger = new Object[table.length + STRIDE * Math.max( 1, entryCount / 2 )];
+			System.arraycopy( table, 0, larger, 0, table.length );
+			larger[index] = key.intern();
+			this.table = larger;
+		}
+
+		entryCount++;
+		return index;
+	}
+
+	/**
+	 * Remove the entry at the index by publishing a new, packed table.
+	 */
+	private void remove( int index ) {
+		Object[] table = this.table;
+		Object[] result = new Object[Math.max( STRIDE, table.length - STRIDE )];
+		System.arraycopy( table, 0, result, 0, index );
+		System.arraycopy( table, index + STRIDE, result, index, entryCount * STRIDE - index - STRIDE );
+
+		entryCount--;
+		this.table = result;
+	}
+
+}
@@ -0,0 +1,250 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * An identity index of the children of a data list. The children are kept in
+ * an order statistic tree, a treap ordered by position where each entry knows
+ * the size of its subtree and its parent. The position of a child is found by
+ * walking from its entry to the root, adding the sizes of the subtrees to the
+ * left. Inserting and removing children changes only the entries on one path
+ * of the tree, so lookups, inserts and removes take expected logarithmic time
+ * and the children are never renumbered.
+ * <p>
+ * The index is changed by the committing thread and used by any thread so the
+ * methods are synchronized. Positions are checked against the child list
+ * before they are returned. If the check fails the index is discarded and
+ * created again from the child list.
+ */
+final class ChildIndex {
+
+	private final Map<DataNode, Entry> entries = new IdentityHashMap<DataNode, Entry>();
+
+	private final Random random = new Random();
+
+	private Entry root;
+
+	/**
+	 * The left result of the last split.
+	 */
+	private Entry splitLeft;
+
+	/**
+	 * The right result of the last split.
+	 */
+	private Entry splitRight;
+
+	private boolean stale = true;
+
+	/**
+	 * Record the nodes inserted into the children at the index.
+	 */
+	public synchronized void insert( int index, List<? extends DataNode> nodes ) {
+		if( stale ) return;
+
+		Entry inserted = build( nodes );
+		if( index >= getSize( root ) ) {
+			root = merge( root, inserted );
+		} else {
+			split( root, index );
+			Entry left = splitLeft;
+			Entry right = splitRight;
+			splitLeft = null;
+			splitRight = null;
+			root = merge( merge( left, inserted ), right );
+		}
+		if( root != null ) root.parent = null;
+	}
+
+	/**
+	 * Record the nodes removed from the children.
+	 */
+	public synchronized void remove( List<? extends DataNode> nodes ) {
+		if( stale ) return;
+
+		for( DataNode node : nodes ) {
+			Entry entry = entries.remove( node );
+			if( entry == null ) continue;
+
+			Entry parent = entry.parent;
+			Entry joined = merge( entry.left, entry.right );
+			if( joined != null ) joined.parent = parent;
+
+			if( parent == null ) {
+				root = joined;
+			} else if( parent.left == entry ) {
+				parent.left = joined;
+			} else {
+				parent.right = joined;
+			}
+
+			for( Entry ancestor = parent; ancestor != null; ancestor = ancestor.parent ) {
+				ancestor.size--;
+			}
+		}
+	}
+
+	public synchronized int indexOf( List<? extends DataNode> children, Object node ) {
+		if( children == null ) return -1;
+
+		if( stale ) rebuild( children );
+
+		Entry entry = entries.get( node );
+		if( entry == null ) return -1;
+
+		int position = getPosition( entry );
+		if( position < children.size() && children.get( position ) == node ) return position;
+
+		// The index and the children are out of step.
+		discard();
+		return children.indexOf( node );
+	}
+
+	/**
+	 * Count the entries before the entry by walking up to the root.
+	 */
+	private int getPosition( Entry entry ) {
+		int position = getSize( entry.left );
+		for( Entry child = entry, parent = entry.parent; parent != null; child = parent, parent = parent.parent ) {
+			if( parent.right == child ) position += getSize( parent.left ) + 1;
+		}
+		return position;
+	}
+
+	/**
+	 * Create the entries for the nodes and build a tree of them in node order.
+	 * The tree is built in linear time by keeping the right edge of the tree on
+	 * a stack.
+	 */
+	private Entry build( List<? extends DataNode> nodes ) {
+		int count = nodes.size();
+		Entry[] stack = new Entry[count];
+		int depth = 0;
+
+		for( int index = 0; index < count; index++ ) {
+			DataNode node = nodes.get( index );
+			Entry entry = new Entry( random.nextInt() );
+			entries.put( node, entry );
+
+			Entry last = null;
+			while( depth > 0 && stack[depth - 1].priority < entry.priority ) {
+				last = stack[--depth];
+				update( last );
+			}
+
+			entry.left = last;
+			if( last != null ) last.parent = entry;
+			if( depth > 0 ) {
+				stack[depth - 1].right = entry;
+				entry.parent = stack[depth - 1];
+			}
+			stack[depth++] = entry;
+		}
+
+		while( depth > 0 ) {
+			update( stack[--depth] );
+		}
+
+		if( count == 0 ) return null;
+		stack[0].parent = null;
+		return stack[0];
+	}
+
+	/**
+	 * Join two trees where every entry in the left tree comes before every
+	 * entry in the right tree.
+	 */
+	private Entry merge( Entry left, Entry right ) {
+		if( left == null ) return right;
+		if( right == null ) return left;
+
+		if( left.priority > right.priority ) {
+			left.right = merge( left.right, right );
+			left.right.parent = left;
+			update( left );
+			return left;
+		} else {
+			right.left = merge( left, right.left );
+			right.left.parent = right;
+			update( right );
+			return right;
+		}
+	}
+
+	/**
+	 * Split the tree into the first count entries and the rest. The results are
+	 * left in splitLeft and splitRight.
+	 */
+	private void split( Entry entry, int count ) {
+		if( entry == null ) {
+			splitLeft = null;
+			splitRight = null;
+			return;
+		}
+
+		if( getSize( entry.left ) < count ) {
+			split( entry.right, count - getSize( entry.left ) - 1 );
+			entry.right = splitLeft;
+			if( splitLeft != null ) splitLeft.parent = entry;
+			update( entry );
+			splitLeft = entry;
+		} else {
+			split( entry.left, count );
+			entry.left = splitRight;
+			if( splitRight != null ) splitRight.parent = entry;
+			update( entry );
+			splitRight = entry;
+		}
+	}
+
+	private void update( Entry entry ) {
+		entry.size = getSize( entry.left ) + getSize( entry.right ) + 1;
+	}
+
+	private static int getSize( Entry entry ) {
+		return entry == null ? 0 : entry.size;
+	}
+
+	/**
+	 * Create the tree again from the children.
+	 */
+	private void rebuild( List<? extends DataNode> children ) {
+		entries.clear();
+		root = build( children );
+		stale = false;
+	}
+
+	/**
+	 * Discard the entries. The entries are created again the next time the
+	 * index is used.
+	 */
+	private void discard() {
+		entries.clear();
+		root = null;
+		splitLeft = null;
+		splitRight = null;
+		stale = true;
+	}
+
+	private static final class Entry {
+
+		private final int priority;
+
+		private Entry left;
+
+		private Entry right;
+
+		private Entry parent;
+
+		private int size = 1;
+
+		public Entry( int priority ) {
+			this.priority = priority;
+		}
+
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A commit stripe guards the data trees whose roots hash to the stripe. The
+ * stripe lock is held while a transaction is applied to the trees and while the
+ * resulting events are dispatched.
+ */
+final class CommitStripe extends ReentrantLock {
+
+	private static final long serialVersionUID = -3046571298204915716L;
+
+	private final int index;
+
+	CommitStripe( int index ) {
+		this.index = index;
+	}
+
+	int getIndex() {
+		return index;
+	}
+
+	Thread getOwnerThread() {
+		return getOwner();
+	}
+
+}
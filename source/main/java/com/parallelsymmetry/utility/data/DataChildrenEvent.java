@@ -0,0 +1,77 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An aggregated child event for a set of children inserted into or removed
+ * from a data list by one operation. The children are listed in the order they
+ * were inserted or removed and each index is the index of the child at the
+ * time it was inserted or removed, the same as the index of the equivalent
+ * individual child event.
+ */
+public class DataChildrenEvent extends DataValueEvent {
+
+	private int[] indexes;
+
+	private List<? extends DataNode> children;
+
+	public DataChildrenEvent( Action action, DataNode sender, DataNode parent, int[] indexes, List<? extends DataNode> children ) {
+		super( DataEvent.Type.DATA_CHILDREN, action, sender, parent );
+		if( indexes.length != children.size() ) throw new IllegalArgumentException( "Index count does not match child count." );
+		this.indexes = indexes;
+		this.children = children;
+	}
+
+	public int getCount() {
+		return indexes.length;
+	}
+
+	public int getIndex( int item ) {
+		return indexes[item];
+	}
+
+	public DataNode getChild( int item ) {
+		return children.get( item );
+	}
+
+	public List<? extends DataNode> getChildren() {
+		return Collections.unmodifiableList( children );
+	}
+
+	/**
+	 * Get the equivalent individual child events. The events are created as
+	 * they are requested from the list.
+	 * 
+	 * @return The list of child events.
+	 */
+	public List<DataChildEvent> getChildEvents() {
+		return new AbstractList<DataChildEvent>() {
+
+			@Override
+			public DataChildEvent get( int item ) {
+				DataChildEvent event = new DataChildEvent( getAction(), getSender(), getCause(), indexes[item], children.get( item ) );
+				event.setClone( isClone() );
+				return event;
+			}
+
+			@Override
+			public int size() {
+				return indexes.length;
+			}
+
+		};
+	}
+
+	@Override
+	public String toString() {
+		return getAction().toString() + ": " + getCause() + "(" + indexes.length + " children)";
+	}
+
+	@Override
+	public DataEvent cloneWithNewSender( DataNode sender ) {
+		return new DataChildrenEvent( getAction(), sender, getCause(), indexes, children ).setClone( true );
+	}
+
+}
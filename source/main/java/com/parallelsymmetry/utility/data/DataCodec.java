@@ -0,0 +1,78 @@
+package com.parallelsymmetry.utility.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The constants and number encoding shared by the data writer and the data
+ * reader. Counts, lengths and node ids are written as variable length numbers,
+ * seven bits per byte with the high bit set on all but the last byte. Signed
+ * numbers are zigzag encoded first so small negative numbers are also short.
+ */
+final class DataCodec {
+
+	static final int MAGIC = 0x444E4F44;
+
+	static final int VERSION = 1;
+
+	static final int NULL = 0;
+
+	static final int NODE = 1;
+
+	static final int STRING = 2;
+
+	static final int TRUE = 3;
+
+	static final int FALSE = 4;
+
+	static final int BYTE = 5;
+
+	static final int SHORT = 6;
+
+	static final int CHARACTER = 7;
+
+	static final int INTEGER = 8;
+
+	static final int LONG = 9;
+
+	static final int FLOAT = 10;
+
+	static final int DOUBLE = 11;
+
+	static final int BYTES = 12;
+
+	static final int ENUM = 13;
+
+	static final int DATE = 14;
+
+	private DataCodec() {}
+
+	static void writeNumber( DataOutput output, long value ) throws IOException {
+		while( ( value & ~0x7FL ) != 0 ) {
+			output.writeByte( (int)( ( value & 0x7F ) | 0x80 ) );
+			value >>>= 7;
+		}
+		output.writeByte( (int)value );
+	}
+
+	static long readNumber( DataInput input ) throws IOException {
+		long value = 0;
+		for( int shift = 0; shift < 64; shift += 7 ) {
+			int data = input.readUnsignedByte();
+			value |= (long)( data & 0x7F ) << shift;
+			if( ( data & 0x80 ) == 0 ) return value;
+		}
+		throw new IOException( "Malformed variable length number." );
+	}
+
+	static void writeSignedNumber( DataOutput output, long value ) throws IOException {
+		writeNumber( output, ( value << 1 ) ^ ( value >> 63 ) );
+	}
+
+	static long readSignedNumber( DataInput input ) throws IOException {
+		long value = readNumber( input );
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+
+}
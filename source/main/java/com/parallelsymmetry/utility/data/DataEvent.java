@@ -5,7 +5,7 @@ import com.parallelsymmetry.utility.JavaUtil;
 public abstract class DataEvent {
 
 	public enum Type {
-		DATA_CHANGED, META_ATTRIBUTE, DATA_ATTRIBUTE, DATA_CHILD
+		DATA_CHANGED, META_ATTRIBUTE, DATA_ATTRIBUTE, DATA_CHILD, DATA_CHILDREN
 	}
 
 	public enum Action {
@@ -0,0 +1,424 @@
+package com.parallelsymmetry.utility.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import com.parallelsymmetry.utility.log.Log;
+
+/**
+ * Stores a data node tree in a file as a full snapshot followed by a log of
+ * deltas. Appending a delta only visits the modified nodes, using the modified
+ * state the data nodes already keep, so saving a large tree after a small edit
+ * costs time in proportion to the edit. Compacting the journal replaces the
+ * snapshot and the deltas with a new snapshot.
+ * <p>
+ * A delta holds, for each modified node, the modified attributes and, for data
+ * lists, the children that were added and removed. Nodes are referred to by a
+ * journal node id that is kept as a node resource. New nodes are written in
+ * full with the delta. Saving clears the modified flag of the tree, in the same
+ * way an application marks a document as saved.
+ * <p>
+ * Each delta is written with a length and a checksum. A delta that was not
+ * completely written, for example because the process ended during the write,
+ * is discarded when the journal is loaded. The snapshot is written to a
+ * temporary file that replaces the journal once it is complete.
+ * <p>
+ * The tree must not be changed while it is saved.
+ */
+public class DataJournal implements Closeable {
+
+	public static final String TEMPFILE_SUFFIX = "tmp";
+
+	private static final String NODE_ID = DataJournal.class.getName() + ".id";
+
+	private static final int MAGIC = 0x444A4E4C;
+
+	private static final int VERSION = 1;
+
+	/**
+	 * The size of the journal header, the magic number, the version and the
+	 * snapshot length.
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	private final File store;
+
+	private FileOutputStream output;
+
+	private DataNode root;
+
+	private long nextId = 1;
+
+	private Map<Long, DataNode> nodes;
+
+	public DataJournal( File store ) {
+		this.store = store;
+	}
+
+	public File getStore() {
+		return store;
+	}
+
+	/**
+	 * Get the length of the journal file. Callers can compare the length after a
+	 * compaction with the current length to decide when to compact again.
+	 *
+	 * @return The journal length in bytes.
+	 */
+	public long getLength() {
+		return store.length();
+	}
+
+	/**
+	 * Load the tree from the journal, replaying the deltas on the snapshot. A
+	 * delta that was not completely written is removed from the journal.
+	 *
+	 * @return The root node or null if the journal does not exist.
+	 * @throws IOException If the journal cannot be read.
+	 */
+	public synchronized DataNode load() throws IOException {
+		closeOutput();
+		root = null;
+		nextId = 1;
+		if( !store.exists() || store.length() == 0 ) return null;
+
+		long length = store.length();
+		long offset;
+		nodes = new HashMap<Long, DataNode>();
+		DataInputStream input = new DataInputStream( new BufferedInputStream( new FileInputStream( store ) ) );
+		try {
+			if( length < HEADER_SIZE || input.readInt() != MAGIC ) throw new IOException( "Not a data journal: " + store );
+			int version = input.readInt();
+			if( version != VERSION ) throw new IOException( "Unsupported data journal version: " + version );
+			long snapshotLength = input.readLong();
+			if( HEADER_SIZE + snapshotLength > length ) throw new IOException( "Incomplete data journal snapshot: " + store );
+
+			Object value = new DataReader( input, this ).readValue();
+			if( !( value instanceof DataNode ) ) throw new IOException( "Data node expected." );
+			root = (DataNode)value;
+
+			// Replay the deltas.
+			offset = HEADER_SIZE + snapshotLength;
+			while( offset < length ) {
+				byte[] delta = readDelta( input, length - offset );
+				if( delta == null ) break;
+				applyDelta( delta );
+				offset += 8 + delta.length;
+			}
+		} finally {
+			input.close();
+			nodes = null;
+		}
+
+		if( offset < length ) {
+			Log.write( Log.WARN, "Discarding incomplete data journal delta: " + store );
+			truncate( offset );
+		}
+
+		root.setModified( false );
+		return root;
+	}
+
+	/**
+	 * Save the changes made to the tree since it was last saved or loaded. If the
+	 * tree was not loaded from or saved to this journal the journal is compacted
+	 * instead.
+	 *
+	 * @param root The root node of the tree.
+	 * @throws IOException If the journal cannot be written.
+	 */
+	public synchronized void append( DataNode root ) throws IOException {
+		if( root != this.root ) {
+			compact( root );
+			return;
+		}
+		if( !root.isModified() ) return;
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataWriter writer = new DataWriter( buffer, this );
+		Map<DataNode, List<Long>> removed = new IdentityHashMap<DataNode, List<Long>>();
+		collectRemovedIds( root, removed );
+		writeChanges( writer, root, removed );
+		writer.writeNumber( 0 );
+		writer.close();
+		byte[] delta = buffer.toByteArray();
+
+		CRC32 crc = new CRC32();
+		crc.update( delta );
+
+		if( output == null ) output = new FileOutputStream( store, true );
+		DataOutputStream record = new DataOutputStream( output );
+		record.writeInt( delta.length );
+		record.writeInt( (int)crc.getValue() );
+		record.write( delta );
+		record.flush();
+		output.getChannel().force( false );
+
+		root.setModified( false );
+	}
+
+	/**
+	 * Replace the journal with a snapshot of the tree. The node ids are assigned
+	 * again so the ids of removed nodes are not carried forward.
+	 *
+	 * @param root The root node of the tree.
+	 * @throws IOException If the journal cannot be written.
+	 */
+	public synchronized void compact( DataNode root ) throws IOException {
+		closeOutput();
+
+		File compactStore = new File( store.getParent(), store.getName() + "." + TEMPFILE_SUFFIX );
+		FileOutputStream fileOutput = new FileOutputStream( compactStore );
+		try {
+			DataOutputStream header = new DataOutputStream( fileOutput );
+			header.writeInt( MAGIC );
+			header.writeInt( VERSION );
+			header.writeLong( 0 );
+			header.flush();
+
+			nextId = 1;
+			DataWriter writer = new DataWriter( fileOutput, this );
+			writer.writeValue( root );
+			writer.flush();
+
+			// Fill in the snapshot length.
+			FileChannel channel = fileOutput.getChannel();
+			ByteBuffer length = ByteBuffer.allocate( 8 );
+			length.putLong( 0, channel.size() - HEADER_SIZE );
+			channel.write( length, HEADER_SIZE - 8 );
+			channel.force( true );
+		} finally {
+			fileOutput.close();
+		}
+
+		try {
+			Files.move( compactStore.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		} catch( AtomicMoveNotSupportedException exception ) {
+			Files.move( compactStore.toPath(), store.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+
+		this.root = root;
+		root.setModified( false );
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		closeOutput();
+	}
+
+	/**
+	 * Assign a new journal node id to the node.
+	 */
+	long createId( DataNode node ) {
+		long id = nextId++;
+		node.putResource( NODE_ID, id );
+		return id;
+	}
+
+	void registerNode( long id, DataNode node ) {
+		node.putResource( NODE_ID, id );
+		nodes.put( id, node );
+		if( id >= nextId ) nextId = id + 1;
+	}
+
+	/**
+	 * Collect the ids of the removed children of the modified lists, starting
+	 * with the node. The ids are collected before any node is written because
+	 * writing a node in full assigns it a new id. A node moved to a list that
+	 * is written before the list it was removed from would otherwise be
+	 * recorded as removed under the new id and the original would not be
+	 * removed when the journal is loaded.
+	 */
+	private void collectRemovedIds( DataNode node, Map<DataNode, List<Long>> removed ) {
+		if( !node.isModified() ) return;
+
+		Set<String> keys = node.getModifiedAttributeKeys();
+		Object[] entries = node.getAttributeEntries();
+		for( int index = 0; index < entries.length; index += 2 ) {
+			if( entries[index + 1] instanceof DataNode && !keys.contains( entries[index] ) ) collectRemovedIds( (DataNode)entries[index + 1], removed );
+		}
+
+		if( !( node instanceof DataList ) ) return;
+		Map<DataNode, DataEvent.Action> actions = ( (DataList<?>)node ).getChildActions();
+		if( actions != null ) {
+			List<Long> ids = new ArrayList<Long>();
+			for( Map.Entry<DataNode, DataEvent.Action> entry : actions.entrySet() ) {
+				if( entry.getValue() != DataEvent.Action.REMOVE ) continue;
+				Long id = entry.getKey().getResource( NODE_ID );
+				if( id != null ) ids.add( id );
+			}
+			removed.put( node, ids );
+		}
+		for( Object child : ( (DataList<?>)node ).toArray() ) {
+			if( actions == null || actions.get( child ) != DataEvent.Action.INSERT ) collectRemovedIds( (DataNode)child, removed );
+		}
+	}
+
+	/**
+	 * Write the changes of the modified nodes, starting with the node. Nodes that
+	 * are not modified have no modified nodes below them and are skipped along
+	 * with the nodes below them. New nodes are written in full as attribute
+	 * values or added children and the nodes below them are not visited again.
+	 */
+	private void writeChanges( DataWriter writer, DataNode node, Map<DataNode, List<Long>> removed ) throws IOException {
+		if( !node.isModified() ) return;
+
+		Long id = node.getResource( NODE_ID );
+		if( id == null ) throw new IOException( "Data node not in journal: " + node );
+
+		Set<String> keys = node.getModifiedAttributeKeys();
+		Map<DataNode, DataEvent.Action> actions = node instanceof DataList ? ( (DataList<?>)node ).getChildActions() : null;
+
+		if( keys.size() > 0 || actions != null ) {
+			writer.writeNumber( id );
+
+			writer.writeNumber( keys.size() );
+			for( String key : keys ) {
+				writer.writeString( key );
+				writer.writeValue( node.getAttribute( key ) );
+			}
+
+			if( actions == null ) {
+				writer.writeByte( 0 );
+			} else {
+				writer.writeByte( 1 );
+				writeChildChanges( writer, (DataList<?>)node, actions, removed.get( node ) );
+			}
+		}
+
+		// Visit the modified nodes that were not written in full.
+		Object[] entries = node.getAttributeEntries();
+		for( int index = 0; index < entries.length; index += 2 ) {
+			if( entries[index + 1] instanceof DataNode && !keys.contains( entries[index] ) ) writeChanges( writer, (DataNode)entries[index + 1], removed );
+		}
+		if( node instanceof DataList ) {
+			for( Object child : ( (DataList<?>)node ).toArray() ) {
+				if( actions == null || actions.get( child ) != DataEvent.Action.INSERT ) writeChanges( writer, (DataNode)child, removed );
+			}
+		}
+	}
+
+	/**
+	 * Write the ids of the removed children and the added children with their
+	 * positions, in position order. Removing the removed children and then
+	 * adding the added children in position order rebuilds the list.
+	 */
+	private void writeChildChanges( DataWriter writer, DataList<?> list, Map<DataNode, DataEvent.Action> actions, List<Long> removed ) throws IOException {
+		List<Integer> positions = new ArrayList<Integer>();
+		Object[] children = list.toArray();
+		for( int index = 0; index < children.length; index++ ) {
+			if( actions.get( children[index] ) == DataEvent.Action.INSERT ) positions.add( index );
+		}
+
+		writer.writeNumber( removed.size() );
+		for( Long id : removed ) {
+			writer.writeNumber( id );
+		}
+
+		writer.writeNumber( positions.size() );
+		for( Integer position : positions ) {
+			writer.writeNumber( position );
+			writer.writeValue( children[position] );
+		}
+	}
+
+	/**
+	 * Read the next delta and check the checksum.
+	 *
+	 * @return The delta or null if the delta was not completely written.
+	 */
+	private byte[] readDelta( DataInputStream input, long available ) throws IOException {
+		if( available < 8 ) return null;
+		int length = input.readInt();
+		int checksum = input.readInt();
+		if( length < 0 || length > available - 8 ) return null;
+
+		byte[] delta = new byte[length];
+		try {
+			input.readFully( delta );
+		} catch( EOFException exception ) {
+			return null;
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update( delta );
+		return (int)crc.getValue() == checksum ? delta : null;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private void applyDelta( byte[] delta ) throws IOException {
+		DataReader reader = new DataReader( new ByteArrayInputStream( delta ), this );
+
+		long id;
+		while( ( id = reader.readNumber() ) != 0 ) {
+			DataNode node = nodes.get( id );
+			if( node == null ) throw new IOException( "Unknown data node id: " + id );
+
+			int count = reader.readCount();
+			if( count > 0 ) {
+				Map<String, Object> values = new LinkedHashMap<String, Object>();
+				for( int index = 0; index < count; index++ ) {
+					values.put( reader.readString(), reader.readValue() );
+				}
+				node.setAttributes( values );
+			}
+
+			if( reader.readByte() == 0 ) continue;
+			if( !( node instanceof DataList ) ) throw new IOException( "Data list expected: " + id );
+			DataList<DataNode> list = (DataList<DataNode>)node;
+
+			count = reader.readCount();
+			List<DataNode> removed = new ArrayList<DataNode>( count );
+			for( int index = 0; index < count; index++ ) {
+				DataNode child = nodes.remove( reader.readNumber() );
+				if( child != null ) removed.add( child );
+			}
+			list.removeAll( removed );
+
+			count = reader.readCount();
+			for( int index = 0; index < count; index++ ) {
+				int position = reader.readCount();
+				list.add( position, (DataNode)reader.readValue() );
+			}
+		}
+	}
+
+	private void truncate( long length ) throws IOException {
+		RandomAccessFile file = new RandomAccessFile( store, "rw" );
+		try {
+			file.setLength( length );
+		} finally {
+			file.close();
+		}
+	}
+
+	private void closeOutput() throws IOException {
+		if( output == null ) return;
+		output.close();
+		output = null;
+	}
+
+}
@@ -1,11 +1,17 @@
 package com.parallelsymmetry.utility.data;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -21,19 +27,17 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 
 	private int modifiedChildCount;
 
+	private volatile ChildIndex index;
+
 	public DataList() {}
 
 	public DataList( T[] children ) {
-		for( T child : children ) {
-			add( child );
-		}
+		addAll( Arrays.asList( children ) );
 		setModified( false );
 	}
 
 	public DataList( Collection<T> children ) {
-		for( T child : children ) {
-			add( child );
-		}
+		addAll( children );
 		setModified( false );
 	}
 
@@ -49,6 +53,23 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 		return modifiedChildCount;
 	}
 
+	public boolean isIndexed() {
+		return index != null;
+	}
+
+	/**
+	 * Use an identity index of the children for indexOf(), contains(), remove()
+	 * and removeAll(). The index uses more memory but makes these methods fast
+	 * for large lists. Children are matched by identity when the list is
+	 * indexed.
+	 * 
+	 * @param indexed True to index the children.
+	 */
+	public void setIndexed( boolean indexed ) {
+		if( indexed == isIndexed() ) return;
+		index = indexed ? new ChildIndex() : null;
+	}
+
 	@Override
 	public T get( int index ) {
 		if( children == null ) throw new ArrayIndexOutOfBoundsException( index );
@@ -57,8 +78,11 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 
 	@Override
 	public int indexOf( Object object ) {
+		List<T> children = this.children;
 		if( children == null ) return -1;
-		return children.indexOf( object );
+
+		ChildIndex index = this.index;
+		return index == null ? children.indexOf( object ) : index.indexOf( children, object );
 	}
 
 	@Override
@@ -69,7 +93,7 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 
 	@Override
 	public boolean contains( Object object ) {
-		return children == null ? false : children.contains( object );
+		return indexOf( object ) >= 0;
 	}
 
 	@Override
@@ -104,18 +128,19 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 		if( collection == null ) return false;
 
 		// Figure out if nodes need to be added.
+		Set<T> members = getMembers();
+		Set<T> nodes = Collections.newSetFromMap( new IdentityHashMap<T, Boolean>() );
 		List<T> children = new ArrayList<T>();
 		for( T node : collection ) {
-			if( !contains( node ) ) children.add( node );
+			if( node == null || members.contains( node ) || !nodes.add( node ) ) continue;
+			checkForCircularReference( node );
+			children.add( node );
 		}
 		if( children.size() == 0 ) return false;
 
-		// Add the nodes.
+		// Add the nodes with one operation.
 		Transaction.create();
-		for( T node : children ) {
-			add( index, node );
-			if( index < Integer.MAX_VALUE ) index++;
-		}
+		Transaction.submit( new InsertChildrenOperation<T>( this, index, children ) );
 		Transaction.commit();
 
 		return true;
@@ -164,18 +189,24 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 	}
 
 	@Override
+	@SuppressWarnings( "unchecked" )
 	public boolean removeAll( Collection<?> collection ) {
-		if( collection == null ) return false;
+		if( collection == null || children == null ) return false;
 
-		Transaction.create();
-		int count = 0;
+		// Figure out which nodes need to be removed.
+		Set<T> members = getMembers();
+		Set<T> nodes = Collections.newSetFromMap( new IdentityHashMap<T, Boolean>() );
 		for( Object node : collection ) {
-			if( !( node instanceof DataNode ) ) continue;
-			if( remove( node ) ) count++;
+			if( node instanceof DataNode && members.contains( node ) ) nodes.add( (T)node );
 		}
+		if( nodes.size() == 0 ) return false;
+
+		// Remove the nodes with one operation.
+		Transaction.create();
+		Transaction.submit( new RemoveChildrenOperation<T>( this, nodes ) );
 		Transaction.commit();
 
-		return count > 0;
+		return true;
 	}
 
 	@Override
@@ -317,36 +348,66 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 	}
 
 	@Override
-	void dispatchEvent( DataEvent event ) {
-		super.dispatchEvent( event );
+	void fireEvent( Collection<DataListener> listeners, DataEvent event ) {
+		super.fireEvent( listeners, event );
 
 		if( event.getType() == DataEvent.Type.DATA_CHILD ) {
 			switch( event.getAction() ) {
 				case INSERT: {
-					fireChildInsertedEvent( (DataChildEvent)event );
+					fireChildInsertedEvent( listeners, (DataChildEvent)event );
 					return;
 				}
 				case REMOVE: {
-					fireChildRemovedEvent( (DataChildEvent)event );
+					fireChildRemovedEvent( listeners, (DataChildEvent)event );
 					return;
 				}
 			}
+		} else if( event.getType() == DataEvent.Type.DATA_CHILDREN ) {
+			switch( event.getAction() ) {
+				case INSERT: {
+					fireChildrenInsertedEvent( listeners, (DataChildrenEvent)event );
+					return;
+				}
+				case REMOVE: {
+					fireChildrenRemovedEvent( listeners, (DataChildrenEvent)event );
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the children added or removed since the last time setModified( false )
+	 * was called, or null if there are none.
+	 */
+	Map<DataNode, DataEvent.Action> getChildActions() {
+		return addRemoveChildren;
+	}
+
+	@Override
+	DataSnapshot[] createChildSnapshots( long version ) {
+		List<T> children = this.children;
+		if( children == null ) return null;
+
+		DataSnapshot[] snapshots = new DataSnapshot[children.size()];
+		int index = 0;
+		for( T child : children ) {
+			snapshots[index++] = child.createSnapshot( version );
 		}
+		return snapshots;
 	}
 
 	/*
 	 * Similar logic is found in DataNode.dataNodeChildModified().
 	 */
-	void listNodeChildModified( boolean modified ) {
-		if( modified ) {
-			modifiedChildCount++;
-		} else {
-			modifiedChildCount--;
+	void listNodeChildModified( int modifiedCount, int unmodifiedCount ) {
+		modifiedChildCount -= unmodifiedCount;
 
-			// The reason for the following line is that doUnmodify() is 
-			// processed by transactions before processing child and parent nodes.
-			if( modifiedChildCount < 0 ) modifiedChildCount = 0;
-		}
+		// The reason for the following line is that doUnmodify() is 
+		// processed by transactions before processing child and parent nodes.
+		if( modifiedChildCount < 0 ) modifiedChildCount = 0;
+
+		modifiedChildCount += modifiedCount;
 
 		updateModifiedFlag();
 	}
@@ -357,8 +418,98 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 		if( index > children.size() ) index = children.size();
 
 		children.add( index, child );
+		if( this.index != null ) this.index.insert( index, Collections.singletonList( child ) );
 		child.setParent( this );
+		addChildAction( child );
+
+		updateModifiedFlag();
+	}
+
+	/**
+	 * Add the children at the index. The child list is copied only once for all
+	 * the children.
+	 */
+	void doAddChildren( int index, List<T> nodes ) {
+		if( children == null ) children = new CopyOnWriteArrayList<T>();
+
+		if( index > children.size() ) index = children.size();
 
+		children.addAll( index, nodes );
+		if( this.index != null ) this.index.insert( index, nodes );
+		for( T child : nodes ) {
+			child.setParent( this );
+			addChildAction( child );
+		}
+
+		updateModifiedFlag();
+	}
+
+	void doRemoveChild( T child ) {
+		if( index == null ) {
+			children.remove( child );
+		} else {
+			int position = indexOf( child );
+			if( position >= 0 ) children.remove( position );
+			index.remove( Collections.singletonList( child ) );
+		}
+		child.setParent( null );
+		removeChildAction( child );
+
+		if( children.size() == 0 ) children = null;
+
+		updateModifiedFlag();
+	}
+
+	/**
+	 * Remove the children. The child list is copied only once for all the
+	 * children.
+	 */
+	void doRemoveChildren( List<T> nodes ) {
+		Set<T> members = Collections.newSetFromMap( new IdentityHashMap<T, Boolean>() );
+		members.addAll( nodes );
+
+		children.removeAll( members );
+		if( index != null ) index.remove( nodes );
+		for( T child : nodes ) {
+			child.setParent( null );
+			removeChildAction( child );
+		}
+
+		if( children.size() == 0 ) children = null;
+
+		updateModifiedFlag();
+	}
+
+	/**
+	 * Get a set view for child membership tests. Uses the index if the list is
+	 * indexed, otherwise a hash set of the children.
+	 */
+	private Set<T> getMembers() {
+		List<T> children = this.children;
+		if( children == null ) return Collections.<T> emptySet();
+		if( index == null ) return new HashSet<T>( children );
+
+		return new AbstractSet<T>() {
+
+			@Override
+			public boolean contains( Object object ) {
+				return indexOf( object ) >= 0;
+			}
+
+			@Override
+			public Iterator<T> iterator() {
+				return DataList.this.iterator();
+			}
+
+			@Override
+			public int size() {
+				return DataList.this.size();
+			}
+
+		};
+	}
+
+	private void addChildAction( T child ) {
 		if( addRemoveChildren == null ) {
 			addRemoveChildren = new ConcurrentHashMap<DataNode, DataEvent.Action>();
 			addRemoveChildren.put( child, DataEvent.Action.INSERT );
@@ -370,14 +521,9 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 				addRemoveChildren.put( child, DataEvent.Action.INSERT );
 			}
 		}
-
-		updateModifiedFlag();
 	}
 
-	void doRemoveChild( T child ) {
-		children.remove( child );
-		child.setParent( null );
-
+	private void removeChildAction( T child ) {
 		if( addRemoveChildren == null ) {
 			addRemoveChildren = new ConcurrentHashMap<DataNode, DataEvent.Action>();
 			addRemoveChildren.put( child, DataEvent.Action.REMOVE );
@@ -389,22 +535,30 @@ public class DataList<T extends DataNode> extends DataNode implements List<T> {
 				addRemoveChildren.put( child, DataEvent.Action.REMOVE );
 			}
 		}
-
-		if( children.size() == 0 ) children = null;
-
-		updateModifiedFlag();
 	}
 
-	private void fireChildInsertedEvent( DataChildEvent event ) {
+	private void fireChildInsertedEvent( Collection<DataListener> listeners, DataChildEvent event ) {
 		for( DataListener listener : listeners ) {
 			listener.childInserted( event );
 		}
 	}
 
-	private void fireChildRemovedEvent( DataChildEvent event ) {
+	private void fireChildRemovedEvent( Collection<DataListener> listeners, DataChildEvent event ) {
 		for( DataListener listener : listeners ) {
 			listener.childRemoved( event );
 		}
 	}
 
+	private void fireChildrenInsertedEvent( Collection<DataListener> listeners, DataChildrenEvent event ) {
+		for( DataListener listener : listeners ) {
+			listener.childrenInserted( event );
+		}
+	}
+
+	private void fireChildrenRemovedEvent( Collection<DataListener> listeners, DataChildrenEvent event ) {
+		for( DataListener listener : listeners ) {
+			listener.childrenRemoved( event );
+		}
+	}
+
 }
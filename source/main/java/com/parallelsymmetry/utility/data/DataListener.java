@@ -12,4 +12,32 @@ public interface DataListener {
 
 	void childRemoved( DataChildEvent event );
 
+	/**
+	 * Called when a set of children is inserted by one operation. By default
+	 * this calls childInserted() for each child. Listeners that do not need the
+	 * individual child events can override this method to handle the children
+	 * as one event.
+	 * 
+	 * @param event The aggregated child event.
+	 */
+	default void childrenInserted( DataChildrenEvent event ) {
+		for( DataChildEvent childEvent : event.getChildEvents() ) {
+			childInserted( childEvent );
+		}
+	}
+
+	/**
+	 * Called when a set of children is removed by one operation. By default
+	 * this calls childRemoved() for each child. Listeners that do not need the
+	 * individual child events can override this method to handle the children
+	 * as one event.
+	 * 
+	 * @param event The aggregated child event.
+	 */
+	default void childrenRemoved( DataChildrenEvent event ) {
+		for( DataChildEvent childEvent : event.getChildEvents() ) {
+			childRemoved( childEvent );
+		}
+	}
+
 }
@@ -1,12 +1,14 @@
 package com.parallelsymmetry.utility.data;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
 
 import com.parallelsymmetry.utility.ObjectUtil;
 
@@ -24,17 +26,35 @@ public abstract class DataNode {
 
 	private int modifiedAttributeCount;
 
-	private Map<String, Object> dataValues;
+	/**
+	 * The data values and the original values of modified data values.
+	 */
+	private AttributeStore dataValues;
 
-	private Map<String, Object> metaValues;
+	/**
+	 * The meta values and the original values of modified meta values.
+	 */
+	private AttributeStore metaValues;
 
-	private Map<String, Object> modifiedDataValues;
+	/**
+	 * Resources are not part of the data and are put outside of transactions,
+	 * from any thread, so they are kept in a concurrent map.
+	 */
+	private volatile Map<String, Object> resources;
 
-	private Map<String, Object> modifiedMetaValues;
+	protected Set<DataListener> listeners = new CopyOnWriteArraySet<DataListener>();
 
-	private Map<String, Object> resources;
+	/**
+	 * The dispatcher for the asynchronous data listeners, created when the first
+	 * asynchronous listener is added.
+	 */
+	private volatile AsyncDataDispatcher asyncDispatcher;
 
-	protected Set<DataListener> listeners = new CopyOnWriteArraySet<DataListener>();
+	/**
+	 * The snapshot of this node as of the last commit, or null if the node or a
+	 * node below it has changed since the snapshot was created.
+	 */
+	private volatile DataSnapshot snapshot;
 
 	/**
 	 * Is the node modified. The node is modified if any data value has been
@@ -88,6 +108,7 @@ public abstract class DataNode {
 		// Null attribute names are not allowed.
 		if( name == null ) throw new NullPointerException( "Data value name cannot be null." );
 
+		AttributeStore dataValues = this.dataValues;
 		return (T)( dataValues == null ? null : dataValues.get( name ) );
 	}
 
@@ -119,6 +140,41 @@ public abstract class DataNode {
 		Transaction.commit();
 	}
 
+	/**
+	 * Set several attribute values with one operation. The attributes are set in
+	 * the iteration order of the map and a null value removes the attribute.
+	 * 
+	 * @param values The attribute names and values.
+	 */
+	public void setAttributes( Map<String, ?> values ) {
+		List<String> names = new ArrayList<String>( values.size() );
+		List<Object> oldValues = new ArrayList<Object>( values.size() );
+		List<Object> newValues = new ArrayList<Object>( values.size() );
+
+		for( Map.Entry<String, ?> entry : values.entrySet() ) {
+			String name = entry.getKey();
+			Object newValue = entry.getValue();
+
+			// Null attribute names are not allowed.
+			if( name == null ) throw new NullPointerException( "Data value name cannot be null." );
+
+			// If the old value is equal to the new value no changes are necessary.
+			Object oldValue = getAttribute( name );
+			if( ObjectUtil.areEqual( oldValue, newValue ) ) continue;
+
+			if( newValue instanceof DataNode ) checkForCircularReference( (DataNode)newValue );
+
+			names.add( name );
+			oldValues.add( oldValue );
+			newValues.add( newValue );
+		}
+		if( names.size() == 0 ) return;
+
+		Transaction.create();
+		Transaction.submit( new SetAttributesOperation( this, names, oldValues, newValues ) );
+		Transaction.commit();
+	}
+
 	public int getModifiedAttributeCount() {
 		return modifiedAttributeCount;
 	}
@@ -151,12 +207,25 @@ public abstract class DataNode {
 		}
 	}
 
+	/**
+	 * Get an immutable snapshot of this node and the nodes below it as of the
+	 * last committed transaction. The snapshot is created the first time it is
+	 * requested after a change and is kept until the next change.
+	 * 
+	 * @return The snapshot.
+	 */
+	public DataSnapshot getSnapshot() {
+		DataSnapshot snapshot = this.snapshot;
+		return snapshot == null ? Transaction.createSnapshot( this ) : snapshot;
+	}
+
 	/**
 	 * Get the set of attribute keys.
 	 * 
 	 * @return The attribute key set.
 	 */
 	public Set<String> getAttributeKeys() {
+		AttributeStore dataValues = this.dataValues;
 		return dataValues == null ? new HashSet<String>() : dataValues.keySet();
 	}
 
@@ -166,6 +235,7 @@ public abstract class DataNode {
 	 * @return The resource key set.
 	 */
 	public Set<String> getResourceKeys() {
+		Map<String, Object> resources = this.resources;
 		return resources == null ? new HashSet<String>() : resources.keySet();
 	}
 
@@ -202,6 +272,7 @@ public abstract class DataNode {
 	 */
 	@SuppressWarnings( "unchecked" )
 	public <T> T getResource( String key ) {
+		Map<String, Object> resources = this.resources;
 		if( resources == null ) return null;
 		return (T)resources.get( key );
 	}
@@ -213,13 +284,15 @@ public abstract class DataNode {
 	 * @param value
 	 */
 	public void putResource( String key, Object value ) {
-		if( value == null ) {
-			if( resources == null ) return;
-			resources.remove( key );
-			if( resources.size() == 0 ) resources = null;
-		} else {
-			if( resources == null ) resources = new ConcurrentHashMap<String, Object>();
-			resources.put( key, value );
+		synchronized( this ) {
+			if( value == null ) {
+				if( resources == null ) return;
+				resources.remove( key );
+				if( resources.isEmpty() ) resources = null;
+			} else {
+				if( resources == null ) resources = new ConcurrentHashMap<String, Object>();
+				resources.put( key, value );
+			}
 		}
 	}
 
@@ -227,8 +300,41 @@ public abstract class DataNode {
 		listeners.add( listener );
 	}
 
+	/**
+	 * Add a data listener that is called either synchronously by the committing
+	 * thread, while the commit still holds the tree, or asynchronously by an
+	 * executor thread after the commit has returned. Asynchronous listeners
+	 * receive the events of this node in commit order and may modify the data.
+	 * 
+	 * @param listener The data listener.
+	 * @param asynchronous True to deliver the events asynchronously.
+	 */
+	public void addDataListener( DataListener listener, boolean asynchronous ) {
+		if( !asynchronous ) {
+			addDataListener( listener );
+			return;
+		}
+
+		synchronized( this ) {
+			if( asyncDispatcher == null ) asyncDispatcher = new AsyncDataDispatcher( this );
+		}
+		asyncDispatcher.getListeners().add( listener );
+	}
+
 	public void removeDataListener( DataListener listener ) {
 		listeners.remove( listener );
+		AsyncDataDispatcher asyncDispatcher = this.asyncDispatcher;
+		if( asyncDispatcher != null ) asyncDispatcher.getListeners().remove( listener );
+	}
+
+	/**
+	 * Set the executor that delivers events to asynchronous data listeners. The
+	 * default executor uses a pool of daemon threads.
+	 * 
+	 * @param executor The executor.
+	 */
+	public static void setAsyncDataListenerExecutor( Executor executor ) {
+		AsyncDataDispatcher.setExecutor( executor );
 	}
 
 	//	@Override
@@ -244,14 +350,13 @@ public abstract class DataNode {
 
 		DataNode that = (DataNode)object;
 
-		Map<String, Object> thisAttr = this.dataValues;
-		Map<String, Object> thatAttr = that.dataValues;
-
-		if( thisAttr == null && thatAttr == null ) return true;
-		if( thisAttr == null && thatAttr != null ) return false;
-		if( thisAttr != null && thatAttr == null ) return false;
+		AttributeStore thisAttr = this.dataValues;
+		AttributeStore thatAttr = that.dataValues;
 
-		if( thisAttr.size() != thatAttr.size() ) return false;
+		int thisSize = thisAttr == null ? 0 : thisAttr.size();
+		int thatSize = thatAttr == null ? 0 : thatAttr.size();
+		if( thisSize == 0 && thatSize == 0 ) return true;
+		if( thisSize != thatSize ) return false;
 
 		Set<String> thisKeys = thisAttr.keySet();
 		Set<String> thatKeys = thatAttr.keySet();
@@ -278,6 +383,7 @@ public abstract class DataNode {
 
 		if( MODIFIED.equals( name ) ) return (T)(isModified() ? Boolean.TRUE : Boolean.FALSE);
 
+		AttributeStore metaValues = this.metaValues;
 		return (T)( metaValues == null ? null : metaValues.get( name ) );
 	}
 
@@ -301,7 +407,10 @@ public abstract class DataNode {
 				selfModified = true;
 			} else {
 				selfModified = false;
-				modifiedDataValues = null;
+				if( dataValues != null ) {
+					dataValues.clearOriginals();
+					if( dataValues.isEmpty() ) dataValues = null;
+				}
 				modifiedAttributeCount = 0;
 			}
 			updateModifiedFlag();
@@ -320,6 +429,7 @@ public abstract class DataNode {
 		setMetaValue( MODIFIED, false );
 
 		// Clear the modified flag of any data value nodes.
+		AttributeStore dataValues = this.dataValues;
 		if( dataValues != null ) {
 			for( Object child : dataValues.values() ) {
 				if( child instanceof DataNode ) {
@@ -337,80 +447,72 @@ public abstract class DataNode {
 	}
 
 	void doSetDataValue( String name, Object oldValue, Object newValue ) {
-		// Create the attribute map if necessary.
-		if( dataValues == null ) dataValues = new ConcurrentHashMap<String, Object>();
+		// Create the attribute store if necessary.
+		if( dataValues == null ) dataValues = new AttributeStore();
 
 		// Set the attribute value.
+		dataValues.put( name, newValue );
 		if( newValue == null ) {
-			dataValues.remove( name );
 			if( oldValue instanceof DataNode ) ( (DataNode)oldValue ).setParent( null );
 		} else {
-			dataValues.put( name, newValue );
 			if( newValue instanceof DataNode ) ( (DataNode)newValue ).setParent( this );
 		}
 
-		// Remove the attribute map if necessary.
-		if( dataValues.size() == 0 ) dataValues = null;
-
-		// Update the modified attribute value map.
-		Object preValue = modifiedDataValues == null ? null : modifiedDataValues.get( name );
+		// Update the modified attribute original value.
+		Object preValue = dataValues.getOriginal( name );
 		if( preValue == null ) {
 			// Only add the value if there is not an existing previous value.
-			if( modifiedDataValues == null ) modifiedDataValues = new ConcurrentHashMap<String, Object>();
-			modifiedDataValues.put( name, oldValue == null ? NULL : oldValue );
+			dataValues.putOriginal( name, oldValue == null ? NULL : oldValue );
 			modifiedAttributeCount++;
 		} else if( ObjectUtil.areEqual( preValue == NULL ? null : preValue, newValue ) ) {
-			modifiedDataValues.remove( name );
+			dataValues.putOriginal( name, null );
 			modifiedAttributeCount--;
-			if( modifiedDataValues.size() == 0 ) modifiedDataValues = null;
 		}
 
+		// Remove the attribute store if necessary.
+		if( dataValues.isEmpty() ) dataValues = null;
+
 		updateModifiedFlag();
 	}
 
 	void doSetMetaValue( String name, Object oldValue, Object newValue ) {
-		// Create the meta value map if necessary.
-		if( metaValues == null ) metaValues = new ConcurrentHashMap<String, Object>();
+		// Create the meta value store if necessary.
+		if( metaValues == null ) metaValues = new AttributeStore();
 
 		// Set the value.
+		metaValues.put( name, newValue );
 		if( newValue == null ) {
-			metaValues.remove( name );
 			if( oldValue instanceof DataNode ) ( (DataNode)oldValue ).setParent( null );
 		} else {
-			metaValues.put( name, newValue );
 			if( newValue instanceof DataNode ) ( (DataNode)newValue ).setParent( this );
 		}
 
-		// Remove the meta value map if necessary.
-		if( metaValues.size() == 0 ) metaValues = null;
-
-		// Update the modified meta value map.
-		Object preValue = modifiedMetaValues == null ? null : modifiedMetaValues.get( name );
+		// Update the modified meta value original value.
+		Object preValue = metaValues.getOriginal( name );
 		if( preValue == null ) {
 			// Only add the value if there is not an existing previous value.
-			if( modifiedMetaValues == null ) modifiedMetaValues = new ConcurrentHashMap<String, Object>();
-			modifiedMetaValues.put( name, oldValue == null ? NULL : oldValue );
+			metaValues.putOriginal( name, oldValue == null ? NULL : oldValue );
 		} else if( ObjectUtil.areEqual( preValue == NULL ? null : preValue, newValue ) ) {
-			modifiedMetaValues.remove( name );
-			if( modifiedMetaValues.size() == 0 ) modifiedMetaValues = null;
+			metaValues.putOriginal( name, null );
 		}
 
+		// Remove the meta value store if necessary.
+		if( metaValues.isEmpty() ) metaValues = null;
+
 		applyMetaValue( name, oldValue, newValue );
 	}
 
 	/*
 	 * Similar logic is found in DataList.listNodeChildModified().
 	 */
-	void dataNodeModified( boolean modified ) {
-		if( modified ) {
-			modifiedAttributeCount++;
-		} else {
-			modifiedAttributeCount--;
+	void dataNodeModified( int modifiedCount, int unmodifiedCount ) {
+		modifiedAttributeCount -= unmodifiedCount;
 
-			// The reason for the following line is that doUnmodify() is 
-			// processed by transactions before processing child and parent nodes.
-			if( modifiedAttributeCount < 0 ) modifiedAttributeCount = 0;
-		}
+		// The reason for the following line is that doUnmodify() is 
+		// processed by transactions before processing child and parent nodes.
+		if( modifiedAttributeCount < 0 ) modifiedAttributeCount = 0;
+
+		modifiedAttributeCount += modifiedCount;
 
 		updateModifiedFlag();
 	}
@@ -420,18 +522,88 @@ public abstract class DataNode {
 		this.parent = parent;
 	}
 
+	/**
+	 * Create the snapshot of this node, reusing the existing snapshots of the
+	 * nodes below it. Called while the commit stripe of the node is locked.
+	 */
+	DataSnapshot createSnapshot( long version ) {
+		DataSnapshot snapshot = this.snapshot;
+		if( snapshot != null ) return snapshot;
+
+		AttributeStore dataValues = this.dataValues;
+		Object[] entries = dataValues == null ? new Object[0] : dataValues.entries();
+		for( int index = 1; index < entries.length; index += 2 ) {
+			if( entries[index] instanceof DataNode ) entries[index] = ( (DataNode)entries[index] ).createSnapshot( version );
+		}
+
+		snapshot = new DataSnapshot( getClass(), version, modified, entries, createChildSnapshots( version ) );
+		this.snapshot = snapshot;
+		return snapshot;
+	}
+
+	/**
+	 * Get the attribute keys and values packed in one array, the key of each
+	 * attribute followed by the value.
+	 */
+	Object[] getAttributeEntries() {
+		AttributeStore dataValues = this.dataValues;
+		return dataValues == null ? new Object[0] : dataValues.entries();
+	}
+
+	/**
+	 * Get the keys of the attributes modified since the last time
+	 * setModified( false ) was called.
+	 */
+	Set<String> getModifiedAttributeKeys() {
+		AttributeStore dataValues = this.dataValues;
+		return dataValues == null ? new HashSet<String>() : dataValues.originalKeySet();
+	}
+
+	DataSnapshot[] createChildSnapshots( long version ) {
+		return null;
+	}
+
+	/**
+	 * Discard the snapshot of this node and the snapshots of the ancestors. A
+	 * node with a snapshot always has snapshots below it so the walk stops at
+	 * the first node without a snapshot.
+	 */
+	void invalidateSnapshot() {
+		DataNode node = this;
+		while( node != null && node.snapshot != null ) {
+			node.snapshot = null;
+			node = node.parent;
+		}
+	}
+
+	boolean hasDataListeners() {
+		AsyncDataDispatcher asyncDispatcher = this.asyncDispatcher;
+		return !listeners.isEmpty() || ( asyncDispatcher != null && asyncDispatcher.hasListeners() );
+	}
+
+	/**
+	 * Call the synchronous data listeners and queue the event for the
+	 * asynchronous data listeners.
+	 */
 	void dispatchEvent( DataEvent event ) {
+		fireEvent( listeners, event );
+
+		AsyncDataDispatcher asyncDispatcher = this.asyncDispatcher;
+		if( asyncDispatcher != null ) asyncDispatcher.dispatch( event );
+	}
+
+	void fireEvent( Collection<DataListener> listeners, DataEvent event ) {
 		switch( event.getType() ) {
 			case DATA_CHANGED: {
-				fireDataChanged( (DataChangedEvent)event );
+				fireDataChanged( listeners, (DataChangedEvent)event );
 				break;
 			}
 			case META_ATTRIBUTE: {
-				fireMetaAttributeChanged( (MetaAttributeEvent)event );
+				fireMetaAttributeChanged( listeners, (MetaAttributeEvent)event );
 				break;
 			}
 			case DATA_ATTRIBUTE: {
-				fireDataAttributeChanged( (DataAttributeEvent)event );
+				fireDataAttributeChanged( listeners, (DataAttributeEvent)event );
 				break;
 			}
 		}
@@ -445,19 +617,19 @@ public abstract class DataNode {
 		}
 	}
 
-	private void fireDataChanged( DataChangedEvent event ) {
-		for( DataListener listener : this.listeners ) {
+	private void fireDataChanged( Collection<DataListener> listeners, DataChangedEvent event ) {
+		for( DataListener listener : listeners ) {
 			listener.dataChanged( event );
 		}
 	}
 
-	private void fireDataAttributeChanged( DataAttributeEvent event ) {
+	private void fireDataAttributeChanged( Collection<DataListener> listeners, DataAttributeEvent event ) {
 		for( DataListener listener : listeners ) {
 			listener.dataAttributeChanged( event );
 		}
 	}
 
-	private void fireMetaAttributeChanged( MetaAttributeEvent event ) {
+	private void fireMetaAttributeChanged( Collection<DataListener> listeners, MetaAttributeEvent event ) {
 		for( DataListener listener : listeners ) {
 			listener.metaAttributeChanged( event );
 		}
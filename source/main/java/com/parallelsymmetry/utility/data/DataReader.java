@@ -0,0 +1,238 @@
+package com.parallelsymmetry.utility.data;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads data node trees written by a data writer. Each node is created and
+ * filled as it is read so the tree is built directly from the stream. The nodes
+ * are created with the no argument constructor of the node class and the nodes
+ * returned by read() are not modified.
+ */
+public class DataReader implements Closeable {
+
+	private final DataInputStream input;
+
+	private final ClassLoader loader;
+
+	private final DataJournal journal;
+
+	private final List<String> strings = new ArrayList<String>();
+
+	private boolean started;
+
+	public DataReader( InputStream input ) {
+		this( input, (ClassLoader)null );
+	}
+
+	/**
+	 * Create a reader that loads the node and enum classes with the class loader.
+	 * If the class loader is null the context class loader of the reading thread
+	 * is used.
+	 *
+	 * @param input The input stream.
+	 * @param loader The class loader.
+	 */
+	public DataReader( InputStream input, ClassLoader loader ) {
+		this( input, loader, null );
+	}
+
+	/**
+	 * Create a reader for a journal. A journal reader does not read the stream
+	 * header and registers each node with the journal by the node id.
+	 */
+	DataReader( InputStream input, DataJournal journal ) {
+		this( input, null, journal );
+	}
+
+	private DataReader( InputStream input, ClassLoader loader, DataJournal journal ) {
+		this.input = input instanceof DataInputStream ? (DataInputStream)input : new DataInputStream( new BufferedInputStream( input ) );
+		this.loader = loader;
+		this.journal = journal;
+	}
+
+	/**
+	 * Read the next node and the nodes below it.
+	 *
+	 * @return The node or null if the end of the stream has been reached.
+	 * @throws IOException If the stream cannot be read or is not a data stream.
+	 */
+	public DataNode read() throws IOException {
+		if( !started && journal == null ) {
+			if( input.readInt() != DataCodec.MAGIC ) throw new IOException( "Not a data stream." );
+			int version = input.readUnsignedByte();
+			if( version != DataCodec.VERSION ) throw new IOException( "Unsupported data stream version: " + version );
+		}
+		started = true;
+
+		int type = input.read();
+		if( type < 0 ) return null;
+		if( type != DataCodec.NODE ) throw new IOException( "Data node expected: " + type );
+
+		DataNode node = readNode();
+		node.setModified( false );
+		return node;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+	long readNumber() throws IOException {
+		return DataCodec.readNumber( input );
+	}
+
+	int readByte() throws IOException {
+		return input.readUnsignedByte();
+	}
+
+	String readString() throws IOException {
+		int index = readCount();
+		if( index == 0 ) {
+			String string = readText();
+			strings.add( string );
+			return string;
+		}
+
+		if( index > strings.size() ) throw new IOException( "Invalid string reference: " + index );
+		return strings.get( index - 1 );
+	}
+
+	Object readValue() throws IOException {
+		int type = input.readUnsignedByte();
+		switch( type ) {
+			case DataCodec.NULL: {
+				return null;
+			}
+			case DataCodec.NODE: {
+				return readNode();
+			}
+			case DataCodec.STRING: {
+				return readText();
+			}
+			case DataCodec.TRUE: {
+				return Boolean.TRUE;
+			}
+			case DataCodec.FALSE: {
+				return Boolean.FALSE;
+			}
+			case DataCodec.BYTE: {
+				return input.readByte();
+			}
+			case DataCodec.SHORT: {
+				return (short)DataCodec.readSignedNumber( input );
+			}
+			case DataCodec.CHARACTER: {
+				return input.readChar();
+			}
+			case DataCodec.INTEGER: {
+				return (int)DataCodec.readSignedNumber( input );
+			}
+			case DataCodec.LONG: {
+				return DataCodec.readSignedNumber( input );
+			}
+			case DataCodec.FLOAT: {
+				return input.readFloat();
+			}
+			case DataCodec.DOUBLE: {
+				return input.readDouble();
+			}
+			case DataCodec.BYTES: {
+				byte[] bytes = new byte[readCount()];
+				input.readFully( bytes );
+				return bytes;
+			}
+			case DataCodec.ENUM: {
+				return readEnum();
+			}
+			case DataCodec.DATE: {
+				return new Date( input.readLong() );
+			}
+		}
+		throw new IOException( "Unknown value type: " + type );
+	}
+
+	/**
+	 * Read a node. The attributes are set with one transaction and the children
+	 * are added with one transaction after the nodes below them are complete.
+	 */
+	@SuppressWarnings( "unchecked" )
+	private DataNode readNode() throws IOException {
+		DataNode node = createNode( readString() );
+		if( journal != null ) journal.registerNode( readNumber(), node );
+
+		int count = readCount();
+		if( count > 0 ) {
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			for( int index = 0; index < count; index++ ) {
+				values.put( readString(), readValue() );
+			}
+			node.setAttributes( values );
+		}
+
+		if( node instanceof DataList ) {
+			count = readCount();
+			List<DataNode> children = new ArrayList<DataNode>( count );
+			for( int index = 0; index < count; index++ ) {
+				if( input.readUnsignedByte() != DataCodec.NODE ) throw new IOException( "Data node expected." );
+				children.add( readNode() );
+			}
+			( (DataList<DataNode>)node ).addAll( children );
+		}
+
+		return node;
+	}
+
+	private DataNode createNode( String name ) throws IOException {
+		try {
+			Class<?> type = loadClass( name );
+			if( !DataNode.class.isAssignableFrom( type ) ) throw new IOException( "Not a data node class: " + name );
+			return (DataNode)type.getDeclaredConstructor().newInstance();
+		} catch( ReflectiveOperationException exception ) {
+			throw new IOException( "Unable to create data node: " + name, exception );
+		}
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private Object readEnum() throws IOException {
+		String name = readString();
+		String constant = readString();
+		try {
+			return Enum.valueOf( (Class<? extends Enum>)loadClass( name ), constant );
+		} catch( ClassNotFoundException exception ) {
+			throw new IOException( "Unable to load enum: " + name, exception );
+		} catch( IllegalArgumentException exception ) {
+			throw new IOException( "Unknown enum constant: " + name + "." + constant, exception );
+		}
+	}
+
+	private Class<?> loadClass( String name ) throws ClassNotFoundException {
+		ClassLoader loader = this.loader;
+		if( loader == null ) loader = Thread.currentThread().getContextClassLoader();
+		if( loader == null ) loader = DataReader.class.getClassLoader();
+		return Class.forName( name, false, loader );
+	}
+
+	int readCount() throws IOException {
+		long count = readNumber();
+		if( count > Integer.MAX_VALUE ) throw new IOException( "Invalid count: " + count );
+		return (int)count;
+	}
+
+	private String readText() throws IOException {
+		byte[] bytes = new byte[readCount()];
+		input.readFully( bytes );
+		return new String( bytes, StandardCharsets.UTF_8 );
+	}
+
+}
@@ -0,0 +1,115 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable view of a data node, and the nodes below it, as of the last
+ * committed transaction. A snapshot is obtained from DataNode.getSnapshot() and
+ * can be traversed without locks while the data node continues to change.
+ * <p>
+ * Attribute values that are data nodes, and the children of data lists, are
+ * available as snapshots. A snapshot is kept by the data node until the node,
+ * or a node below it, is changed. Snapshots of unchanged nodes are shared by
+ * the snapshots taken before and after a change.
+ */
+public final class DataSnapshot {
+
+	private static final DataSnapshot[] NO_CHILDREN = new DataSnapshot[0];
+
+	private final Class<? extends DataNode> type;
+
+	private final long version;
+
+	private final boolean modified;
+
+	private final Object[] entries;
+
+	private final DataSnapshot[] children;
+
+	DataSnapshot( Class<? extends DataNode> type, long version, boolean modified, Object[] entries, DataSnapshot[] children ) {
+		this.type = type;
+		this.version = version;
+		this.modified = modified;
+		this.entries = entries;
+		this.children = children == null ? NO_CHILDREN : children;
+	}
+
+	/**
+	 * Get the class of the data node.
+	 * 
+	 * @return The data node class.
+	 */
+	public Class<? extends DataNode> getType() {
+		return type;
+	}
+
+	/**
+	 * Get the commit version the snapshot was taken at. The version increases
+	 * with every committed transaction. A snapshot that is shared with a later
+	 * snapshot keeps the version it was taken at.
+	 * 
+	 * @return The commit version.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * Get an attribute value. Attribute values that are data nodes are returned
+	 * as snapshots.
+	 * 
+	 * @param name The attribute name.
+	 * @return The attribute value or null if the attribute is not set.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public <T> T getAttribute( String name ) {
+		if( name == null ) throw new NullPointerException( "Data value name cannot be null." );
+		for( int index = 0; index < entries.length; index += 2 ) {
+			if( name.equals( entries[index] ) ) return (T)entries[index + 1];
+		}
+		return null;
+	}
+
+	public Set<String> getAttributeKeys() {
+		Set<String> keys = new LinkedHashSet<String>();
+		for( int index = 0; index < entries.length; index += 2 ) {
+			keys.add( (String)entries[index] );
+		}
+		return keys;
+	}
+
+	public int getAttributeCount() {
+		return entries.length / 2;
+	}
+
+	/**
+	 * Get the child snapshots. Only snapshots of data lists have children.
+	 * 
+	 * @return The list of child snapshots.
+	 */
+	public List<DataSnapshot> getChildren() {
+		return Collections.unmodifiableList( Arrays.asList( children ) );
+	}
+
+	public DataSnapshot getChild( int index ) {
+		return children[index];
+	}
+
+	public int getChildCount() {
+		return children.length;
+	}
+
+	@Override
+	public String toString() {
+		return type.getSimpleName() + "[version=" + version + " attributes=" + getAttributeCount() + " children=" + children.length + "]";
+	}
+
+}
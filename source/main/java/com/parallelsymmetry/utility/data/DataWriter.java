@@ -0,0 +1,179 @@
+package com.parallelsymmetry.utility.data;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes data node trees to a stream in a compact binary form. Each node is
+ * written with the class name, the attributes and, for data lists, the
+ * children. The tree is written as it is walked so no copy of the tree is made.
+ * Class names and attribute keys are written once per stream and referred to by
+ * number after that.
+ * <p>
+ * Attribute values may be data nodes, strings, primitive wrappers, byte arrays,
+ * enums and dates. Other values cause an IOException. Meta values and resources
+ * are not written.
+ * <p>
+ * The tree must not be changed while it is written.
+ */
+public class DataWriter implements Closeable, Flushable {
+
+	private final DataOutputStream output;
+
+	private final DataJournal journal;
+
+	private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+	private boolean started;
+
+	public DataWriter( OutputStream output ) {
+		this( output, null );
+	}
+
+	/**
+	 * Create a writer for a journal. A journal writer does not write the stream
+	 * header and writes a new journal node id with each node.
+	 */
+	DataWriter( OutputStream output, DataJournal journal ) {
+		this.output = new DataOutputStream( output instanceof BufferedOutputStream ? output : new BufferedOutputStream( output ) );
+		this.journal = journal;
+	}
+
+	/**
+	 * Write the node and the nodes below it.
+	 *
+	 * @param node The node to write.
+	 * @throws IOException If the stream cannot be written or an attribute value
+	 *           is not supported.
+	 */
+	public void write( DataNode node ) throws IOException {
+		if( node == null ) throw new NullPointerException( "Data node cannot be null." );
+
+		if( !started && journal == null ) {
+			output.writeInt( DataCodec.MAGIC );
+			output.writeByte( DataCodec.VERSION );
+		}
+		started = true;
+
+		writeNode( node );
+	}
+
+	@Override
+	public void flush() throws IOException {
+		output.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		output.close();
+	}
+
+	void writeNumber( long value ) throws IOException {
+		DataCodec.writeNumber( output, value );
+	}
+
+	void writeByte( int value ) throws IOException {
+		output.writeByte( value );
+	}
+
+	/**
+	 * Write a string from the string table. The first time a string is written
+	 * it is added to the table, after that only the table index is written.
+	 */
+	void writeString( String string ) throws IOException {
+		Integer index = strings.get( string );
+		if( index == null ) {
+			writeNumber( 0 );
+			writeText( string );
+			strings.put( string, strings.size() );
+		} else {
+			writeNumber( index + 1 );
+		}
+	}
+
+	void writeValue( Object value ) throws IOException {
+		if( value == null ) {
+			output.writeByte( DataCodec.NULL );
+		} else if( value instanceof DataNode ) {
+			writeNode( (DataNode)value );
+		} else if( value instanceof String ) {
+			output.writeByte( DataCodec.STRING );
+			writeText( (String)value );
+		} else if( value instanceof Boolean ) {
+			output.writeByte( (Boolean)value ? DataCodec.TRUE : DataCodec.FALSE );
+		} else if( value instanceof Byte ) {
+			output.writeByte( DataCodec.BYTE );
+			output.writeByte( (Byte)value );
+		} else if( value instanceof Short ) {
+			output.writeByte( DataCodec.SHORT );
+			DataCodec.writeSignedNumber( output, (Short)value );
+		} else if( value instanceof Character ) {
+			output.writeByte( DataCodec.CHARACTER );
+			output.writeChar( (Character)value );
+		} else if( value instanceof Integer ) {
+			output.writeByte( DataCodec.INTEGER );
+			DataCodec.writeSignedNumber( output, (Integer)value );
+		} else if( value instanceof Long ) {
+			output.writeByte( DataCodec.LONG );
+			DataCodec.writeSignedNumber( output, (Long)value );
+		} else if( value instanceof Float ) {
+			output.writeByte( DataCodec.FLOAT );
+			output.writeFloat( (Float)value );
+		} else if( value instanceof Double ) {
+			output.writeByte( DataCodec.DOUBLE );
+			output.writeDouble( (Double)value );
+		} else if( value instanceof byte[] ) {
+			byte[] bytes = (byte[])value;
+			output.writeByte( DataCodec.BYTES );
+			writeNumber( bytes.length );
+			output.write( bytes );
+		} else if( value instanceof Enum ) {
+			Enum<?> constant = (Enum<?>)value;
+			output.writeByte( DataCodec.ENUM );
+			writeString( constant.getDeclaringClass().getName() );
+			writeString( constant.name() );
+		} else if( value instanceof Date ) {
+			output.writeByte( DataCodec.DATE );
+			output.writeLong( ( (Date)value ).getTime() );
+		} else {
+			throw new IOException( "Unsupported attribute value type: " + value.getClass().getName() );
+		}
+	}
+
+	private void writeNode( DataNode node ) throws IOException {
+		output.writeByte( DataCodec.NODE );
+		writeString( node.getClass().getName() );
+		if( journal != null ) writeNumber( journal.createId( node ) );
+
+		Object[] entries = node.getAttributeEntries();
+		writeNumber( entries.length / 2 );
+		for( int index = 0; index < entries.length; index += 2 ) {
+			writeString( (String)entries[index] );
+			writeValue( entries[index + 1] );
+		}
+
+		if( node instanceof DataList ) {
+			DataList<?> list = (DataList<?>)node;
+			Object[] children = list.toArray();
+			writeNumber( children.length );
+			for( Object child : children ) {
+				writeNode( (DataNode)child );
+			}
+		}
+	}
+
+	private void writeText( String text ) throws IOException {
+		byte[] bytes = text.getBytes( StandardCharsets.UTF_8 );
+		writeNumber( bytes.length );
+		output.write( bytes );
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.parallelsymmetry.utility.data;
 
+import java.util.Collection;
+import java.util.Collections;
+
 class InsertChildOperation<T extends DataNode> extends Operation {
 
 	private DataList<T> list;
@@ -26,4 +29,9 @@ class InsertChildOperation<T extends DataNode> extends Operation {
 		return result;
 	}
 
+	@Override
+	Collection<DataNode> getRelatedNodes() {
+		return Collections.<DataNode> singletonList( child );
+	}
+
 }
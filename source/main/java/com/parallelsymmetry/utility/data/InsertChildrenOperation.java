@@ -0,0 +1,44 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+class InsertChildrenOperation<T extends DataNode> extends Operation {
+
+	private DataList<T> list;
+
+	private int index;
+
+	private List<T> children;
+
+	public InsertChildrenOperation( DataList<T> list, int index, List<T> children ) {
+		super( list );
+		this.list = list;
+		this.index = index;
+		this.children = children;
+	}
+
+	@Override
+	protected OperationResult process() {
+		OperationResult result = new OperationResult( this );
+
+		if( index > list.size() ) index = list.size();
+		list.doAddChildren( index, children );
+
+		int count = children.size();
+		int[] indexes = new int[count];
+		for( int item = 0; item < count; item++ ) {
+			indexes[item] = index + item;
+		}
+		result.addEvent( new DataChildrenEvent( DataEvent.Action.INSERT, list, list, indexes, children ) );
+
+		return result;
+	}
+
+	@Override
+	Collection<DataNode> getRelatedNodes() {
+		return Collections.<DataNode> unmodifiableList( children );
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.parallelsymmetry.utility.data;
 
+import java.util.Collection;
+import java.util.Collections;
+
 import com.parallelsymmetry.utility.JavaUtil;
 
 public abstract class Operation {
@@ -22,4 +25,15 @@ public abstract class Operation {
 
 	protected abstract OperationResult process();
 
+	/**
+	 * Get the nodes, other than the data node, that will be attached to the data
+	 * node by this operation. The trees of these nodes are locked along with the
+	 * tree of the data node when the transaction is committed.
+	 * 
+	 * @return The related nodes.
+	 */
+	Collection<DataNode> getRelatedNodes() {
+		return Collections.emptyList();
+	}
+
 }
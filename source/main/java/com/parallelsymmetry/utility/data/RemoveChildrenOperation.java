@@ -0,0 +1,71 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+class RemoveChildrenOperation<T extends DataNode> extends Operation {
+
+	private DataList<T> list;
+
+	private Set<T> children;
+
+	public RemoveChildrenOperation( DataList<T> list, Set<T> children ) {
+		super( list );
+		this.list = list;
+		this.children = children;
+	}
+
+	@Override
+	protected OperationResult process() {
+		OperationResult result = new OperationResult( this );
+
+		// Find the children in list order. The index of each child is the index
+		// it has when the children are removed one at a time in list order.
+		int[] positions = list.isIndexed() ? getIndexedPositions() : getPositions();
+		if( positions.length == 0 ) return result;
+
+		List<T> removed = new ArrayList<T>( positions.length );
+		int[] indexes = new int[positions.length];
+		for( int item = 0; item < positions.length; item++ ) {
+			indexes[item] = positions[item] - item;
+			removed.add( list.get( positions[item] ) );
+		}
+
+		list.doRemoveChildren( removed );
+		result.addEvent( new DataChildrenEvent( DataEvent.Action.REMOVE, list, list, indexes, removed ) );
+
+		return result;
+	}
+
+	/**
+	 * Get the positions of the children by scanning the list.
+	 */
+	private int[] getPositions() {
+		int[] positions = new int[children.size()];
+		int count = 0;
+		int index = 0;
+		for( T child : list ) {
+			if( children.contains( child ) ) positions[count++] = index;
+			index++;
+		}
+		return Arrays.copyOf( positions, count );
+	}
+
+	/**
+	 * Get the positions of the children from the list index.
+	 */
+	private int[] getIndexedPositions() {
+		int[] positions = new int[children.size()];
+		int count = 0;
+		for( T child : children ) {
+			int index = list.indexOf( child );
+			if( index >= 0 ) positions[count++] = index;
+		}
+		positions = Arrays.copyOf( positions, count );
+		Arrays.sort( positions );
+		return positions;
+	}
+
+}
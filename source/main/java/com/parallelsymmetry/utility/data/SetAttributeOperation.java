@@ -1,5 +1,8 @@
 package com.parallelsymmetry.utility.data;
 
+import java.util.Collection;
+import java.util.Collections;
+
 class SetAttributeOperation extends Operation {
 
 	private String name;
@@ -29,4 +32,10 @@ class SetAttributeOperation extends Operation {
 		return result;
 	}
 
+	@Override
+	Collection<DataNode> getRelatedNodes() {
+		if( newValue instanceof DataNode ) return Collections.singletonList( (DataNode)newValue );
+		return super.getRelatedNodes();
+	}
+
 }
@@ -0,0 +1,52 @@
+package com.parallelsymmetry.utility.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+class SetAttributesOperation extends Operation {
+
+	private List<String> names;
+
+	private List<Object> oldValues;
+
+	private List<Object> newValues;
+
+	public SetAttributesOperation( DataNode data, List<String> names, List<Object> oldValues, List<Object> newValues ) {
+		super( data );
+		this.names = names;
+		this.oldValues = oldValues;
+		this.newValues = newValues;
+	}
+
+	@Override
+	protected OperationResult process() {
+		OperationResult result = new OperationResult( this );
+
+		int count = names.size();
+		for( int index = 0; index < count; index++ ) {
+			String name = names.get( index );
+			Object oldValue = oldValues.get( index );
+			Object newValue = newValues.get( index );
+
+			getData().doSetDataValue( name, oldValue, newValue );
+
+			DataEvent.Action type = DataEvent.Action.MODIFY;
+			type = oldValue == null ? DataEvent.Action.INSERT : type;
+			type = newValue == null ? DataEvent.Action.REMOVE : type;
+			result.addEvent( new DataAttributeEvent( type, data, data, name, oldValue, newValue ) );
+		}
+
+		return result;
+	}
+
+	@Override
+	Collection<DataNode> getRelatedNodes() {
+		List<DataNode> nodes = new ArrayList<DataNode>();
+		for( Object value : newValues ) {
+			if( value instanceof DataNode ) nodes.add( (DataNode)value );
+		}
+		return nodes;
+	}
+
+}
@@ -2,48 +2,94 @@ package com.parallelsymmetry.utility.data;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.locks.ReentrantLock;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transaction collects data operations and applies them as a unit when the
+ * transaction is committed.
+ * <p>
+ * Commits are locked by tree. Each data tree root hashes to one of a fixed set
+ * of commit stripes and a commit only locks the stripes of the trees it
+ * touches, so transactions on disjoint trees commit in parallel. The stripes
+ * stay locked while the events are dispatched so the events for a tree are
+ * delivered in commit order. Events for asynchronous data listeners are only
+ * queued while the stripes are locked and are handed to the executor after the
+ * outermost commit of the thread has released the stripes.
+ * <p>
+ * A data listener may commit changes to another tree while the stripes of the
+ * outer commit are locked. If that commit would deadlock with another thread
+ * doing the same, the listener thread gives up all its stripes and locks them
+ * again in index order together with the stripes it needs. Another commit to
+ * the outer trees may then run before the rest of the outer commit events are
+ * delivered.
+ */
 public class Transaction {
 
-	private static final String PREVIOUS_MODIFIED_STATE = Transaction.class.getName() + ".previousModifiedState";
+	/**
+	 * The number of commit stripes. Must be a power of two no larger than 64
+	 * because a set of stripes is collected in a long bit mask.
+	 */
+	private static final int COMMIT_STRIPE_COUNT = 64;
+
+	private static final CommitStripe[] COMMIT_STRIPES = new CommitStripe[COMMIT_STRIPE_COUNT];
 
-	private static final ReentrantLock COMMIT_LOCK = new ReentrantLock();
+	private static final DataNode[] NO_NODES = new DataNode[0];
 
 	//private static final ThreadLocal<Transaction> threadLocalTransaction = new ThreadLocal<Transaction>();
 
 	private static final ThreadLocal<Deque<Transaction>> threadLocalTransactions = new ThreadLocal<Deque<Transaction>>();
 
-	private static Transaction committingTransaction;
+	/**
+	 * The transaction being committed by the current thread. Data listeners are
+	 * called on the committing thread so this is used to detect data listeners
+	 * modifying the data that caused the event.
+	 */
+	private static final ThreadLocal<Transaction> committingTransaction = new ThreadLocal<Transaction>();
+
+	/**
+	 * The stripe each blocked committing thread is waiting for. Used to detect
+	 * deadlock when a data listener commits changes to a different tree.
+	 */
+	private static final Map<Thread, CommitStripe> waitingThreads = new ConcurrentHashMap<Thread, CommitStripe>();
+
+	/**
+	 * The commit version. Incremented by every commit and recorded in the data
+	 * snapshots.
+	 */
+	private static final AtomicLong commitVersion = new AtomicLong();
 
 	private Queue<Operation> operations;
 
-	private Set<Integer> nodeKeys;
-
-	private Map<Integer, DataNode> nodes;
+	/**
+	 * The modified state of the operation nodes, by identity.
+	 */
+	private Map<DataNode, NodeState> nodes;
 
-	private Map<Integer, ResultCollector> collectors;
+	private Map<DataNode, ResultCollector> collectors;
 
 	private int depth;
 
 	static {
 		threadLocalTransactions.set( new ArrayDeque<Transaction>() );
+		for( int index = 0; index < COMMIT_STRIPE_COUNT; index++ ) {
+			COMMIT_STRIPES[index] = new CommitStripe( index );
+		}
 	}
 
 	private Transaction() {
-		nodeKeys = new CopyOnWriteArraySet<Integer>();
 		operations = new ConcurrentLinkedQueue<Operation>();
-		nodes = new ConcurrentHashMap<Integer, DataNode>();
-		collectors = new ConcurrentHashMap<Integer, ResultCollector>();
+		nodes = new IdentityHashMap<DataNode, NodeState>();
+		collectors = new IdentityHashMap<DataNode, ResultCollector>();
 	}
 
 	public static final Transaction create() {
@@ -126,6 +172,25 @@ public class Transaction {
 		return String.valueOf( "transaction[" + System.identityHashCode( this ) + "]" );
 	}
 
+	/**
+	 * Create the snapshot of a data node. The commit stripe of the node tree is
+	 * locked while the snapshot is created so the snapshot does not include a
+	 * partially applied commit.
+	 */
+	static DataSnapshot createSnapshot( DataNode node ) {
+		boolean nested = committingTransaction.get() != null;
+		while( true ) {
+			CommitStripe stripe = COMMIT_STRIPES[getStripeIndex( node )];
+			if( !lockStripe( stripe, nested ) ) relockStripes( 1L << stripe.getIndex() );
+			try {
+				// The node may have been attached to another tree while waiting.
+				if( stripe == COMMIT_STRIPES[getStripeIndex( node )] ) return node.createSnapshot( commitVersion.get() );
+			} finally {
+				stripe.unlock();
+			}
+		}
+	}
+
 	private static Transaction peekTransaction() {
 		Deque<Transaction> deque = threadLocalTransactions.get();
 		return deque == null ? null : deque.peekFirst();
@@ -148,20 +213,26 @@ public class Transaction {
 	}
 
 	private void doSubmit( Operation operation ) {
-		if( COMMIT_LOCK.isLocked() && inCommittingTransaction( operation.getData() ) ) throw new TransactionException( "Data should not be modified from data listeners." );
+		if( inCommittingTransaction( operation.getData() ) ) throw new TransactionException( "Data should not be modified from data listeners." );
 		addOperationNode( operation.getData() );
 		operations.offer( operation );
 	}
 
 	private void doCommit() {
+		// A commit started by a data listener is nested in the commit that caused
+		// the event and the current thread already holds some commit stripes.
+		Transaction outer = committingTransaction.get();
+		CommitStripe[] stripes = lockStripes( outer != null );
 		try {
-			COMMIT_LOCK.lock();
-
-			committingTransaction = this;
-
-			// Store the current modified state of each data object.
-			for( DataNode node : nodes.values() ) {
-				node.putResource( PREVIOUS_MODIFIED_STATE, node.isModified() );
+			committingTransaction.set( this );
+
+			// Store the current modified state of each data object and discard the
+			// snapshots of the changing nodes. Snapshots are only created while the
+			// stripes are locked so none can be created while the commit is applied.
+			commitVersion.incrementAndGet();
+			for( NodeState state : nodes.values() ) {
+				state.oldModified = state.node.isModified();
+				state.node.invalidateSnapshot();
 			}
 
 			// Process the operations.
@@ -177,19 +248,15 @@ public class Transaction {
 				getResultCollector( node ).modified.addAll( operationResult.getMetaValueEvents() );
 			}
 
-			// Send the events for each data node.
-			for( DataNode node : nodes.values() ) {
-				boolean oldModified = (Boolean)node.getResource( PREVIOUS_MODIFIED_STATE );
-				boolean newModified = node.isModified();
-				node.putResource( PREVIOUS_MODIFIED_STATE, null );
-				collectFinalEvents( node, node, oldModified, newModified );
-			}
+			// Update the modified state of the ancestors and collect the final events.
+			collectFinalEvents();
 
 			dispatchTransactionEvents();
 		} finally {
 			doReset();
-			committingTransaction = null;
-			COMMIT_LOCK.unlock();
+			committingTransaction.set( outer );
+			unlockStripes( stripes, stripes.length );
+			if( outer == null ) AsyncDataDispatcher.schedulePending();
 			//Log.write( Log.DETAIL, "Transaction[" + System.identityHashCode( this ) + "] committed!" );
 		}
 	}
@@ -203,56 +270,306 @@ public class Transaction {
 	private void doReset() {
 		collectors.clear();
 		operations.clear();
-		nodeKeys.clear();
 		nodes.clear();
 	}
 
 	private void addOperationNode( DataNode node ) {
-		Integer key = System.identityHashCode( node );
-		synchronized( nodeKeys ) {
-			if( nodeKeys.contains( key ) ) return;
-			nodeKeys.add( key );
-			nodes.put( key, node );
-		}
+		if( !nodes.containsKey( node ) ) nodes.put( node, new NodeState( node ) );
 	}
 
 	private boolean inCommittingTransaction( DataNode node ) {
-		return committingTransaction != null && committingTransaction.nodeKeys.contains( System.identityHashCode( node ) );
+		Transaction transaction = committingTransaction.get();
+		return transaction != null && transaction.nodes.containsKey( node );
+	}
+
+	/**
+	 * Lock the commit stripes of every tree touched by this transaction. The
+	 * stripes are locked in index order to avoid deadlock. Because another commit
+	 * may attach one of the trees to a different tree while this commit waits,
+	 * the stripes are checked again once locked and the locking retried if they
+	 * changed.
+	 * <p>
+	 * A nested commit already holds the stripes of the outer commit and cannot
+	 * lock in index order. If waiting for a stripe would deadlock, the nested
+	 * commit gives up the stripes it holds and locks them again in index order
+	 * along with the stripes it needs.
+	 */
+	private CommitStripe[] lockStripes( boolean nested ) {
+		while( true ) {
+			CommitStripe[] stripes = getStripes();
+			int count = 0;
+			try {
+				for( CommitStripe stripe : stripes ) {
+					if( !lockStripe( stripe, nested ) ) break;
+					count++;
+				}
+			} finally {
+				if( count < stripes.length ) unlockStripes( stripes, count );
+			}
+			if( count < stripes.length ) {
+				long mask = 0;
+				for( CommitStripe stripe : stripes ) {
+					mask |= 1L << stripe.getIndex();
+				}
+				relockStripes( mask );
+				count = stripes.length;
+			}
+			if( Arrays.equals( stripes, getStripes() ) ) return stripes;
+			unlockStripes( stripes, count );
+		}
+	}
+
+	/**
+	 * Lock a commit stripe. A nested commit checks for deadlock while it waits.
+	 * 
+	 * @return False if waiting for the stripe would deadlock, in which case the
+	 *         stripe is not locked.
+	 */
+	private static boolean lockStripe( CommitStripe stripe, boolean nested ) {
+		if( stripe.tryLock() ) return true;
+
+		Thread thread = Thread.currentThread();
+		waitingThreads.put( thread, stripe );
+		try {
+			if( !nested ) {
+				stripe.lock();
+				return true;
+			}
+
+			boolean interrupted = false;
+			try {
+				while( true ) {
+					try {
+						if( stripe.tryLock( 10, TimeUnit.MILLISECONDS ) ) return true;
+					} catch( InterruptedException exception ) {
+						interrupted = true;
+					}
+					if( isDeadlocked( thread, stripe ) ) return false;
+				}
+			} finally {
+				if( interrupted ) thread.interrupt();
+			}
+		} finally {
+			waitingThreads.remove( thread );
+		}
+	}
+
+	/**
+	 * Give up every stripe held by the current thread and lock them again in
+	 * index order, along with one more hold on each of the requested stripes.
+	 * Because the stripes are locked in index order this thread cannot be part
+	 * of a deadlock while it waits. Other threads waiting for a stripe held here
+	 * get to run while the stripes are released.
+	 * 
+	 * @param mask The stripes to add a hold to, one bit per stripe index.
+	 */
+	private static void relockStripes( long mask ) {
+		int[] holds = new int[COMMIT_STRIPE_COUNT];
+		for( int index = COMMIT_STRIPE_COUNT - 1; index >= 0; index-- ) {
+			CommitStripe stripe = COMMIT_STRIPES[index];
+			holds[index] = stripe.getHoldCount();
+			for( int count = 0; count < holds[index]; count++ ) {
+				stripe.unlock();
+			}
+			if( ( mask & ( 1L << index ) ) != 0 ) holds[index]++;
+		}
+
+		Thread thread = Thread.currentThread();
+		for( int index = 0; index < COMMIT_STRIPE_COUNT; index++ ) {
+			if( holds[index] == 0 ) continue;
+			CommitStripe stripe = COMMIT_STRIPES[index];
+			if( !stripe.tryLock() ) {
+				waitingThreads.put( thread, stripe );
+				try {
+					stripe.lock();
+				} finally {
+					waitingThreads.remove( thread );
+				}
+			}
+			for( int count = 1; count < holds[index]; count++ ) {
+				stripe.lock();
+			}
+		}
+	}
+
+	private static void unlockStripes( CommitStripe[] stripes, int count ) {
+		for( int index = count - 1; index >= 0; index-- ) {
+			stripes[index].unlock();
+		}
+	}
+
+	/**
+	 * Follow the chain of stripe owners and the stripes they are waiting for to
+	 * see if it leads back to the specified thread.
+	 */
+	private static boolean isDeadlocked( Thread thread, CommitStripe stripe ) {
+		for( int count = 0; count <= waitingThreads.size(); count++ ) {
+			Thread owner = stripe.getOwnerThread();
+			if( owner == null ) return false;
+			if( owner == thread ) return true;
+			stripe = waitingThreads.get( owner );
+			if( stripe == null ) return false;
+		}
+		return false;
+	}
+
+	/**
+	 * Get the stripes of the trees touched by this transaction, ordered by stripe
+	 * index. The stripe set is collected as a bit mask, one bit per stripe.
+	 * Sibling nodes share the stripe of the previous node so the walk to the root
+	 * is done once per run of siblings.
+	 */
+	private CommitStripe[] getStripes() {
+		long mask = 0;
+		DataNode lastParent = null;
+		int lastIndex = 0;
+		for( DataNode node : nodes.keySet() ) {
+			DataNode parent = node.getParent();
+			if( parent == null || parent != lastParent ) {
+				lastParent = parent;
+				lastIndex = getStripeIndex( node );
+			}
+			mask |= 1L << lastIndex;
+		}
+		for( Operation operation : operations ) {
+			for( DataNode node : operation.getRelatedNodes() ) {
+				mask |= 1L << getStripeIndex( node );
+			}
+		}
+
+		CommitStripe[] stripes = new CommitStripe[Long.bitCount( mask )];
+		for( int index = 0; index < stripes.length; index++ ) {
+			stripes[index] = COMMIT_STRIPES[Long.numberOfTrailingZeros( mask )];
+			mask &= mask - 1;
+		}
+		return stripes;
+	}
+
+	static int getStripeIndex( DataNode node ) {
+		DataNode root = node;
+		DataNode parent;
+		while( ( parent = root.getParent() ) != null ) {
+			root = parent;
+		}
+
+		int hash = System.identityHashCode( root );
+		return ( hash ^ ( hash >>> 16 ) ) & ( COMMIT_STRIPE_COUNT - 1 );
 	}
 
 	private ResultCollector getResultCollector( DataNode node ) {
-		Integer key = System.identityHashCode( node );
-		ResultCollector collector = collectors.get( key );
+		ResultCollector collector = collectors.get( node );
 		if( collector == null ) {
 			collector = new ResultCollector();
-			collectors.put( key, collector );
+			collectors.put( node, collector );
 		}
 		return collector;
 	}
 
-	private void collectFinalEvents( DataNode sender, DataNode cause, boolean oldModified, boolean newModified ) {
-		// Post the modified event.
-		boolean modifiedChanged = oldModified != newModified;
-		if( modifiedChanged ) storeModifiedEvent( new MetaAttributeEvent( DataEvent.Action.MODIFY, sender, DataNode.MODIFIED, oldModified, newModified ) );
+	/**
+	 * Update the modified state of the ancestors of the operation nodes and
+	 * collect the modified and changed events. The paths from the operation nodes
+	 * to the root are merged and each node is visited once, after every node
+	 * below it. The modified state changes of the nodes below a node are applied
+	 * to the node as one change. The modified and changed events are only
+	 * dispatched to the sender so they are only created for nodes that have data
+	 * listeners.
+	 */
+	private void collectFinalEvents() {
+		if( nodes.size() == 1 ) {
+			collectPathEvents( nodes.values().iterator().next() );
+			return;
+		}
 
-		// Update the parent node.
-		DataNode parent = sender.getParent();
-		if( parent != null ) {
-			boolean parentOldModified = parent.isModified();
+		// Link the state of each node to the state of the parent, adding the
+		// ancestors. A walk stops at the first ancestor that already has a state.
+		Map<DataNode, NodeState> states = new IdentityHashMap<DataNode, NodeState>( nodes );
+		for( NodeState state : nodes.values() ) {
+			NodeState child = state;
+			DataNode parent = child.node.getParent();
+			while( parent != null ) {
+				NodeState parentState = states.get( parent );
+				boolean found = parentState != null;
+				if( !found ) {
+					parentState = new NodeState( parent );
+					parentState.oldModified = parent.isModified();
+					states.put( parent, parentState );
+				}
+
+				child.parent = parentState;
+				parentState.pending++;
+				if( found ) break;
+
+				child = parentState;
+				parent = parent.getParent();
+			}
+		}
+
+		// Visit the nodes from the bottom up.
+		Deque<NodeState> ready = new ArrayDeque<NodeState>();
+		for( NodeState state : states.values() ) {
+			if( state.pending == 0 ) ready.offer( state );
+		}
+		while( !ready.isEmpty() ) {
+			NodeState state = ready.poll();
+			boolean newModified = visit( state.node, state.oldModified, state.modifiedCount, state.unmodifiedCount );
+			boolean modifiedChanged = state.oldModified != newModified;
+
+			NodeState parent = state.parent;
+			if( parent == null ) continue;
 			if( modifiedChanged ) {
-				if( parent instanceof DataList ) {
-					( (DataList<?>)parent ).listNodeChildModified( newModified );
+				if( newModified ) {
+					parent.modifiedCount++;
 				} else {
-					parent.dataNodeModified( newModified );
+					parent.unmodifiedCount++;
 				}
 			}
-			boolean parentNewModified = parent.isModified();
+			if( --parent.pending == 0 ) ready.offer( parent );
+		}
+	}
 
-			collectFinalEvents( parent, cause, parentOldModified, parentNewModified );
+	/**
+	 * Collect the final events when there is only one operation node. The node
+	 * and the ancestors form a single path that is visited without creating
+	 * states for the ancestors.
+	 */
+	private void collectPathEvents( NodeState state ) {
+		DataNode node = state.node;
+		boolean oldModified = state.oldModified;
+		int modifiedCount = 0;
+		int unmodifiedCount = 0;
+		while( true ) {
+			boolean newModified = visit( node, oldModified, modifiedCount, unmodifiedCount );
+			node = node.getParent();
+			if( node == null ) return;
+
+			modifiedCount = oldModified != newModified && newModified ? 1 : 0;
+			unmodifiedCount = oldModified != newModified && !newModified ? 1 : 0;
+			oldModified = node.isModified();
 		}
+	}
 
-		// Post the changed event.
-		storeChangedEvent( new DataChangedEvent( DataEvent.Action.MODIFY, sender ) );
+	/**
+	 * Apply the modified state changes of the children of the node to the node
+	 * and collect the modified and changed events of the node.
+	 * 
+	 * @return The new modified state of the node.
+	 */
+	private boolean visit( DataNode node, boolean oldModified, int modifiedCount, int unmodifiedCount ) {
+		if( modifiedCount != 0 || unmodifiedCount != 0 ) {
+			if( node instanceof DataList ) {
+				( (DataList<?>)node ).listNodeChildModified( modifiedCount, unmodifiedCount );
+			} else {
+				node.dataNodeModified( modifiedCount, unmodifiedCount );
+			}
+		}
+
+		boolean newModified = node.isModified();
+		if( node.hasDataListeners() ) {
+			if( oldModified != newModified ) storeModifiedEvent( new MetaAttributeEvent( DataEvent.Action.MODIFY, node, DataNode.MODIFIED, oldModified, newModified ) );
+			storeChangedEvent( new DataChangedEvent( DataEvent.Action.MODIFY, node ) );
+		}
+
+		return newModified;
 	}
 
 	private void storeModifiedEvent( MetaAttributeEvent event ) {
@@ -273,42 +590,110 @@ public class Transaction {
 	}
 
 	private void dispatchTransactionEvents() {
+		// The listening ancestors are shared by the events of sibling nodes.
+		Map<DataNode, DataNode[]> ancestors = nodes.size() > 1 ? new IdentityHashMap<DataNode, DataNode[]>() : null;
+
 		// Fire the data value events first
-		for( Integer key : collectors.keySet() ) {
-			ResultCollector collector = collectors.get( key );
+		for( ResultCollector collector : collectors.values() ) {
 			for( DataValueEvent event : collector.events ) {
-				dispatchValueEvent( event );
+				dispatchValueEvent( event, ancestors );
 			}
 		}
 
 		// Fire the meta value events next.
-		for( Integer key : collectors.keySet() ) {
-			ResultCollector collector = collectors.get( key );
+		for( ResultCollector collector : collectors.values() ) {
 			for( MetaAttributeEvent event : collector.modified ) {
 				dispatchEvent( event );
 			}
 		}
 
 		// Fire the data changed events last.
-		for( Integer key : collectors.keySet() ) {
-			ResultCollector collector = collectors.get( key );
+		for( ResultCollector collector : collectors.values() ) {
 			if( collector.changed != null ) dispatchEvent( collector.changed );
 		}
 	}
 
-	private void dispatchValueEvent( DataEvent event ) {
+	/**
+	 * Dispatch a value event to the sender and every ancestor of the sender. The
+	 * ancestors receive a copy of the event with the ancestor as the sender, but
+	 * the copy is only created for ancestors that have data listeners. If the
+	 * ancestor map is given the listening ancestors are looked up in the map
+	 * instead of walking the path to the root.
+	 */
+	private void dispatchValueEvent( DataEvent event, Map<DataNode, DataNode[]> ancestors ) {
 		DataNode sender = event.getSender();
+		if( sender.hasDataListeners() ) sender.dispatchEvent( event );
 
-		sender.dispatchEvent( event );
+		if( ancestors == null ) {
+			DataNode parent = sender.getParent();
+			while( parent != null ) {
+				if( parent.hasDataListeners() ) parent.dispatchEvent( event.cloneWithNewSender( parent ) );
+				parent = parent.getParent();
+			}
+		} else {
+			for( DataNode parent : getListeningAncestors( sender, ancestors ) ) {
+				parent.dispatchEvent( event.cloneWithNewSender( parent ) );
+			}
+		}
+	}
 
-		DataNode parent = sender.getParent();
-		if( parent != null ) dispatchValueEvent( event.cloneWithNewSender( parent ) );
+	/**
+	 * Get the ancestors of the node that have data listeners, nearest first.
+	 */
+	private DataNode[] getListeningAncestors( DataNode node, Map<DataNode, DataNode[]> ancestors ) {
+		DataNode parent = node.getParent();
+		if( parent == null ) return NO_NODES;
+
+		DataNode[] result = ancestors.get( parent );
+		if( result == null ) {
+			result = getListeningAncestors( parent, ancestors );
+			if( parent.hasDataListeners() ) {
+				DataNode[] above = result;
+				result = new DataNode[above.length + 1];
+				result[0] = parent;
+				System.arraycopy( above, 0, result, 1, above.length );
+			}
+			ancestors.put( parent, result );
+		}
+		return result;
 	}
 
 	private void dispatchEvent( DataEvent event ) {
 		event.getSender().dispatchEvent( event );
 	}
 
+	/**
+	 * The modified state of a node during a commit.
+	 */
+	private static class NodeState {
+
+		public final DataNode node;
+
+		public boolean oldModified;
+
+		public NodeState parent;
+
+		/**
+		 * The number of child states not yet visited.
+		 */
+		public int pending;
+
+		/**
+		 * The number of children that became modified.
+		 */
+		public int modifiedCount;
+
+		/**
+		 * The number of children that became unmodified.
+		 */
+		public int unmodifiedCount;
+
+		public NodeState( DataNode node ) {
+			this.node = node;
+		}
+
+	}
+
 	private class ResultCollector {
 
 		public List<DataValueEvent> events = new ArrayList<DataValueEvent>();
@@ -0,0 +1,31 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An event listener that receives the events waiting in a queue in one call. When
+ * a queue has a batch listener the event bus takes all the events waiting in the
+ * queue at once. Each batch listener receives the events it listens for in the
+ * order they were taken from the queue, after the other listeners have received
+ * them individually.
+ * 
+ * @param <T> The event type.
+ */
+public interface BatchEventListener<T extends Event> extends EventListener<T> {
+
+	void eventsOccurred( List<T> events );
+
+	/**
+	 * Called when a single event is delivered, for example on the submitting
+	 * thread with the caller runs overflow policy. By default this calls
+	 * eventsOccurred() with a list of the one event.
+	 * 
+	 * @param event The event.
+	 */
+	@Override
+	default void eventOccurred( T event ) {
+		eventsOccurred( Collections.singletonList( event ) );
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.parallelsymmetry.utility.event;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The location an event was submitted from. Only the first few frames below
+ * the event bus are captured with a stack walker instead of filling in the
+ * complete stack trace of the submitting thread. The frames are converted to
+ * stack trace elements only when the stack trace is used.
+ */
+final class CallSite extends Throwable {
+
+	private static final long serialVersionUID = 4511709839342497447L;
+
+	private static final StackWalker WALKER = StackWalker.getInstance();
+
+	private transient StackWalker.StackFrame[] frames;
+
+	public CallSite( final int frameCount ) {
+		frames = WALKER.walk( new Function<Stream<StackWalker.StackFrame>, StackWalker.StackFrame[]>() {
+
+			@Override
+			public StackWalker.StackFrame[] apply( Stream<StackWalker.StackFrame> stream ) {
+				StackWalker.StackFrame[] frames = new StackWalker.StackFrame[frameCount];
+				Iterator<StackWalker.StackFrame> iterator = stream.iterator();
+				int count = 0;
+				while( iterator.hasNext() && count < frameCount ) {
+					StackWalker.StackFrame frame = iterator.next();
+					if( count == 0 && isInternal( frame.getClassName() ) ) continue;
+					frames[count++] = frame;
+				}
+				if( count < frameCount ) {
+					StackWalker.StackFrame[] result = new StackWalker.StackFrame[count];
+					System.arraycopy( frames, 0, result, 0, count );
+					frames = result;
+				}
+				return frames;
+			}
+
+		} );
+	}
+
+	/**
+	 * The stack is captured by the constructor.
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
+	@Override
+	public StackTraceElement[] getStackTrace() {
+		resolve();
+		return super.getStackTrace();
+	}
+
+	@Override
+	public void printStackTrace( PrintStream stream ) {
+		resolve();
+		super.printStackTrace( stream );
+	}
+
+	@Override
+	public void printStackTrace( PrintWriter writer ) {
+		resolve();
+		super.printStackTrace( writer );
+	}
+
+	private synchronized void resolve() {
+		if( frames == null ) return;
+
+		StackTraceElement[] elements = new StackTraceElement[frames.length];
+		for( int index = 0; index < frames.length; index++ ) {
+			elements[index] = frames[index].toStackTraceElement();
+		}
+		frames = null;
+		setStackTrace( elements );
+	}
+
+	private static boolean isInternal( String name ) {
+		return name.equals( CallSite.class.getName() ) || name.equals( EventBus.class.getName() );
+	}
+
+}
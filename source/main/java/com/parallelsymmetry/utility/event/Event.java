@@ -1,12 +1,21 @@
 package com.parallelsymmetry.utility.event;
 
 import java.awt.EventQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * <p>
  * The Event class is the superclass of all application events.
  * <p>
  * Event priorities range from 1 to 9 with 5 being the default.
+ * <p>
+ * The completion of an event can be observed without blocking with
+ * getCompletion(). The future used for completion is only created when an
+ * event is waited for or observed so events that are only submitted do not
+ * pay for it.
  * 
  * @author Mark Soderquist
  */
@@ -18,6 +27,9 @@ public class Event implements Comparable<Event> {
 
 	public static final int LOWEST_PRIORITY = 1;
 
+	@SuppressWarnings( "rawtypes" )
+	private static final AtomicReferenceFieldUpdater<Event, CompletableFuture> COMPLETION = AtomicReferenceFieldUpdater.newUpdater( Event.class, CompletableFuture.class, "completion" );
+
 	private volatile EventBus bus;
 
 	private Object source;
@@ -28,9 +40,13 @@ public class Event implements Comparable<Event> {
 
 	private int priority = DEFAULT_PRIORITY;
 
-	private transient boolean cancelled;
+	private long submitTime;
+
+	private transient volatile boolean cancelled;
+
+	private transient volatile boolean processed;
 
-	private transient boolean processed;
+	private transient volatile CompletableFuture<Event> completion;
 
 	public Event( Object source ) {
 		this( source, null, DEFAULT_PRIORITY );
@@ -72,9 +88,26 @@ public class Event implements Comparable<Event> {
 		this.priority = priority;
 	}
 
-	public synchronized void processed() {
+	public void processed() {
 		processed = true;
-		notifyAll();
+		CompletableFuture<Event> future = completion;
+		if( future != null ) future.complete( this );
+	}
+
+	public boolean isProcessed() {
+		return processed;
+	}
+
+	/**
+	 * Get a future that completes with this event when the event has been
+	 * processed. The future completes exceptionally with a cancellation exception
+	 * if the event is cancelled before it is processed. Completing or cancelling
+	 * the returned future does not change the event.
+	 * 
+	 * @return The completion future.
+	 */
+	public CompletableFuture<Event> getCompletion() {
+		return getCompletionFuture().copy();
 	}
 
 	/**
@@ -82,18 +115,20 @@ public class Event implements Comparable<Event> {
 	 * 
 	 * @return True if the event not interrupted, false otherwise.
 	 */
-	public synchronized boolean waitFor() {
+	public boolean waitFor() {
 		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The dispatch thread should not be blocked." );
 		if( bus != null && bus.isEventBusThread() ) throw new RuntimeException( "The event bus thread should not be blocked." );
 
-		if( isCancelled() ) return true;
+		if( isCancelled() || processed ) return true;
 
-		while( !processed ) {
-			try {
-				wait();
-			} catch( InterruptedException exception ) {
-				return false;
-			}
+		try {
+			getCompletionFuture().get();
+		} catch( CancellationException exception ) {
+			// Intentionally ignore exception.
+		} catch( ExecutionException exception ) {
+			// Intentionally ignore exception.
+		} catch( InterruptedException exception ) {
+			return false;
 		}
 		return true;
 	}
@@ -104,6 +139,19 @@ public class Event implements Comparable<Event> {
 
 	public void cancel() {
 		cancelled = true;
+		CompletableFuture<Event> future = completion;
+		if( future != null ) future.cancel( false );
+	}
+
+	/**
+	 * Get the key used to coalesce this event with a pending event in a queue
+	 * that uses the coalesce overflow policy. A later event with an equal key
+	 * replaces the pending event. Events with a null key are never coalesced.
+	 * 
+	 * @return The coalescing key or null.
+	 */
+	public Object getCoalescingKey() {
+		return null;
 	}
 
 	@Override
@@ -124,8 +172,41 @@ public class Event implements Comparable<Event> {
 		this.callStackThrowable = caller;
 	}
 
+	/**
+	 * Get the time the event was submitted to the event bus.
+	 * 
+	 * @return The submit time from System.nanoTime().
+	 */
+	long getSubmitTime() {
+		return submitTime;
+	}
+
+	void setSubmitTime( long time ) {
+		this.submitTime = time;
+	}
+
 	void setEventBus( EventBus bus ) {
 		this.bus = bus;
 	}
 
+	/**
+	 * Get the completion future, creating it if needed. The flags are checked
+	 * after the future is published so a concurrent call to processed() or
+	 * cancel() cannot be missed.
+	 */
+	@SuppressWarnings( "unchecked" )
+	CompletableFuture<Event> getCompletionFuture() {
+		CompletableFuture<Event> future = completion;
+		if( future != null ) return future;
+
+		COMPLETION.compareAndSet( this, null, new CompletableFuture<Event>() );
+		future = completion;
+		if( processed ) {
+			future.complete( this );
+		} else if( cancelled ) {
+			future.cancel( false );
+		}
+		return future;
+	}
+
 }
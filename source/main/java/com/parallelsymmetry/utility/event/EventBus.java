@@ -1,13 +1,29 @@
 package com.parallelsymmetry.utility.event;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import com.parallelsymmetry.utility.agent.Worker;
 import com.parallelsymmetry.utility.log.Log;
@@ -29,6 +45,49 @@ import com.parallelsymmetry.utility.log.Log;
  * guaranteed delivery order.
  * <p>
  * The delivery order of an event to the registered listeners is not guaranteed.
+ * <p>
+ * Submitting an event does not lock. Each queue has a lock-free lane for each
+ * event priority and the event bus thread parks when all the queues are empty.
+ * A submitting thread only wakes the event bus thread when it is parked.
+ * Events with the same priority are delivered in the order they were submitted.
+ * Optionally the priority of waiting events can be raised over time so low
+ * priority events are not starved by a steady stream of high priority events.
+ * <p>
+ * Queues are unbounded unless a capacity is set for the queue. The overflow
+ * policy of the queue determines what happens to an event submitted when the
+ * queue is full. The number of dropped, blocked and coalesced events is counted
+ * for each queue.
+ * <p>
+ * Metrics are recorded for each queue: the depth and high-water mark, the time
+ * from submit until delivery, the time spent in each listener and the number of
+ * cancelled events. A snapshot of the metrics is available from getMetrics()
+ * and the metrics of each queue can also be published through JMX.
+ * <p>
+ * The call site policy determines how much of the submitting stack is captured
+ * to report where an event came from when a listener throws an exception. By
+ * default the full stack trace is captured on every submit.
+ * <p>
+ * The listeners for each event class are collected into an array the first time
+ * an event of that class is delivered on a queue. The arrays for a queue are
+ * discarded when a listener is added to or removed from the queue.
+ * <p>
+ * A queue can also carry a ring buffer channel of preallocated slots for
+ * events that are only a type id and a few primitive values. The listeners of
+ * the queue receive each published slot as a reused RingBufferEvent, in
+ * sequence order, along with the events submitted to the queue. Slots are not
+ * timed or counted in the queue metrics.
+ * <p>
+ * A queue with a batch event listener is drained in batches. All the events
+ * waiting in the queue are taken at once and each batch listener receives the
+ * events it listens for in one call.
+ * <p>
+ * In the shared dispatch mode the event bus thread delivers the events of all
+ * the queues in turn. In the parallel dispatch mode each queue group has its
+ * own thread so a slow listener on one group does not delay the others. A
+ * queue is in a group by itself unless it is assigned to a group. Events are
+ * delivered in order within a queue and concurrently across groups. The queues
+ * in the same group as the default queue are delivered on the event bus
+ * thread.
  * 
  * @author Mark Soderquist
  */
@@ -36,32 +95,406 @@ public final class EventBus extends Worker {
 
 	public static final String DEFAULT_QUEUE_NAME = "default";
 
-	private volatile int eventCount;
+	public static final int DEFAULT_CALL_SITE_SAMPLE_RATE = 64;
 
-	private Map<String, Queue<Event>> queues;
+	public static final int DEFAULT_CALL_SITE_FRAME_COUNT = 8;
+
+	/**
+	 * How the submitting call site is captured.
+	 * <ul>
+	 * <li>OFF - The call site is not captured.</li>
+	 * <li>SAMPLED - The full stack trace is captured for one in every sample rate
+	 * submits.</li>
+	 * <li>LIGHTWEIGHT - The first frame count frames are captured with a stack
+	 * walker.</li>
+	 * <li>FULL - The full stack trace is captured for every submit.</li>
+	 * </ul>
+	 */
+	public enum CallSitePolicy {
+		OFF, SAMPLED, LIGHTWEIGHT, FULL
+	}
+
+	/**
+	 * How the queues are assigned to threads.
+	 * <ul>
+	 * <li>SHARED - The event bus thread delivers the events of all the queues.</li>
+	 * <li>PARALLEL - Each queue group is delivered on its own thread.</li>
+	 * </ul>
+	 */
+	public enum DispatchMode {
+		SHARED, PARALLEL
+	}
+
+	/**
+	 * What happens to an event submitted to a full queue.
+	 * <ul>
+	 * <li>BLOCK - The submitting thread waits for room in the queue, up to the
+	 * block timeout. The event is dropped if the timeout expires. Event bus
+	 * threads are never blocked.</li>
+	 * <li>DROP_NEWEST - The submitted event is dropped.</li>
+	 * <li>DROP_OLDEST - The oldest event with the lowest priority is dropped.</li>
+	 * <li>CALLER_RUNS - The submitted event is delivered on the submitting
+	 * thread.</li>
+	 * <li>COALESCE - An event with a coalescing key replaces the pending event
+	 * with the same key, whether or not the queue is full. Other events are
+	 * dropped when the queue is full.</li>
+	 * </ul>
+	 * Dropped events are cancelled and marked processed so threads waiting for
+	 * them are released.
+	 */
+	public enum OverflowPolicy {
+		BLOCK, DROP_NEWEST, DROP_OLDEST, CALLER_RUNS, COALESCE
+	}
+
+	private static final EventListener<?>[] NO_LISTENERS = new EventListener<?>[0];
+
+	private ConcurrentMap<String, QueueEntry> queues;
 
 	private Map<String, Map<Class<? extends Event>, Set<EventListener<?>>>> listenersByQueue;
 
-	private final Object eventlock = new Object();
+	/**
+	 * The listeners for each queue and event class, including the listeners for
+	 * the event superclasses. A queue entry is removed when the listeners of the
+	 * queue change.
+	 */
+	private ConcurrentMap<String, ConcurrentMap<Class<?>, EventListener<?>[]>> dispatchByQueue;
+
+	/**
+	 * The names of the queues with at least one batch listener.
+	 */
+	private final Set<String> batchQueues = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The dispatcher run by the event bus thread.
+	 */
+	private final Dispatcher dispatcher = new Dispatcher( null );
+
+	/**
+	 * The dispatchers with their own thread by group name, used in the parallel
+	 * dispatch mode.
+	 */
+	private final ConcurrentMap<String, Dispatcher> dispatchers = new ConcurrentHashMap<String, Dispatcher>();
+
+	private final Map<String, String> queueGroups = new ConcurrentHashMap<String, String>();
+
+	private volatile DispatchMode dispatchMode = DispatchMode.SHARED;
+
+	private volatile long agingInterval;
+
+	private boolean jmxEnabled;
+
+	private volatile CallSitePolicy callSitePolicy = CallSitePolicy.FULL;
+
+	private volatile int callSiteSampleRate = DEFAULT_CALL_SITE_SAMPLE_RATE;
+
+	private volatile int callSiteFrameCount = DEFAULT_CALL_SITE_FRAME_COUNT;
 
 	public EventBus() {
 		listenersByQueue = new ConcurrentHashMap<String, Map<Class<? extends Event>, Set<EventListener<?>>>>();
-		queues = new ConcurrentHashMap<String, Queue<Event>>();
+		queues = new ConcurrentHashMap<String, QueueEntry>();
+		dispatchByQueue = new ConcurrentHashMap<String, ConcurrentMap<Class<?>, EventListener<?>[]>>();
 	}
 
 	public boolean isEventBusThread() {
-		return isWorkerThread();
+		if( isWorkerThread() ) return true;
+		for( Dispatcher dispatcher : dispatchers.values() ) {
+			if( dispatcher.isDispatchThread() ) return true;
+		}
+		return false;
+	}
+
+	public DispatchMode getDispatchMode() {
+		return dispatchMode;
+	}
+
+	/**
+	 * Set how the queues are assigned to threads. The dispatch mode can only be
+	 * changed while the event bus is not running.
+	 * 
+	 * @param mode The dispatch mode.
+	 */
+	public synchronized void setDispatchMode( DispatchMode mode ) {
+		if( mode == null ) throw new NullPointerException( "Dispatch mode cannot be null." );
+		if( getState() != State.STOPPED ) throw new IllegalStateException( "Dispatch mode cannot be changed while the event bus is running." );
+		this.dispatchMode = mode;
+		assignQueues();
+	}
+
+	public String getQueueGroup( String queueName ) {
+		String group = queueGroups.get( queueName );
+		return group == null ? queueName : group;
+	}
+
+	/**
+	 * Assign a queue to a group. In the parallel dispatch mode all the queues in
+	 * a group are delivered on the same thread. The queue groups can only be
+	 * changed while the event bus is not running.
+	 * 
+	 * @param queueName The queue name.
+	 * @param groupName The group name or null to put the queue in a group by
+	 *          itself.
+	 */
+	public synchronized void setQueueGroup( String queueName, String groupName ) {
+		if( queueName == null ) throw new NullPointerException( "Queue name cannot be null." );
+		if( getState() != State.STOPPED ) throw new IllegalStateException( "Queue groups cannot be changed while the event bus is running." );
+		if( groupName == null ) {
+			queueGroups.remove( queueName );
+		} else {
+			queueGroups.put( queueName, groupName );
+		}
+		assignQueues();
+	}
+
+	/**
+	 * Get the aging interval.
+	 * 
+	 * @param unit The time unit of the result.
+	 * @return The aging interval or zero if aging is disabled.
+	 */
+	public long getAgingInterval( TimeUnit unit ) {
+		return unit.convert( agingInterval, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Set how long an event waits in a queue before its priority is raised by
+	 * one level. With aging a lowest priority event that has waited nine
+	 * intervals is delivered before newly submitted events of the highest
+	 * priority. Aging is disabled by default.
+	 * 
+	 * @param interval The aging interval or zero to disable aging.
+	 * @param unit The time unit of the interval.
+	 */
+	public void setAgingInterval( long interval, TimeUnit unit ) {
+		if( interval < 0 ) throw new IllegalArgumentException( "Aging interval cannot be negative: " + interval );
+		this.agingInterval = unit.toNanos( interval );
+	}
+
+	public int getQueueCapacity( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? Integer.MAX_VALUE : queue.capacity;
+	}
+
+	public RingBufferChannel getChannel( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? null : queue.channel;
+	}
+
+	/**
+	 * Attach a ring buffer channel to a queue. The slots published to the
+	 * channel are delivered to the listeners of the queue. A channel can only be
+	 * attached to one queue at a time.
+	 * 
+	 * @param queueName The queue name.
+	 * @param channel The channel or null to detach the current channel.
+	 */
+	public synchronized void setChannel( String queueName, RingBufferChannel channel ) {
+		final QueueEntry queue = getQueue( queueName );
+		if( channel == queue.channel ) return;
+		if( channel != null && channel.getSignal() != null ) throw new IllegalStateException( "Channel already attached to a queue." );
+
+		if( queue.channel != null ) queue.channel.setSignal( null );
+		if( channel != null ) {
+			channel.setSignal( new Runnable() {
+
+				@Override
+				public void run() {
+					queue.dispatcher.signal();
+				}
+
+			} );
+		}
+		queue.channel = channel;
+		queue.dispatcher.signal();
+	}
+
+	public OverflowPolicy getOverflowPolicy( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? OverflowPolicy.BLOCK : queue.overflowPolicy;
+	}
+
+	/**
+	 * Set the capacity and overflow policy of a queue. A thread blocked by a full
+	 * queue waits until there is room in the queue.
+	 * 
+	 * @param queueName The queue name.
+	 * @param capacity The maximum number of events in the queue or
+	 *          Integer.MAX_VALUE for an unbounded queue.
+	 * @param policy The overflow policy.
+	 */
+	public void setQueueCapacity( String queueName, int capacity, OverflowPolicy policy ) {
+		setQueueCapacity( queueName, capacity, policy, 0, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Set the capacity and overflow policy of a queue.
+	 * 
+	 * @param queueName The queue name.
+	 * @param capacity The maximum number of events in the queue or
+	 *          Integer.MAX_VALUE for an unbounded queue.
+	 * @param policy The overflow policy.
+	 * @param timeout The time a thread blocked by a full queue waits or zero to
+	 *          wait until there is room in the queue.
+	 * @param unit The time unit of the timeout.
+	 */
+	public void setQueueCapacity( String queueName, int capacity, OverflowPolicy policy, long timeout, TimeUnit unit ) {
+		if( policy == null ) throw new NullPointerException( "Overflow policy cannot be null." );
+		if( capacity < 1 ) throw new IllegalArgumentException( "Queue capacity must be at least one: " + capacity );
+		if( timeout < 0 ) throw new IllegalArgumentException( "Block timeout cannot be negative: " + timeout );
+
+		QueueEntry queue = getQueue( queueName );
+		queue.capacity = capacity;
+		queue.overflowPolicy = policy;
+		queue.blockTimeout = unit.toNanos( timeout );
+		queue.spaceAvailable();
+	}
+
+	/**
+	 * Get the number of events dropped from a queue because the queue was full.
+	 * 
+	 * @param queueName The queue name.
+	 * @return The number of dropped events.
+	 */
+	public long getDroppedCount( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? 0 : queue.dropped.get();
+	}
+
+	/**
+	 * Get the number of submits blocked because the queue was full.
+	 * 
+	 * @param queueName The queue name.
+	 * @return The number of blocked submits.
+	 */
+	public long getBlockedCount( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? 0 : queue.blocked.get();
+	}
+
+	/**
+	 * Get the number of pending events replaced by a later event with the same
+	 * coalescing key.
+	 * 
+	 * @param queueName The queue name.
+	 * @return The number of coalesced events.
+	 */
+	public long getCoalescedCount( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? 0 : queue.coalesced.get();
+	}
+
+	/**
+	 * Get a snapshot of the metrics of each queue.
+	 * 
+	 * @return The queue metrics by queue name.
+	 */
+	public Map<String, EventQueueMetrics> getMetrics() {
+		Map<String, EventQueueMetrics> metrics = new TreeMap<String, EventQueueMetrics>();
+		for( QueueEntry queue : queues.values() ) {
+			metrics.put( queue.name, queue.getMetrics() );
+		}
+		return metrics;
+	}
+
+	/**
+	 * Get a snapshot of the metrics of a queue.
+	 * 
+	 * @param queueName The queue name.
+	 * @return The queue metrics or null if the queue does not exist.
+	 */
+	public EventQueueMetrics getMetrics( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		return queue == null ? null : queue.getMetrics();
+	}
+
+	public synchronized boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	/**
+	 * Publish the metrics of each queue through the platform MBean server. The
+	 * queues are registered with the name
+	 * com.parallelsymmetry.utility.event:type=EventBus,bus=&lt;bus
+	 * name&gt;,queue=&lt;queue name&gt;.
+	 * 
+	 * @param enabled True to register the queues, false to unregister them.
+	 */
+	public synchronized void setJmxEnabled( boolean enabled ) {
+		if( jmxEnabled == enabled ) return;
+		jmxEnabled = enabled;
+		for( QueueEntry queue : queues.values() ) {
+			if( enabled ) {
+				registerQueue( queue.name );
+			} else {
+				unregisterQueue( queue.name );
+			}
+		}
 	}
 
+	public CallSitePolicy getCallSitePolicy() {
+		return callSitePolicy;
+	}
+
+	public void setCallSitePolicy( CallSitePolicy policy ) {
+		if( policy == null ) throw new NullPointerException( "Call site policy cannot be null." );
+		this.callSitePolicy = policy;
+	}
+
+	public int getCallSiteSampleRate() {
+		return callSiteSampleRate;
+	}
+
+	/**
+	 * Set how often the call site is captured when using the sampled policy. A
+	 * rate of one captures the call site of every submit.
+	 * 
+	 * @param rate The number of submits per captured call site.
+	 */
+	public void setCallSiteSampleRate( int rate ) {
+		if( rate < 1 ) throw new IllegalArgumentException( "Call site sample rate must be at least one: " + rate );
+		this.callSiteSampleRate = rate;
+	}
+
+	public int getCallSiteFrameCount() {
+		return callSiteFrameCount;
+	}
+
+	/**
+	 * Set the number of frames captured when using the lightweight policy.
+	 * 
+	 * @param count The number of frames.
+	 */
+	public void setCallSiteFrameCount( int count ) {
+		if( count < 1 ) throw new IllegalArgumentException( "Call site frame count must be at least one: " + count );
+		this.callSiteFrameCount = count;
+	}
+
+	/**
+	 * Wait for the events submitted to all the queues before this call to be
+	 * processed.
+	 */
 	public void eventWait() {
-		eventWait( DEFAULT_QUEUE_NAME );
+		if( isEventBusThread() ) return;
+		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The dispatch thread should not be blocked." );
+
+		long[] counts = null;
+		for( QueueEntry queue : queues.values() ) {
+			if( counts == null ) counts = new long[queue.events.getLaneCount()];
+			if( !queue.waitForCompletion( counts ) ) return;
+		}
 	}
 
+	/**
+	 * Wait for the events submitted to the queue before this call to be
+	 * processed.
+	 * 
+	 * @param queueName The queue name.
+	 */
 	public void eventWait( String queueName ) {
-		if( isWorkerThread() ) return;
-		Event event = new Event( this );
-		submit( event, queueName );
-		event.waitFor();
+		if( isEventBusThread() ) return;
+		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The dispatch thread should not be blocked." );
+
+		QueueEntry queue = getQueue( queueName );
+		queue.waitForCompletion( new long[queue.events.getLaneCount()] );
 	}
 
 	public void submit( Event event ) {
@@ -70,19 +503,13 @@ public final class EventBus extends Worker {
 
 	public void submit( Event event, String queueName ) {
 		event.setEventBus( this );
-		event.setCallStackThrowable( new Throwable() );
-
-		synchronized( eventlock ) {
-			Queue<Event> queue = queues.get( queueName );
-			if( queue == null ) {
-				queue = new PriorityQueue<Event>();
-				queues.put( queueName, queue );
-			}
+		event.setCallStackThrowable( captureCallSite() );
+		event.setSubmitTime( System.nanoTime() );
 
-			queue.add( event );
-			eventCount++;
-			eventlock.notifyAll();
-		}
+		QueueEntry queue = getQueue( queueName );
+		if( !enqueue( queue, event ) ) return;
+		queue.updateHighWaterMark();
+		queue.dispatcher.signal();
 	}
 
 	public void addEventListener( EventListener<?> listener ) {
@@ -113,6 +540,8 @@ public final class EventBus extends Worker {
 			queueListeners.put( clazz, classListeners );
 		}
 		classListeners.add( listener );
+		if( listener instanceof BatchEventListener ) batchQueues.add( queueName );
+		dispatchByQueue.remove( queueName );
 	}
 
 	public void removeEventListener( EventListener<?> listener ) {
@@ -137,98 +566,781 @@ public final class EventBus extends Worker {
 		Set<EventListener<?>> classListeners = queueListeners.get( clazz );
 		if( classListeners == null ) return;
 
-		classListeners.remove( listener );
+		if( !classListeners.remove( listener ) ) return;
+		if( listener instanceof BatchEventListener && !hasBatchListeners( queueListeners ) ) batchQueues.remove( queueName );
+		dispatchByQueue.remove( queueName );
+
+		QueueEntry queue = queues.get( queueName );
+		if( queue != null ) queue.listenerTimes.remove( listener );
 	}
 
 	@Override
 	public void startWorker() {
-
+		for( Dispatcher dispatcher : dispatchers.values() ) {
+			dispatcher.start();
+		}
 	}
 
 	@Override
-	public void stopWorker() {
-		synchronized( eventlock ) {
-			eventlock.notifyAll();
+	public void stopWorker() throws InterruptedException {
+		dispatcher.wake();
+		for( Dispatcher dispatcher : dispatchers.values() ) {
+			dispatcher.stop();
 		}
 	}
 
 	@Override
 	public void run() {
-		while( isExecutable() ) {
+		dispatcher.run();
+	}
+
+	private Throwable captureCallSite() {
+		switch( callSitePolicy ) {
+			case OFF: {
+				return null;
+			}
+			case SAMPLED: {
+				int rate = callSiteSampleRate;
+				return rate == 1 || ThreadLocalRandom.current().nextInt( rate ) == 0 ? new Throwable() : null;
+			}
+			case LIGHTWEIGHT: {
+				return new CallSite( callSiteFrameCount );
+			}
+			default: {
+				return new Throwable();
+			}
+		}
+	}
+
+	/**
+	 * Get the queue entry for the queue name. A new entry is added to its
+	 * dispatcher before it is visible to other submitting threads so an event is
+	 * never added to a queue the dispatcher does not know about.
+	 */
+	private QueueEntry getQueue( String queueName ) {
+		QueueEntry queue = queues.get( queueName );
+		if( queue != null ) return queue;
+
+		synchronized( this ) {
+			queue = queues.get( queueName );
+			if( queue == null ) {
+				queue = new QueueEntry( queueName );
+				queue.dispatcher = getDispatcher( queueName );
+				queue.dispatcher.add( queue );
+				queues.put( queueName, queue );
+				if( jmxEnabled ) registerQueue( queueName );
+			}
+		}
+		return queue;
+	}
 
-			// Wait for events to be submitted.
-			synchronized( eventlock ) {
-				while( isExecutable() && eventCount == 0 ) {
+	/**
+	 * Get the dispatcher for a queue. In the parallel dispatch mode a dispatcher
+	 * is created for each queue group and started if the event bus is running.
+	 */
+	private synchronized Dispatcher getDispatcher( String queueName ) {
+		String group = getQueueGroup( queueName );
+		if( dispatchMode == DispatchMode.SHARED || group.equals( getQueueGroup( DEFAULT_QUEUE_NAME ) ) ) return dispatcher;
+
+		Dispatcher dispatcher = dispatchers.get( group );
+		if( dispatcher == null ) {
+			dispatcher = new Dispatcher( group );
+			dispatchers.put( group, dispatcher );
+			if( isExecutable() ) dispatcher.start();
+		}
+		return dispatcher;
+	}
+
+	/**
+	 * Assign the existing queues to the dispatchers after the dispatch mode or
+	 * the queue groups change. Events already in the queues are kept.
+	 */
+	private synchronized void assignQueues() {
+		dispatcher.clear();
+		dispatchers.clear();
+		for( QueueEntry queue : queues.values() ) {
+			queue.dispatcher = getDispatcher( queue.name );
+			queue.dispatcher.add( queue );
+		}
+	}
+
+	/**
+	 * Add the event to the queue, applying the overflow policy of the queue if the
+	 * queue is full.
+	 * 
+	 * @return True if the event was added to the queue.
+	 */
+	private boolean enqueue( QueueEntry queue, Event event ) {
+		OverflowPolicy policy = queue.overflowPolicy;
+		if( policy == OverflowPolicy.COALESCE ) {
+			Object key = event.getCoalescingKey();
+			if( key != null ) return queue.coalesce( event, key );
+		}
+
+		if( queue.events.offer( event, queue.capacity ) ) return true;
+
+		switch( policy ) {
+			case BLOCK: {
+				if( isEventBusThread() ) {
+					queue.events.add( event );
+					return true;
+				}
+				if( queue.block( event ) ) return true;
+				queue.drop( event );
+				return false;
+			}
+			case DROP_OLDEST: {
+				while( !queue.events.offer( event, queue.capacity ) ) {
+					Event oldest = queue.pollLowest();
+					if( oldest == null ) {
+						Thread.yield();
+					} else {
+						queue.drop( oldest );
+					}
+				}
+				return true;
+			}
+			case CALLER_RUNS: {
+				deliver( queue, event );
+				return false;
+			}
+			default: {
+				queue.drop( event );
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Deliver the next event of a queue.
+	 * 
+	 * @return True if an event was removed from the queue.
+	 */
+	private boolean processEvent( QueueEntry queue ) {
+		RingBufferChannel channel = queue.channel;
+		boolean found = channel != null && processChannel( queue, channel );
+		if( batchQueues.contains( queue.name ) ) return processBatch( queue ) || found;
+
+		long interval = agingInterval;
+		Event event = queue.poll( interval );
+		if( event == null ) return found;
+
+		// Cancelled events are removed without being delivered.
+		while( event != null && event.isCancelled() ) {
+			queue.cancelled.incrementAndGet();
+			event = queue.poll( interval );
+		}
+		if( event == null ) return true;
+
+		deliver( queue, event );
+		return true;
+	}
+
+	/**
+	 * Deliver all the events waiting in a queue. The other listeners receive each
+	 * event as it is taken and the batch listeners then receive their events in
+	 * one call.
+	 * 
+	 * @return True if an event was removed from the queue.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private boolean processBatch( QueueEntry queue ) {
+		int count = queue.events.size();
+		if( count == 0 ) return false;
+
+		long interval = agingInterval;
+		List<Event> events = new ArrayList<Event>( count );
+		Map<BatchEventListener, List<Event>> batches = new IdentityHashMap<BatchEventListener, List<Event>>();
+		long time = System.nanoTime();
+		for( int index = 0; index < count; index++ ) {
+			Event event = queue.poll( interval );
+			if( event == null ) break;
+			if( event.isCancelled() ) {
+				queue.cancelled.incrementAndGet();
+				continue;
+			}
+			events.add( event );
+			queue.dispatchLatency.record( time - event.getSubmitTime() );
+
+			for( EventListener listener : selectListeners( event, queue.name ) ) {
+				if( listener instanceof BatchEventListener ) {
+					List<Event> batch = batches.get( listener );
+					if( batch == null ) {
+						batch = new ArrayList<Event>();
+						batches.put( (BatchEventListener)listener, batch );
+					}
+					batch.add( event );
+				} else {
 					try {
-						eventlock.wait();
-					} catch( InterruptedException exception ) {
-						return;
+						listener.eventOccurred( event );
+					} catch( Throwable throwable ) {
+						logListenerException( listener, event, throwable );
 					}
+					time = recordListenerTime( queue, listener, time );
 				}
 			}
+		}
 
-			// Process the events outside the lock.
-			processEvents( selectEvents() );
+		if( Log.isActive( Log.DEBUG ) ) Log.write( Log.DEBUG, "Queue: " + queue.name + " Events: " + events.size() );
+		for( Map.Entry<BatchEventListener, List<Event>> entry : batches.entrySet() ) {
+			try {
+				entry.getKey().eventsOccurred( entry.getValue() );
+			} catch( Throwable throwable ) {
+				// A batch is reported with the call site of its first event.
+				logListenerException( entry.getKey(), entry.getValue().get( 0 ), throwable );
+			}
+			time = recordListenerTime( queue, entry.getKey(), time );
 		}
 
+		RingBufferChannel channel = queue.channel;
+		if( channel != null ) processChannel( queue, channel );
+		for( Event event : events ) {
+			event.processed();
+		}
+
+		return true;
 	}
 
+	/**
+	 * Deliver the slots published to the channel of a queue. The slots that are
+	 * available without a gap are taken as one batch and released to the
+	 * producers after the batch.
+	 * 
+	 * @return True if any slot was delivered.
+	 */
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
-	private void processEvents( Map<String, Event> events ) {
-		// Go through each queue and process an event if one is waiting.
-		for( String queue : events.keySet() ) {
-			Event event = events.get( queue );
-			if( event == null ) continue;
-
-			// An event was found for the queue, send it to the listeners.
-			Log.write( Log.DEBUG, "Queue: " + queue + " Event: " + event );
-			for( EventListener listener : selectListeners( event, queue ) ) {
+	private boolean processChannel( QueueEntry queue, RingBufferChannel channel ) {
+		long first = channel.getConsumed();
+		long last = channel.getAvailable( first );
+		if( last < first ) return false;
+
+		RingBufferEvent event = channel.getEvent();
+		EventListener[] listeners = selectListeners( event, queue.name );
+		for( long sequence = first; sequence <= last; sequence++ ) {
+			event.setSlot( sequence, sequence == last );
+			for( EventListener listener : listeners ) {
 				try {
 					listener.eventOccurred( event );
 				} catch( Throwable throwable ) {
-					event.getCallStackThrowable().initCause( throwable );
-					Log.write( event.getCallStackThrowable() );
+					logListenerException( listener, event, throwable );
 				}
 			}
-
-			event.processed();
 		}
+		channel.setConsumed( last + 1 );
+
+		return true;
 	}
 
-	private Map<String, Event> selectEvents() {
-		Map<String, Event> events = new HashMap<String, Event>();
+	/**
+	 * Send the event to the listeners of the queue. The time from submit and the
+	 * time spent in each listener are recorded with one clock read per listener.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private void deliver( QueueEntry queue, Event event ) {
+		long time = System.nanoTime();
+		queue.dispatchLatency.record( time - event.getSubmitTime() );
 
-		for( String queueName : queues.keySet() ) {
-			synchronized( eventlock ) {
-				Queue<Event> queue = queues.get( queueName );
-				Event event = queue.poll();
-				if( event != null ) eventCount--;
-				while( event != null && event.isCancelled() ) {
-					event = queue.poll();
-					if( event != null ) eventCount--;
-				}
-				if( eventCount < 0 ) eventCount = 0;
-				if( event != null ) events.put( queueName, event );
+		if( Log.isActive( Log.DEBUG ) ) Log.write( Log.DEBUG, "Queue: " + queue.name + " Event: " + event );
+		for( EventListener listener : selectListeners( event, queue.name ) ) {
+			try {
+				listener.eventOccurred( event );
+			} catch( Throwable throwable ) {
+				logListenerException( listener, event, throwable );
 			}
+			time = recordListenerTime( queue, listener, time );
+		}
+
+		event.processed();
+	}
+
+	/**
+	 * Record the time spent in a listener.
+	 * 
+	 * @param start The time the listener was called.
+	 * @return The time the listener returned.
+	 */
+	private long recordListenerTime( QueueEntry queue, EventListener<?> listener, long start ) {
+		long time = System.nanoTime();
+		queue.getListenerTime( listener ).record( time - start );
+		return time;
+	}
+
+	private void registerQueue( String queueName ) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getObjectName( queueName );
+			if( !server.isRegistered( name ) ) server.registerMBean( new EventQueueMonitor( this, queueName ), name );
+		} catch( JMException exception ) {
+			Log.write( Log.WARN, exception, "Unable to register event queue: " + queueName );
+		}
+	}
+
+	private void unregisterQueue( String queueName ) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = getObjectName( queueName );
+			if( server.isRegistered( name ) ) server.unregisterMBean( name );
+		} catch( JMException exception ) {
+			Log.write( Log.WARN, exception, "Unable to unregister event queue: " + queueName );
+		}
+	}
+
+	private ObjectName getObjectName( String queueName ) throws JMException {
+		return new ObjectName( "com.parallelsymmetry.utility.event:type=EventBus,bus=" + ObjectName.quote( getName() ) + ",queue=" + ObjectName.quote( queueName ) );
+	}
+
+	/**
+	 * Log an exception thrown by a listener with the call site that submitted
+	 * the event. The call site can only be the cause of one exception, so if
+	 * another listener already failed on the event only the exception is logged.
+	 */
+	private void logListenerException( EventListener listener, Event event, Throwable throwable ) {
+		Throwable callSite = event.getCallStackThrowable();
+		if( callSite == null || callSite.getCause() != null ) {
+			Log.write( throwable, "Event listener failed: ", listener, " event: ", event );
+		} else {
+			callSite.initCause( throwable );
+			Log.write( callSite, "Event listener failed: ", listener, " event: ", event );
 		}
+	}
 
-		return events;
+	private boolean hasBatchListeners( Map<Class<? extends Event>, Set<EventListener<?>>> queueListeners ) {
+		for( Set<EventListener<?>> classListeners : queueListeners.values() ) {
+			for( EventListener<?> listener : classListeners ) {
+				if( listener instanceof BatchEventListener ) return true;
+			}
+		}
+		return false;
 	}
 
-	private Set<EventListener<?>> selectListeners( Event event, String queueName ) {
-		Set<EventListener<?>> listeners = new HashSet<EventListener<?>>();
+	/**
+	 * Get the listeners for the event from the dispatch table of the queue. The
+	 * table entry is created the first time an event of the class is delivered.
+	 * If the listeners change while the entry is created the table has already
+	 * been removed so the entry is not used again.
+	 */
+	private EventListener<?>[] selectListeners( Event event, String queueName ) {
+		ConcurrentMap<Class<?>, EventListener<?>[]> dispatch = dispatchByQueue.get( queueName );
+		if( dispatch == null ) {
+			ConcurrentMap<Class<?>, EventListener<?>[]> newDispatch = new ConcurrentHashMap<Class<?>, EventListener<?>[]>();
+			dispatch = dispatchByQueue.putIfAbsent( queueName, newDispatch );
+			if( dispatch == null ) dispatch = newDispatch;
+		}
+
+		Class<?> eventClass = event.getClass();
+		EventListener<?>[] listeners = dispatch.get( eventClass );
+		if( listeners == null ) {
+			listeners = createDispatch( eventClass, queueName );
+			dispatch.put( eventClass, listeners );
+		}
 
+		return listeners;
+	}
+
+	private EventListener<?>[] createDispatch( Class<?> eventClass, String queueName ) {
 		Map<Class<? extends Event>, Set<EventListener<?>>> queueListeners = listenersByQueue.get( queueName );
-		if( queueListeners == null ) return listeners;
+		if( queueListeners == null ) return NO_LISTENERS;
 
-		Class<?> clazz = event.getClass();
+		Set<EventListener<?>> listeners = new LinkedHashSet<EventListener<?>>();
+		Class<?> clazz = eventClass;
 		while( clazz != null ) {
 			Set<EventListener<?>> classListeners = queueListeners.get( clazz );
 			if( classListeners != null ) listeners.addAll( classListeners );
 			clazz = clazz.getSuperclass();
 		}
 
-		return listeners;
+		return listeners.isEmpty() ? NO_LISTENERS : listeners.toArray( new EventListener<?>[listeners.size()] );
+	}
+
+	/**
+	 * A named queue with its capacity, overflow policy and counters. A thread
+	 * blocked by the full queue waits on the queue entry and is notified when an
+	 * event is removed.
+	 */
+	private static class QueueEntry {
+
+		/**
+		 * Marks a pending coalesced event that has been taken from the queue.
+		 */
+		private static final Event TAKEN = new Event( QueueEntry.class );
+
+		private final String name;
+
+		private final PriorityEventQueue events = new PriorityEventQueue();
+
+		private volatile Dispatcher dispatcher;
+
+		private volatile RingBufferChannel channel;
+
+		private volatile int capacity = Integer.MAX_VALUE;
+
+		private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+		private volatile long blockTimeout;
+
+		/**
+		 * The pending coalesced events by coalescing key.
+		 */
+		private final ConcurrentMap<Object, Pending> pending = new ConcurrentHashMap<Object, Pending>();
+
+		private final AtomicInteger waiting = new AtomicInteger();
+
+		private final AtomicLong dropped = new AtomicLong();
+
+		private final AtomicLong blocked = new AtomicLong();
+
+		private final AtomicLong coalesced = new AtomicLong();
+
+		private final AtomicLong cancelled = new AtomicLong();
+
+		private final AtomicInteger highWaterMark = new AtomicInteger();
+
+		private final LatencyRecorder dispatchLatency = new LatencyRecorder();
+
+		private final ConcurrentMap<EventListener<?>, LatencyRecorder> listenerTimes = new ConcurrentHashMap<EventListener<?>, LatencyRecorder>();
+
+		/**
+		 * The removed count of each lane published by the dispatcher when no
+		 * event of the queue is being delivered. Guarded by the completion lock.
+		 */
+		private final long[] completed = new long[events.getLaneCount()];
+
+		private final Object completionLock = new Object();
+
+		private final AtomicInteger completionWaiters = new AtomicInteger();
+
+		public QueueEntry( String name ) {
+			this.name = name;
+		}
+
+		/**
+		 * Wait until the events added to the queue and the slots claimed in its
+		 * channel before this call have been processed. The dispatcher is woken so
+		 * it publishes the completed counts even if the queue is already empty.
+		 * 
+		 * @param target An array to hold the added count of each lane.
+		 * @return False if the thread was interrupted.
+		 */
+		public boolean waitForCompletion( long[] target ) {
+			events.getAddedCounts( target );
+			RingBufferChannel channel = this.channel;
+			long slots = channel == null ? 0 : channel.getClaimed();
+
+			completionWaiters.incrementAndGet();
+			try {
+				dispatcher.wake();
+				synchronized( completionLock ) {
+					while( !isCompleted( target, channel, slots ) ) {
+						completionLock.wait();
+					}
+				}
+				return true;
+			} catch( InterruptedException exception ) {
+				Thread.currentThread().interrupt();
+				return false;
+			} finally {
+				completionWaiters.decrementAndGet();
+			}
+		}
+
+		/**
+		 * Publish the removed counts to the waiting threads. Only called by the
+		 * dispatcher between events.
+		 */
+		public void publishCompleted() {
+			if( completionWaiters.get() == 0 ) return;
+			synchronized( completionLock ) {
+				events.getRemovedCounts( completed );
+				completionLock.notifyAll();
+			}
+		}
+
+		/**
+		 * Must be called with the completion lock held.
+		 */
+		private boolean isCompleted( long[] target, RingBufferChannel channel, long slots ) {
+			for( int index = 0; index < target.length; index++ ) {
+				if( completed[index] < target[index] ) return false;
+			}
+			return channel == null || channel != this.channel || channel.getConsumed() >= slots;
+		}
+
+		public void updateHighWaterMark() {
+			int depth = events.size();
+			int mark = highWaterMark.get();
+			while( depth > mark && !highWaterMark.compareAndSet( mark, depth ) ) {
+				mark = highWaterMark.get();
+			}
+		}
+
+		public int getDepth() {
+			RingBufferChannel channel = this.channel;
+			return channel == null ? events.size() : events.size() + channel.size();
+		}
+
+		public boolean isEmpty() {
+			RingBufferChannel channel = this.channel;
+			return events.isEmpty() && ( channel == null || channel.isEmpty() );
+		}
+
+		public LatencyRecorder getListenerTime( EventListener<?> listener ) {
+			LatencyRecorder recorder = listenerTimes.get( listener );
+			if( recorder == null ) {
+				LatencyRecorder newRecorder = new LatencyRecorder();
+				recorder = listenerTimes.putIfAbsent( listener, newRecorder );
+				if( recorder == null ) recorder = newRecorder;
+			}
+			return recorder;
+		}
+
+		public EventQueueMetrics getMetrics() {
+			Map<EventListener<?>, LatencyHistogram> times = new IdentityHashMap<EventListener<?>, LatencyHistogram>();
+			for( Map.Entry<EventListener<?>, LatencyRecorder> entry : listenerTimes.entrySet() ) {
+				times.put( entry.getKey(), entry.getValue().getHistogram() );
+			}
+			return new EventQueueMetrics( name, getDepth(), highWaterMark.get(), capacity, cancelled.get(), dropped.get(), blocked.get(), coalesced.get(), dispatchLatency.getHistogram(), times );
+		}
+
+		/**
+		 * Remove the next event. If the event holds the place of a coalesced event
+		 * the latest event with the same key is returned instead.
+		 */
+		public Event poll( long interval ) {
+			Event event = events.poll( interval );
+			if( event == null ) return null;
+			spaceAvailable();
+			return resolve( event );
+		}
+
+		public Event pollLowest() {
+			Event event = events.pollLowest();
+			if( event == null ) return null;
+			spaceAvailable();
+			return resolve( event );
+		}
+
+		/**
+		 * Replace the pending event with the same key or add the event to the
+		 * queue to hold the place of later events with the same key.
+		 * 
+		 * @return True if the event was added to the queue.
+		 */
+		public boolean coalesce( Event event, Object key ) {
+			while( true ) {
+				Pending current = pending.get( key );
+				if( current != null ) {
+					Event latest = current.latest.get();
+					if( latest != TAKEN && current.latest.compareAndSet( latest, event ) ) {
+						coalesced.incrementAndGet();
+						latest.processed();
+						return false;
+					}
+					pending.remove( key, current );
+					continue;
+				}
+
+				// The pending entry is added before the event so the event bus thread
+				// cannot take the event without finding the entry.
+				Pending entry = new Pending( event );
+				if( pending.putIfAbsent( key, entry ) != null ) continue;
+				if( events.offer( event, capacity ) ) return true;
+
+				pending.remove( key, entry );
+				drop( entry.latest.getAndSet( TAKEN ) );
+				return false;
+			}
+		}
+
+		/**
+		 * Wait for room in the queue and add the event.
+		 * 
+		 * @return True if the event was added, false if the timeout expired.
+		 */
+		public boolean block( Event event ) {
+			long timeout = blockTimeout;
+			long deadline = System.nanoTime() + timeout;
+			blocked.incrementAndGet();
+
+			synchronized( this ) {
+				waiting.incrementAndGet();
+				try {
+					while( !events.offer( event, capacity ) ) {
+						if( timeout == 0 ) {
+							wait();
+						} else {
+							long remaining = deadline - System.nanoTime();
+							if( remaining <= 0 ) return false;
+							TimeUnit.NANOSECONDS.timedWait( this, remaining );
+						}
+					}
+					return true;
+				} catch( InterruptedException exception ) {
+					Thread.currentThread().interrupt();
+					return false;
+				} finally {
+					waiting.decrementAndGet();
+				}
+			}
+		}
+
+		public void drop( Event event ) {
+			dropped.incrementAndGet();
+			event.cancel();
+			event.processed();
+		}
+
+		public void spaceAvailable() {
+			if( waiting.get() == 0 ) return;
+			synchronized( this ) {
+				notifyAll();
+			}
+		}
+
+		private Event resolve( Event event ) {
+			if( pending.isEmpty() ) return event;
+
+			Object key = event.getCoalescingKey();
+			if( key == null ) return event;
+
+			Pending entry = pending.get( key );
+			if( entry == null || entry.event != event ) return event;
+
+			pending.remove( key, entry );
+			return entry.latest.getAndSet( TAKEN );
+		}
+
+	}
+
+	/**
+	 * The place of a coalesced event in the queue and the latest event with the
+	 * same key.
+	 */
+	private static class Pending {
+
+		private final Event event;
+
+		private final AtomicReference<Event> latest;
+
+		public Pending( Event event ) {
+			this.event = event;
+			this.latest = new AtomicReference<Event>( event );
+		}
+
+	}
+
+	/**
+	 * Delivers the events of a set of queues on one thread, taking the next event
+	 * from each queue in turn. The dispatcher parks when all its queues are empty
+	 * and a submitting thread only wakes it when it is parked.
+	 */
+	private class Dispatcher implements Runnable {
+
+		private final String group;
+
+		private final List<QueueEntry> queues = new CopyOnWriteArrayList<QueueEntry>();
+
+		/**
+		 * Set by the dispatch thread before it parks and cleared by the thread
+		 * that wakes it, so only one submitting thread unparks the dispatch thread.
+		 */
+		private final AtomicBoolean idle = new AtomicBoolean();
+
+		private volatile Thread thread;
+
+		public Dispatcher( String group ) {
+			this.group = group;
+		}
+
+		public void add( QueueEntry queue ) {
+			queues.add( queue );
+		}
+
+		public void clear() {
+			queues.clear();
+		}
+
+		public boolean isDispatchThread() {
+			return Thread.currentThread() == thread;
+		}
+
+		/**
+		 * Start a thread for the dispatcher. Only used for the dispatchers that do
+		 * not run on the event bus thread.
+		 */
+		public synchronized void start() {
+			if( thread != null ) return;
+			thread = new Thread( this, getName() + ":" + group );
+			thread.setDaemon( true );
+			thread.start();
+		}
+
+		/**
+		 * Stop the dispatch thread and wait for it to end. When called by a
+		 * listener on the dispatch thread the thread is not joined, it ends after
+		 * the listener returns.
+		 */
+		public synchronized void stop() throws InterruptedException {
+			Thread thread = this.thread;
+			if( thread == null ) return;
+			LockSupport.unpark( thread );
+			if( thread != Thread.currentThread() ) thread.join();
+			this.thread = null;
+		}
+
+		/**
+		 * Wake the dispatch thread if it is parked.
+		 */
+		public void signal() {
+			if( idle.get() && idle.compareAndSet( true, false ) ) LockSupport.unpark( thread );
+		}
+
+		public void wake() {
+			Thread thread = this.thread;
+			if( thread != null ) LockSupport.unpark( thread );
+		}
+
+		@Override
+		public void run() {
+			thread = Thread.currentThread();
+
+			while( isExecutable() ) {
+				if( processEvents() ) continue;
+
+				// Park until an event is submitted. The queues are checked again after
+				// the idle flag is set so an event submitted in between is not missed.
+				idle.set( true );
+				if( hasEvents() || !isExecutable() ) {
+					idle.set( false );
+					continue;
+				}
+				LockSupport.park( this );
+				idle.set( false );
+
+				if( Thread.interrupted() ) return;
+			}
+		}
+
+		private boolean hasEvents() {
+			for( QueueEntry queue : queues ) {
+				if( !queue.isEmpty() ) return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Process the next event of each queue.
+		 * 
+		 * @return True if any event was removed from a queue.
+		 */
+		private boolean processEvents() {
+			boolean found = false;
+			for( QueueEntry queue : queues ) {
+				found |= processEvent( queue );
+				queue.publishCompleted();
+			}
+			return found;
+		}
+
 	}
 
 }
@@ -0,0 +1,37 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.Map;
+
+/**
+ * The management interface of an event bus queue. Times are in microseconds
+ * and the listener times are by the listener string.
+ */
+public interface EventQueueMXBean {
+
+	String getName();
+
+	int getDepth();
+
+	int getHighWaterMark();
+
+	int getCapacity();
+
+	long getDeliveredCount();
+
+	long getCancelledCount();
+
+	long getDroppedCount();
+
+	long getBlockedCount();
+
+	long getCoalescedCount();
+
+	long getDispatchLatencyMeanMicros();
+
+	long getDispatchLatency99thPercentileMicros();
+
+	long getDispatchLatencyMaxMicros();
+
+	Map<String, Long> getListenerTime99thPercentileMicros();
+
+}
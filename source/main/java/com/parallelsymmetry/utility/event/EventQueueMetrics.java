@@ -0,0 +1,123 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A snapshot of the metrics of an event bus queue. The counters are totals
+ * since the queue was created. The dispatch latency is the time from submit
+ * until the event is taken from the queue and the listener times are the time
+ * spent in each listener of the queue.
+ */
+public final class EventQueueMetrics {
+
+	private final String name;
+
+	private final int depth;
+
+	private final int highWaterMark;
+
+	private final int capacity;
+
+	private final long cancelledCount;
+
+	private final long droppedCount;
+
+	private final long blockedCount;
+
+	private final long coalescedCount;
+
+	private final LatencyHistogram dispatchLatency;
+
+	private final Map<EventListener<?>, LatencyHistogram> listenerTimes;
+
+	EventQueueMetrics( String name, int depth, int highWaterMark, int capacity, long cancelledCount, long droppedCount, long blockedCount, long coalescedCount, LatencyHistogram dispatchLatency, Map<EventListener<?>, LatencyHistogram> listenerTimes ) {
+		this.name = name;
+		this.depth = depth;
+		this.highWaterMark = highWaterMark;
+		this.capacity = capacity;
+		this.cancelledCount = cancelledCount;
+		this.droppedCount = droppedCount;
+		this.blockedCount = blockedCount;
+		this.coalescedCount = coalescedCount;
+		this.dispatchLatency = dispatchLatency;
+		this.listenerTimes = Collections.unmodifiableMap( listenerTimes );
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the number of events waiting in the queue.
+	 * 
+	 * @return The number of waiting events.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Get the largest number of events that have been waiting in the queue.
+	 * 
+	 * @return The high-water mark.
+	 */
+	public int getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the number of events delivered from the queue.
+	 * 
+	 * @return The number of delivered events.
+	 */
+	public long getDeliveredCount() {
+		return dispatchLatency.getCount();
+	}
+
+	/**
+	 * Get the number of cancelled events removed from the queue without being
+	 * delivered.
+	 * 
+	 * @return The number of cancelled events.
+	 */
+	public long getCancelledCount() {
+		return cancelledCount;
+	}
+
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+	public long getBlockedCount() {
+		return blockedCount;
+	}
+
+	public long getCoalescedCount() {
+		return coalescedCount;
+	}
+
+	public LatencyHistogram getDispatchLatency() {
+		return dispatchLatency;
+	}
+
+	/**
+	 * Get the time spent in each listener of the queue. A batch listener records
+	 * one time for each batch.
+	 * 
+	 * @return The listener times by listener.
+	 */
+	public Map<EventListener<?>, LatencyHistogram> getListenerTimes() {
+		return listenerTimes;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": depth=" + depth + " highWaterMark=" + highWaterMark + " delivered=" + getDeliveredCount() + " cancelled=" + cancelledCount + " dropped=" + droppedCount + " blocked=" + blockedCount + " coalesced=" + coalescedCount + " latency=[" + dispatchLatency + "]";
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the metrics of an event bus queue through JMX. Each attribute is
+ * read from a new snapshot of the queue metrics.
+ */
+final class EventQueueMonitor implements EventQueueMXBean {
+
+	private final EventBus bus;
+
+	private final String queueName;
+
+	public EventQueueMonitor( EventBus bus, String queueName ) {
+		this.bus = bus;
+		this.queueName = queueName;
+	}
+
+	@Override
+	public String getName() {
+		return queueName;
+	}
+
+	@Override
+	public int getDepth() {
+		return getMetrics().getDepth();
+	}
+
+	@Override
+	public int getHighWaterMark() {
+		return getMetrics().getHighWaterMark();
+	}
+
+	@Override
+	public int getCapacity() {
+		return getMetrics().getCapacity();
+	}
+
+	@Override
+	public long getDeliveredCount() {
+		return getMetrics().getDeliveredCount();
+	}
+
+	@Override
+	public long getCancelledCount() {
+		return getMetrics().getCancelledCount();
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return getMetrics().getDroppedCount();
+	}
+
+	@Override
+	public long getBlockedCount() {
+		return getMetrics().getBlockedCount();
+	}
+
+	@Override
+	public long getCoalescedCount() {
+		return getMetrics().getCoalescedCount();
+	}
+
+	@Override
+	public long getDispatchLatencyMeanMicros() {
+		return getMetrics().getDispatchLatency().getMean( TimeUnit.MICROSECONDS );
+	}
+
+	@Override
+	public long getDispatchLatency99thPercentileMicros() {
+		return getMetrics().getDispatchLatency().getPercentile( 99, TimeUnit.MICROSECONDS );
+	}
+
+	@Override
+	public long getDispatchLatencyMaxMicros() {
+		return getMetrics().getDispatchLatency().getMax( TimeUnit.MICROSECONDS );
+	}
+
+	@Override
+	public Map<String, Long> getListenerTime99thPercentileMicros() {
+		Map<String, Long> times = new HashMap<String, Long>();
+		for( Map.Entry<EventListener<?>, LatencyHistogram> entry : getMetrics().getListenerTimes().entrySet() ) {
+			times.put( entry.getKey().toString(), entry.getValue().getPercentile( 99, TimeUnit.MICROSECONDS ) );
+		}
+		return times;
+	}
+
+	private EventQueueMetrics getMetrics() {
+		return bus.getMetrics( queueName );
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of recorded durations in power of two buckets. Bucket zero counts
+ * zero durations and bucket n counts durations from 2^(n-1) to 2^n - 1
+ * nanoseconds. Percentiles are reported as the upper bound of the bucket that
+ * contains them so they are at most twice the actual value.
+ */
+public final class LatencyHistogram {
+
+	private final long[] counts;
+
+	private final long count;
+
+	private final long total;
+
+	private final long max;
+
+	LatencyHistogram( long[] counts, long total, long max ) {
+		this.counts = counts;
+		this.total = total;
+		this.max = max;
+
+		long count = 0;
+		for( long bucket : counts ) {
+			count += bucket;
+		}
+		this.count = count;
+	}
+
+	/**
+	 * Get the number of recorded durations.
+	 * 
+	 * @return The number of recorded durations.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotal( TimeUnit unit ) {
+		return unit.convert( total, TimeUnit.NANOSECONDS );
+	}
+
+	public long getMean( TimeUnit unit ) {
+		return count == 0 ? 0 : unit.convert( total / count, TimeUnit.NANOSECONDS );
+	}
+
+	public long getMax( TimeUnit unit ) {
+		return unit.convert( max, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Get the upper bound of the bucket that contains the percentile.
+	 * 
+	 * @param percentile The percentile from 0 to 100.
+	 * @param unit The time unit of the result.
+	 * @return The percentile or zero if nothing was recorded.
+	 */
+	public long getPercentile( double percentile, TimeUnit unit ) {
+		if( percentile < 0 || percentile > 100 ) throw new IllegalArgumentException( "Percentile must be from 0 to 100: " + percentile );
+		if( count == 0 ) return 0;
+
+		long rank = (long)Math.ceil( count * percentile / 100.0 );
+		if( rank < 1 ) rank = 1;
+
+		long seen = 0;
+		for( int index = 0; index < counts.length; index++ ) {
+			seen += counts[index];
+			if( seen >= rank ) return unit.convert( Math.min( getBucketLimit( index ), max ), TimeUnit.NANOSECONDS );
+		}
+		return unit.convert( max, TimeUnit.NANOSECONDS );
+	}
+
+	public int getBucketCount() {
+		return counts.length;
+	}
+
+	/**
+	 * Get the number of durations in a bucket.
+	 * 
+	 * @param bucket The bucket index.
+	 * @return The number of durations in the bucket.
+	 */
+	public long getBucketValue( int bucket ) {
+		return counts[bucket];
+	}
+
+	/**
+	 * Get the largest duration counted in a bucket.
+	 * 
+	 * @param bucket The bucket index.
+	 * @return The largest duration in nanoseconds.
+	 */
+	public static long getBucketLimit( int bucket ) {
+		if( bucket == 0 ) return 0;
+		if( bucket >= 63 ) return Long.MAX_VALUE;
+		return ( 1L << bucket ) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " mean=" + getMean( TimeUnit.NANOSECONDS ) + "ns p50=" + getPercentile( 50, TimeUnit.NANOSECONDS ) + "ns p99=" + getPercentile( 99, TimeUnit.NANOSECONDS ) + "ns max=" + max + "ns";
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations in power of two buckets so recording is a few atomic
+ * additions with no allocation. Bucket zero counts zero durations and bucket n
+ * counts durations from 2^(n-1) to 2^n - 1 nanoseconds.
+ */
+final class LatencyRecorder {
+
+	static final int BUCKET_COUNT = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	public void record( long nanos ) {
+		if( nanos < 0 ) nanos = 0;
+		buckets.incrementAndGet( getBucket( nanos ) );
+		total.addAndGet( nanos );
+
+		long current = max.get();
+		while( nanos > current && !max.compareAndSet( current, nanos ) ) {
+			current = max.get();
+		}
+	}
+
+	public LatencyHistogram getHistogram() {
+		long[] counts = new long[BUCKET_COUNT];
+		for( int index = 0; index < BUCKET_COUNT; index++ ) {
+			counts[index] = buckets.get( index );
+		}
+		return new LatencyHistogram( counts, total.get(), max.get() );
+	}
+
+	static int getBucket( long nanos ) {
+		return 64 - Long.numberOfLeadingZeros( nanos );
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * An event queue with one lock-free lane for each event priority. Any number of
+ * threads may add events without locking while the event bus thread removes
+ * them, highest priority first. Events with the same priority are removed in
+ * the order they were added.
+ * <p>
+ * With aging the priority of a waiting event is raised by one level for each
+ * aging interval since it was submitted, so low priority events are not starved
+ * by a steady stream of high priority events. Only one thread should take
+ * events from the queue with poll() so the lanes are compared consistently.
+ * <p>
+ * The queue counts the events added to and removed from each lane. Since each
+ * lane is first in first out, once the removed count of a lane reaches the
+ * added count read earlier every event added to the lane before then has been
+ * removed.
+ */
+final class PriorityEventQueue {
+
+	private final Queue<Event>[] lanes;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final AtomicLongArray added;
+
+	private final AtomicLongArray removed;
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public PriorityEventQueue() {
+		lanes = new Queue[Event.HIGHEST_PRIORITY - Event.LOWEST_PRIORITY + 1];
+		for( int index = 0; index < lanes.length; index++ ) {
+			lanes[index] = new ConcurrentLinkedQueue<Event>();
+		}
+		added = new AtomicLongArray( lanes.length );
+		removed = new AtomicLongArray( lanes.length );
+	}
+
+	public void add( Event event ) {
+		size.incrementAndGet();
+		int lane = getLane( event.getPriority() );
+		lanes[lane].offer( event );
+		added.incrementAndGet( lane );
+	}
+
+	/**
+	 * Add the event if the queue has fewer events than the capacity.
+	 *
+	 * @param event The event.
+	 * @param capacity The maximum number of events in the queue.
+	 * @return True if the event was added, false if the queue is full.
+	 */
+	public boolean offer( Event event, int capacity ) {
+		int count;
+		do {
+			count = size.get();
+			if( count >= capacity ) return false;
+		} while( !size.compareAndSet( count, count + 1 ) );
+
+		int lane = getLane( event.getPriority() );
+		lanes[lane].offer( event );
+		added.incrementAndGet( lane );
+		return true;
+	}
+
+	/**
+	 * Remove the next event, highest priority first.
+	 *
+	 * @return The next event or null if the queue is empty.
+	 */
+	public Event poll() {
+		for( int index = lanes.length - 1; index >= 0; index-- ) {
+			Event event = poll( index );
+			if( event != null ) return event;
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the oldest event with the lowest priority. Used to make room in a
+	 * full queue and may be called by any thread.
+	 *
+	 * @return The removed event or null if the queue is empty.
+	 */
+	public Event pollLowest() {
+		for( int index = 0; index < lanes.length; index++ ) {
+			Event event = poll( index );
+			if( event != null ) return event;
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the next event, highest aged priority first. The first event in each
+	 * lane is the oldest in the lane so only the first events are compared. When
+	 * the aged priorities are equal the event from the higher lane is removed.
+	 *
+	 * @param interval The aging interval in nanoseconds or zero to disable aging.
+	 * @return The next event or null if the queue is empty.
+	 */
+	public Event poll( long interval ) {
+		if( interval <= 0 ) return poll();
+
+		long now = System.nanoTime();
+		int lane = -1;
+		long age = 0;
+		long priority = 0;
+		for( int index = lanes.length - 1; index >= 0; index-- ) {
+			Event event = lanes[index].peek();
+			if( event == null ) continue;
+
+			// An event from a lower lane can only be first if it is older.
+			long eventAge = now - event.getSubmitTime();
+			if( lane >= 0 && eventAge <= age ) continue;
+
+			long aged = index + eventAge / interval;
+			if( lane < 0 || aged > priority ) {
+				lane = index;
+				age = eventAge;
+				priority = aged;
+			}
+		}
+
+		return lane < 0 ? null : poll( lane );
+	}
+
+	/**
+	 * Get the number of events in the queue.
+	 *
+	 * @return The number of events.
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	public boolean isEmpty() {
+		for( Queue<Event> lane : lanes ) {
+			if( !lane.isEmpty() ) return false;
+		}
+		return true;
+	}
+
+	public int getLaneCount() {
+		return lanes.length;
+	}
+
+	/**
+	 * Copy the number of events added to each lane.
+	 *
+	 * @param counts The array to fill, one entry per lane.
+	 */
+	public void getAddedCounts( long[] counts ) {
+		for( int index = 0; index < counts.length; index++ ) {
+			counts[index] = added.get( index );
+		}
+	}
+
+	/**
+	 * Copy the number of events removed from each lane.
+	 *
+	 * @param counts The array to fill, one entry per lane.
+	 */
+	public void getRemovedCounts( long[] counts ) {
+		for( int index = 0; index < counts.length; index++ ) {
+			counts[index] = removed.get( index );
+		}
+	}
+
+	private Event poll( int lane ) {
+		Event event = lanes[lane].poll();
+		if( event != null ) {
+			size.decrementAndGet();
+			removed.incrementAndGet( lane );
+		}
+		return event;
+	}
+
+	private static int getLane( int priority ) {
+		if( priority < Event.LOWEST_PRIORITY ) priority = Event.LOWEST_PRIORITY;
+		if( priority > Event.HIGHEST_PRIORITY ) priority = Event.HIGHEST_PRIORITY;
+		return priority - Event.LOWEST_PRIORITY;
+	}
+
+}
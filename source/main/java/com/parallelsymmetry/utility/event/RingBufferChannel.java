@@ -0,0 +1,290 @@
+package com.parallelsymmetry.utility.event;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A ring buffer of preallocated slots for events that are only a type id and a
+ * few primitive values. Publishing a slot does not allocate so a channel can
+ * carry millions of samples per second without creating garbage.
+ * <p>
+ * Any number of threads may publish to the channel. A producer claims the next
+ * sequence number with next(), sets the values of the slot and then publishes
+ * it. If the channel is full next() waits until the consumer has taken the
+ * oldest slot, parking for longer and longer between checks. The convenience
+ * publish methods do all three steps. A claimed slot must always be published,
+ * since the consumer stops at the first slot that is not.
+ * <p>
+ * A channel is consumed by attaching it to an event bus queue with
+ * EventBus.setChannel(). The listeners of the queue receive a RingBufferEvent
+ * for each slot in sequence order. The event is reused for every slot so
+ * listeners must copy the values they need to keep. The event reports the
+ * sequence number of the slot and whether the slot is the last of the batch
+ * that was available when the event bus took the slots.
+ */
+public final class RingBufferChannel {
+
+	private static final int SPIN_COUNT = 64;
+
+	private static final long MAX_PARK_NANOS = 1000000;
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final int shift;
+
+	private final int longCount;
+
+	private final int doubleCount;
+
+	private final int[] types;
+
+	private final long[] longs;
+
+	private final double[] doubles;
+
+	/**
+	 * The round of the sequence last published in each slot. A slot is
+	 * published for a sequence when the round of the sequence is stored.
+	 */
+	private final AtomicIntegerArray published;
+
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * The sequence of the next slot to be consumed.
+	 */
+	private volatile long consumed;
+
+	private volatile Runnable signal;
+
+	private final RingBufferEvent event;
+
+	/**
+	 * Create a channel.
+	 *
+	 * @param capacity The number of slots. Must be a power of two.
+	 * @param longCount The number of long values in each slot.
+	 * @param doubleCount The number of double values in each slot.
+	 */
+	public RingBufferChannel( int capacity, int longCount, int doubleCount ) {
+		if( capacity < 1 || Integer.bitCount( capacity ) != 1 ) throw new IllegalArgumentException( "Capacity must be a power of two: " + capacity );
+		if( longCount < 0 ) throw new IllegalArgumentException( "Long count cannot be negative: " + longCount );
+		if( doubleCount < 0 ) throw new IllegalArgumentException( "Double count cannot be negative: " + doubleCount );
+
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.shift = Integer.numberOfTrailingZeros( capacity );
+		this.longCount = longCount;
+		this.doubleCount = doubleCount;
+		this.types = new int[capacity];
+		this.longs = new long[capacity * longCount];
+		this.doubles = new double[capacity * doubleCount];
+		this.published = new AtomicIntegerArray( capacity );
+		for( int index = 0; index < capacity; index++ ) {
+			published.set( index, -1 );
+		}
+		this.event = new RingBufferEvent( this );
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getLongCount() {
+		return longCount;
+	}
+
+	public int getDoubleCount() {
+		return doubleCount;
+	}
+
+	/**
+	 * Get the number of slots that have been claimed and not yet consumed. The
+	 * size is never more than the capacity. Producers waiting for a slot in a
+	 * full channel are not counted.
+	 *
+	 * @return The number of slots in use.
+	 */
+	public int size() {
+		// Read the consumed sequence first so the size cannot be negative.
+		long consumed = this.consumed;
+		return (int)Math.min( claimed.get() - consumed, capacity );
+	}
+
+	/**
+	 * Claim the next slot, waiting while the channel is full. Must not be called
+	 * from a listener of the channel since the listener would wait for itself.
+	 *
+	 * @return The sequence number of the slot.
+	 */
+	public long next() {
+		long sequence = claimed.getAndIncrement();
+		int spins = 0;
+		long park = 1000;
+		while( sequence - capacity >= consumed ) {
+			Runnable signal = this.signal;
+			if( signal != null ) signal.run();
+			if( spins < SPIN_COUNT ) {
+				spins++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos( park );
+				park = Math.min( park * 2, MAX_PARK_NANOS );
+			}
+		}
+		return sequence;
+	}
+
+	public void setType( long sequence, int type ) {
+		types[getIndex( sequence )] = type;
+	}
+
+	public void setLong( long sequence, int index, long value ) {
+		longs[getLongIndex( sequence, index )] = value;
+	}
+
+	public void setDouble( long sequence, int index, double value ) {
+		doubles[getDoubleIndex( sequence, index )] = value;
+	}
+
+	/**
+	 * Make a claimed slot available to the consumer. The values set before the
+	 * slot is published are visible to the consumer.
+	 *
+	 * @param sequence The sequence number from next().
+	 */
+	public void publish( long sequence ) {
+		published.lazySet( getIndex( sequence ), getRound( sequence ) );
+		Runnable signal = this.signal;
+		if( signal != null ) signal.run();
+	}
+
+	/**
+	 * Claim, fill and publish a slot with a type and one long value.
+	 *
+	 * @param type The type id.
+	 * @param value The first long value.
+	 * @return The sequence number of the slot.
+	 */
+	public long publish( int type, long value ) {
+		// Check before claiming so a failure does not leave an unpublished slot.
+		if( longCount == 0 ) throw new IndexOutOfBoundsException( "Channel has no long values." );
+		long sequence = next();
+		setType( sequence, type );
+		setLong( sequence, 0, value );
+		publish( sequence );
+		return sequence;
+	}
+
+	/**
+	 * Claim, fill and publish a slot with a type and one double value.
+	 *
+	 * @param type The type id.
+	 * @param value The first double value.
+	 * @return The sequence number of the slot.
+	 */
+	public long publish( int type, double value ) {
+		// Check before claiming so a failure does not leave an unpublished slot.
+		if( doubleCount == 0 ) throw new IndexOutOfBoundsException( "Channel has no double values." );
+		long sequence = next();
+		setType( sequence, type );
+		setDouble( sequence, 0, value );
+		publish( sequence );
+		return sequence;
+	}
+
+	public int getType( long sequence ) {
+		return types[getIndex( sequence )];
+	}
+
+	public long getLong( long sequence, int index ) {
+		return longs[getLongIndex( sequence, index )];
+	}
+
+	public double getDouble( long sequence, int index ) {
+		return doubles[getDoubleIndex( sequence, index )];
+	}
+
+	/**
+	 * Get the sequence of the next slot to be claimed.
+	 */
+	long getClaimed() {
+		return claimed.get();
+	}
+
+	/**
+	 * Get the sequence of the next slot to be consumed.
+	 */
+	long getConsumed() {
+		return consumed;
+	}
+
+	/**
+	 * Release the slots before the sequence to the producers. Only called by the
+	 * consumer.
+	 */
+	void setConsumed( long sequence ) {
+		consumed = sequence;
+	}
+
+	/**
+	 * Get the last sequence of the published slots that follow the sequence
+	 * without a gap.
+	 *
+	 * @param sequence The first sequence to check.
+	 * @return The last available sequence or sequence - 1 if the slot is not
+	 *         published yet.
+	 */
+	long getAvailable( long sequence ) {
+		long limit = claimed.get();
+		while( sequence < limit && isPublished( sequence ) ) {
+			sequence++;
+		}
+		return sequence - 1;
+	}
+
+	boolean isEmpty() {
+		return !isPublished( consumed );
+	}
+
+	RingBufferEvent getEvent() {
+		return event;
+	}
+
+	/**
+	 * Set the action run when a slot is published, used to wake the consumer.
+	 */
+	void setSignal( Runnable signal ) {
+		this.signal = signal;
+	}
+
+	Runnable getSignal() {
+		return signal;
+	}
+
+	private boolean isPublished( long sequence ) {
+		return published.get( getIndex( sequence ) ) == getRound( sequence );
+	}
+
+	private int getIndex( long sequence ) {
+		return (int)sequence & mask;
+	}
+
+	private int getRound( long sequence ) {
+		return (int)( sequence >>> shift );
+	}
+
+	private int getLongIndex( long sequence, int index ) {
+		if( index < 0 || index >= longCount ) throw new IndexOutOfBoundsException( "Long index: " + index );
+		return getIndex( sequence ) * longCount + index;
+	}
+
+	private int getDoubleIndex( long sequence, int index ) {
+		if( index < 0 || index >= doubleCount ) throw new IndexOutOfBoundsException( "Double index: " + index );
+		return getIndex( sequence ) * doubleCount + index;
+	}
+
+}
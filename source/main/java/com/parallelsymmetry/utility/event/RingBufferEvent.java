@@ -0,0 +1,61 @@
+package com.parallelsymmetry.utility.event;
+
+/**
+ * The event delivered to the listeners of a queue for each slot of a ring
+ * buffer channel. One event is reused for all the slots of a channel so a
+ * listener must not keep the event after it returns.
+ */
+public final class RingBufferEvent extends Event {
+
+	private final RingBufferChannel channel;
+
+	private long sequence;
+
+	private boolean endOfBatch;
+
+	RingBufferEvent( RingBufferChannel channel ) {
+		super( channel );
+		this.channel = channel;
+	}
+
+	public RingBufferChannel getChannel() {
+		return channel;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Check if the slot is the last of the slots that were available when the
+	 * event bus took them from the channel.
+	 *
+	 * @return True if the slot is the last of the batch.
+	 */
+	public boolean isEndOfBatch() {
+		return endOfBatch;
+	}
+
+	public int getType() {
+		return channel.getType( sequence );
+	}
+
+	public long getLong( int index ) {
+		return channel.getLong( sequence, index );
+	}
+
+	public double getDouble( int index ) {
+		return channel.getDouble( sequence, index );
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getName() + "[" + sequence + "]";
+	}
+
+	void setSlot( long sequence, boolean endOfBatch ) {
+		this.sequence = sequence;
+		this.endOfBatch = endOfBatch;
+	}
+
+}
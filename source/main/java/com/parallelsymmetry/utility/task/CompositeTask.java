@@ -57,6 +57,13 @@ public class CompositeTask extends Task<Object> implements TaskListener {
 
 		futures = new HashSet<Future<?>>( tasks.size() );
 
+		// On a fork/join thread fork the tasks and join them.
+		if( TaskManager.isWorkerThread() ) {
+			manager.forkAll( tasks );
+			futures.addAll( tasks );
+			return null;
+		}
+
 		// Submit all the tasks for execution.
 		for( Task<?> task : tasks ) {
 			futures.add( manager.submit( task ) );
@@ -1,14 +1,25 @@
 package com.parallelsymmetry.utility.task;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.parallelsymmetry.utility.task.TaskEvent.Type;
 
@@ -57,7 +68,31 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 
 	private long maximum = 1;
 
-	private long progress;
+	private AtomicLong progress;
+
+	private AtomicBoolean progressPending;
+
+	/**
+	 * Held while a progress event is sent from the task manager progress thread
+	 * and while the final progress is sent, so a coalesced progress event is
+	 * never sent after the final one.
+	 */
+	private Object progressLock = new Object();
+
+	/**
+	 * Set when the final progress has been sent. Guarded by the progress lock.
+	 */
+	private boolean progressClosed;
+
+	private List<Task<?>> dependencies;
+
+	/**
+	 * The submitted tasks waiting for this task to be done. Guarded by the state
+	 * lock.
+	 */
+	private List<Task<?>> dependents;
+
+	private AtomicInteger pendingDependencies;
 
 	public Task() {
 		this( null );
@@ -72,6 +107,11 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 		this.priority = priority;
 		future = new TaskFuture<V>( this, new TaskExecute<V>( this ) );
 		listeners = new CopyOnWriteArraySet<TaskListener>();
+		progress = new AtomicLong();
+		progressPending = new AtomicBoolean();
+		dependencies = new CopyOnWriteArrayList<Task<?>>();
+		dependents = new ArrayList<Task<?>>();
+		pendingDependencies = new AtomicInteger();
 	}
 
 	public abstract V execute() throws Exception;
@@ -124,11 +164,34 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 		return state;
 	}
 
+	/**
+	 * Wait for the task to reach a state. On a fork/join pool thread the pool is
+	 * told the thread is blocked so it can start another thread to keep the
+	 * pool busy. A task running with limited concurrency gives up its permit
+	 * while it waits.
+	 * 
+	 * @param state The state to wait for.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
 	public void waitForState( State state ) throws InterruptedException {
+		if( Thread.currentThread() instanceof ForkJoinWorkerThread ) {
+			ForkJoinPool.managedBlock( new StateBlocker( state ) );
+			return;
+		}
+
 		synchronized( stateLock ) {
-			while( this.state != state ) {
-				stateLock.wait();
+			if( this.state == state ) return;
+		}
+
+		Semaphore permits = VirtualTaskExecutor.releasePermit();
+		try {
+			synchronized( stateLock ) {
+				while( this.state != state ) {
+					stateLock.wait();
+				}
 			}
+		} finally {
+			VirtualTaskExecutor.acquirePermit( permits );
 		}
 	}
 
@@ -161,12 +224,74 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 	}
 
 	public long getProgress() {
-		return progress;
+		return progress.get();
 	}
 
+	/**
+	 * Set the progress of the task. While the task manager publishes progress
+	 * at a limited rate only the counter is updated and the listeners get the
+	 * latest progress on the next publish, from the task manager progress
+	 * thread. Otherwise the listeners are called right away.
+	 * 
+	 * @param progress The progress.
+	 */
 	public void setProgress( long progress ) {
-		this.progress = progress;
-		fireTaskEvent( Type.TASK_PROGRESS );
+		this.progress.lazySet( progress );
+		progressChanged();
+	}
+
+	/**
+	 * Add to the progress of the task. Safe to call from several threads
+	 * working on the same task.
+	 * 
+	 * @param amount The amount to add.
+	 */
+	public void addProgress( long amount ) {
+		progress.addAndGet( amount );
+		progressChanged();
+	}
+
+	/**
+	 * Add a task this task depends on. A task submitted to the task manager
+	 * with dependencies is not queued until all the dependencies are done, so no
+	 * thread waits for them. If a dependency fails or is cancelled this task is
+	 * cancelled, which in turn cancels the tasks that depend on it.
+	 * <p>
+	 * The dependencies must also be submitted to the task manager, in any order.
+	 * Dependencies are only used by submit() and submitAll(). Invoking a task
+	 * runs it right away.
+	 * 
+	 * @param task The task this task depends on.
+	 * @throws IllegalArgumentException If the dependency would create a cycle.
+	 * @throws IllegalStateException If this task has already been submitted.
+	 */
+	public void addDependency( Task<?> task ) {
+		if( task == null ) throw new NullPointerException();
+		if( task == this || task.dependsOn( this ) ) throw new IllegalArgumentException( "Dependency creates a cycle: " + task.getName() );
+		if( manager != null || state != State.WAITING ) throw new IllegalStateException( "Task already submitted: " + getName() );
+		if( !dependencies.contains( task ) ) dependencies.add( task );
+	}
+
+	public List<Task<?>> getDependencies() {
+		return Collections.unmodifiableList( dependencies );
+	}
+
+	/**
+	 * Check if this task depends on a task, directly or through other
+	 * dependencies.
+	 * 
+	 * @param task The task to look for.
+	 * @return True if this task depends on the task.
+	 */
+	public boolean dependsOn( Task<?> task ) {
+		Set<Task<?>> visited = new HashSet<Task<?>>();
+		List<Task<?>> pending = new ArrayList<Task<?>>( dependencies );
+		while( !pending.isEmpty() ) {
+			Task<?> dependency = pending.remove( pending.size() - 1 );
+			if( dependency == task ) return true;
+			if( visited.add( dependency ) ) pending.addAll( dependency.dependencies );
+		}
+		return false;
 	}
 
 	public void addTaskListener( TaskListener listener ) {
@@ -177,6 +302,24 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 		listeners.remove( listener );
 	}
 
+	/**
+	 * Get the result of a dependency. Since the task does not run until its
+	 * dependencies are done the result is returned without waiting.
+	 * 
+	 * @param task The dependency.
+	 * @return The result of the dependency.
+	 * @throws ExecutionException If the dependency failed.
+	 */
+	protected <T> T getDependencyResult( Task<T> task ) throws ExecutionException {
+		if( !dependencies.contains( task ) ) throw new IllegalArgumentException( "Task is not a dependency: " + task.getName() );
+		if( !task.isDone() ) throw new IllegalStateException( "Dependency is not done: " + task.getName() );
+		try {
+			return task.future.get();
+		} catch( InterruptedException exception ) {
+			throw new ExecutionException( exception );
+		}
+	}
+
 	protected TaskManager getTaskManager() {
 		return manager;
 	}
@@ -210,6 +353,76 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 		return future.get( timeout, unit );
 	}
 
+	/**
+	 * Register a submitted task to be told when this task is done.
+	 * 
+	 * @param task The dependent task.
+	 * @return False if this task is already done.
+	 */
+	boolean addDependent( Task<?> task ) {
+		synchronized( stateLock ) {
+			if( state == State.DONE ) return false;
+			dependents.add( task );
+			return true;
+		}
+	}
+
+	/**
+	 * Set the number of dependencies the task manager waits for before the task
+	 * is queued.
+	 */
+	void setPendingDependencies( int count ) {
+		pendingDependencies.set( count );
+	}
+
+	/**
+	 * Count down the dependencies the task waits for.
+	 * 
+	 * @return True if this was the last dependency.
+	 */
+	boolean dependencyDone() {
+		return pendingDependencies.decrementAndGet() == 0;
+	}
+
+	/**
+	 * Clear the flag set when the progress changed since it was last published.
+	 */
+	void clearProgressPending() {
+		progressPending.set( false );
+	}
+
+	/**
+	 * Send the latest progress to the listeners, unless the final progress has
+	 * already been sent.
+	 */
+	void publishProgress() {
+		synchronized( progressLock ) {
+			if( progressClosed ) return;
+			fireTaskEvent( Type.TASK_PROGRESS );
+		}
+	}
+
+	private void progressChanged() {
+		TaskManager manager = this.manager;
+		if( manager == null || !manager.isProgressCoalesced() ) {
+			fireTaskEvent( Type.TASK_PROGRESS );
+		} else if( !progressPending.get() && progressPending.compareAndSet( false, true ) ) {
+			manager.progressChanged( this );
+		}
+	}
+
+	private void notifyDependents() {
+		List<Task<?>> dependents;
+		synchronized( stateLock ) {
+			dependents = new ArrayList<Task<?>>( this.dependents );
+			this.dependents.clear();
+		}
+		for( Task<?> dependent : dependents ) {
+			TaskManager manager = dependent.manager;
+			if( manager != null ) manager.dependencyDone( dependent, this );
+		}
+	}
+
 	private void setState( State state ) {
 		synchronized( stateLock ) {
 			this.state = state;
@@ -217,6 +430,33 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 		}
 	}
 
+	private class StateBlocker implements ForkJoinPool.ManagedBlocker {
+
+		private final State state;
+
+		public StateBlocker( State state ) {
+			this.state = state;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			synchronized( stateLock ) {
+				while( Task.this.state != state ) {
+					stateLock.wait();
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			synchronized( stateLock ) {
+				return Task.this.state == state;
+			}
+		}
+
+	}
+
 	private static class TaskFuture<W> extends FutureTask<W> {
 
 		private Task<?> task;
@@ -240,10 +480,19 @@ public abstract class Task<V> implements Callable<V>, Future<V> {
 				task.result = Result.FAILED;
 			} finally {
 				task.setState( Task.State.DONE );
-				task.setProgress( task.maximum );
+
+				// The final progress is always sent last and before the finish event.
+				synchronized( task.progressLock ) {
+					task.progress.set( task.maximum );
+					task.fireTaskEvent( TaskEvent.Type.TASK_PROGRESS );
+					task.progressClosed = true;
+				}
 				task.fireTaskEvent( TaskEvent.Type.TASK_FINISH );
 				task.manager.completed( task );
 				task.manager = null;
+
+				// Dependents are queued only after the listeners have seen the finish.
+				task.notifyDependents();
 			}
 
 			super.done();
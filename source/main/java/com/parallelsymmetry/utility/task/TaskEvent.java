@@ -14,10 +14,13 @@ public class TaskEvent extends EventObject {
 
 	private Type type;
 
+	private long progress;
+
 	public TaskEvent( Object source, Task<?> task, Type type ) {
 		super( source );
 		this.task = task;
 		this.type = type;
+		this.progress = task == null ? 0 : task.getProgress();
 	}
 
 	public Task<?> getTask() {
@@ -28,4 +31,11 @@ public class TaskEvent extends EventObject {
 		return type;
 	}
 
+	/**
+	 * Get the progress of the task when the event was created.
+	 */
+	public long getProgress() {
+		return progress;
+	}
+
 }
@@ -4,12 +4,24 @@ import java.awt.EventQueue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -20,6 +32,38 @@ import com.parallelsymmetry.utility.log.Log;
 import com.parallelsymmetry.utility.setting.Persistent;
 import com.parallelsymmetry.utility.setting.Settings;
 
+/**
+ * Runs tasks on a pool of task threads.
+ * <p>
+ * Waiting tasks are ordered by task priority. Tasks with the same priority run
+ * in the order they were submitted. Optionally the priority of waiting tasks is
+ * raised over time so low priority tasks are not starved by a steady stream of
+ * high priority tasks. A number of the pool threads can be reserved for high
+ * and UI priority tasks so they do not wait behind long running low priority
+ * work.
+ * <p>
+ * In the fork/join execution mode tasks run on a work-stealing pool instead.
+ * A task that invokes other tasks from a pool thread forks them onto the
+ * deque of its thread and joins them, so nested tasks run in parallel and the
+ * joining thread runs waiting tasks instead of blocking. Task priorities and
+ * reserved threads are not used in the fork/join mode.
+ * <p>
+ * In the virtual execution mode each task runs on its own virtual thread, or
+ * on its own platform thread if the Java runtime does not have virtual
+ * threads. Tasks that block on I/O do not hold a pool thread, so the thread
+ * count does not limit them. The number of tasks running at the same time can
+ * be limited with the maximum concurrency instead.
+ * <p>
+ * Submitted tasks that depend on other tasks are held back until their
+ * dependencies are done and then queued, so a graph of tasks runs without
+ * any thread waiting for the results of other tasks.
+ * <p>
+ * Progress set by running tasks is published to the listeners at a limited
+ * rate. A task only updates its progress counter and the latest progress of
+ * each changed task is sent from a single scheduler thread shared by all task
+ * managers. The final progress of a task is always sent right away, before
+ * the finish event.
+ */
 public class TaskManager implements Persistent, ExtendedControllable {
 
 	private static final int MIN_THREAD_COUNT = 4;
@@ -32,15 +76,42 @@ public class TaskManager implements Persistent, ExtendedControllable {
 
 	private static final int DEFAULT_MAX_THREAD_COUNT = Math.max( DEFAULT_MIN_THREAD_COUNT, PROCESSOR_COUNT * 2 );
 
-	private ThreadPoolExecutor executor;
+	private static final int DEFAULT_PROGRESS_RATE = 20;
+
+	/**
+	 * How the tasks are executed.
+	 * <ul>
+	 * <li>POOL - A thread pool takes the tasks from a priority queue.</li>
+	 * <li>FORK_JOIN - A work-stealing pool runs the tasks and nested tasks are
+	 * forked and joined.</li>
+	 * <li>VIRTUAL - Each task runs on a new virtual thread.</li>
+	 * </ul>
+	 */
+	public enum ExecutionMode {
+		POOL, FORK_JOIN, VIRTUAL
+	}
+
+	private ExecutorService executor;
+
+	private ExecutionMode executionMode = ExecutionMode.POOL;
+
+	private int maxConcurrency;
 
 	private int maxThreadCount = DEFAULT_MAX_THREAD_COUNT;
 
 	private int minThreadCount = DEFAULT_MIN_THREAD_COUNT;
 
+	private int reservedThreadCount;
+
+	private int progressRate = DEFAULT_PROGRESS_RATE;
+
+	private volatile ScheduledFuture<?> progressPublisher;
+
+	private Queue<Task<?>> progressed;
+
 	private Settings settings;
 
-	private BlockingQueue<Runnable> queue;
+	private TaskQueue queue;
 
 	private Set<TaskListener> listeners;
 
@@ -48,7 +119,8 @@ public class TaskManager implements Persistent, ExtendedControllable {
 
 	public TaskManager() {
 		tasks = new CopyOnWriteArrayList<Task<?>>();
-		queue = new LinkedBlockingQueue<Runnable>();
+		queue = new TaskQueue();
+		progressed = new ConcurrentLinkedQueue<Task<?>>();
 		listeners = new CopyOnWriteArraySet<TaskListener>();
 	}
 
@@ -57,7 +129,55 @@ public class TaskManager implements Persistent, ExtendedControllable {
 	}
 
 	public int getThreadCount() {
-		return executor == null ? 0 : executor.getPoolSize();
+		ExecutorService executor = this.executor;
+		if( executor instanceof ThreadPoolExecutor ) return ( (ThreadPoolExecutor)executor ).getPoolSize();
+		if( executor instanceof ForkJoinPool ) return ( (ForkJoinPool)executor ).getPoolSize();
+		if( executor instanceof VirtualTaskExecutor ) return ( (VirtualTaskExecutor)executor ).getActiveCount();
+		return 0;
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Set the maximum number of tasks that run at the same time in the virtual
+	 * execution mode. A task waiting for other tasks does not count against the
+	 * limit. If the task manager is running it is restarted.
+	 * 
+	 * @param count The maximum number of running tasks or zero for no limit.
+	 */
+	public void setMaxConcurrency( int count ) {
+		if( count < 0 ) throw new IllegalArgumentException( "Max concurrency cannot be negative: " + count );
+		if( maxConcurrency == count ) return;
+		maxConcurrency = count;
+
+		if( isRunning() && executionMode == ExecutionMode.VIRTUAL ) try {
+			restart();
+		} catch( InterruptedException exception ) {
+			Log.write( exception );
+		}
+	}
+
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	/**
+	 * Set the execution mode. If the task manager is running it is restarted.
+	 * 
+	 * @param mode The execution mode.
+	 */
+	public void setExecutionMode( ExecutionMode mode ) {
+		if( mode == null ) throw new NullPointerException( "Execution mode cannot be null." );
+		if( executionMode == mode ) return;
+		executionMode = mode;
+
+		if( isRunning() ) try {
+			restart();
+		} catch( InterruptedException exception ) {
+			Log.write( exception );
+		}
 	}
 
 	public void setThreadCount( int count ) {
@@ -73,11 +193,84 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		}
 	}
 
+	public int getReservedThreadCount() {
+		return reservedThreadCount;
+	}
+
+	/**
+	 * Reserve pool threads for high and UI priority tasks. Low and medium
+	 * priority tasks only run on the other threads. At least one thread is
+	 * always left for low and medium priority tasks.
+	 * 
+	 * @param count The number of reserved threads.
+	 */
+	public synchronized void setReservedThreadCount( int count ) {
+		if( count < 0 ) throw new IllegalArgumentException( "Reserved thread count cannot be negative: " + count );
+		reservedThreadCount = count;
+		saveSettings( settings );
+		if( isRunning() ) queue.setLimit( getLimitedThreadCount() );
+	}
+
+	/**
+	 * Get the aging interval.
+	 * 
+	 * @param unit The time unit of the result.
+	 * @return The aging interval or zero if aging is disabled.
+	 */
+	public long getAgingInterval( TimeUnit unit ) {
+		return unit.convert( queue.getAgingInterval(), TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Set how long a task waits before its priority is raised by one level.
+	 * Aging is disabled by default.
+	 * 
+	 * @param interval The aging interval or zero to disable aging.
+	 * @param unit The time unit of the interval.
+	 */
+	public void setAgingInterval( long interval, TimeUnit unit ) {
+		if( interval < 0 ) throw new IllegalArgumentException( "Aging interval cannot be negative: " + interval );
+		queue.setAgingInterval( unit.toNanos( interval ) );
+	}
+
+	public int getProgressRate() {
+		return progressRate;
+	}
+
+	/**
+	 * Set the maximum number of times per second the progress of a task is
+	 * published to the listeners. The default is 20.
+	 * 
+	 * @param rate The maximum rate or zero to send every progress change to the
+	 *          listeners right away.
+	 */
+	public synchronized void setProgressRate( int rate ) {
+		if( rate < 0 ) throw new IllegalArgumentException( "Progress rate cannot be negative: " + rate );
+		progressRate = rate;
+		saveSettings( settings );
+		if( isRunning() ) startProgressPublisher();
+	}
+
 	@Override
 	public synchronized void start() {
 		if( isRunning() ) return;
+		startProgressPublisher();
 		Log.write( Log.TRACE, "Task manager thread counts: " + minThreadCount + " min " + maxThreadCount + " max" );
-		executor = new ThreadPoolExecutor( minThreadCount, maxThreadCount, 1, TimeUnit.SECONDS, queue, new TaskThreadFactory() );
+		if( executionMode == ExecutionMode.FORK_JOIN ) {
+			executor = new ForkJoinPool( maxThreadCount, new TaskWorkerThreadFactory(), null, false );
+			return;
+		}
+		if( executionMode == ExecutionMode.VIRTUAL ) {
+			executor = new VirtualTaskExecutor( maxConcurrency );
+			return;
+		}
+
+		queue.setLimit( getLimitedThreadCount() );
+		TaskExecutor executor = new TaskExecutor( minThreadCount, maxThreadCount, 1, TimeUnit.SECONDS, queue, new TaskThreadFactory() );
+
+		// Start the threads so every task goes through the priority queue.
+		executor.prestartAllCoreThreads();
+		this.executor = executor;
 	}
 
 	@Override
@@ -106,6 +299,7 @@ public class TaskManager implements Persistent, ExtendedControllable {
 	@Override
 	public synchronized void stop() {
 		if( executor == null || executor.isShutdown() ) return;
+		stopProgressPublisher();
 		executor.shutdown();
 		executor = null;
 	}
@@ -137,7 +331,7 @@ public class TaskManager implements Persistent, ExtendedControllable {
 	public <T> Future<T> submit( Task<T> task ) {
 		checkRunning();
 		submitted( task );
-		return executor.submit( task );
+		return schedule( task );
 	}
 
 	/**
@@ -156,7 +350,7 @@ public class TaskManager implements Persistent, ExtendedControllable {
 
 		List<Future<T>> futures = new ArrayList<Future<T>>();
 		for( Task<T> task : tasks ) {
-			futures.add( executor.submit( task ) );
+			futures.add( schedule( task ) );
 		}
 
 		return futures;
@@ -173,7 +367,10 @@ public class TaskManager implements Persistent, ExtendedControllable {
 	public <T> Future<T> invoke( Task<T> task ) throws InterruptedException {
 		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The event dispatch thread should not be blocked." );
 
-		if( Thread.currentThread() instanceof TaskThread ) {
+		if( isWorkerThread() ) {
+			submitted( task );
+			new TaskAction( task ).invoke();
+		} else if( Thread.currentThread() instanceof TaskThread ) {
 			synchronousExecute( task );
 		} else {
 			List<Task<T>> tasks = new ArrayList<Task<T>>();
@@ -197,7 +394,10 @@ public class TaskManager implements Persistent, ExtendedControllable {
 	public <T> Future<T> invoke( Task<T> task, long timeout, TimeUnit unit ) throws InterruptedException {
 		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The event dispatch thread should not be blocked." );
 
-		if( Thread.currentThread() instanceof TaskThread ) {
+		if( isWorkerThread() ) {
+			submitted( task );
+			new TaskAction( task ).invoke();
+		} else if( Thread.currentThread() instanceof TaskThread ) {
 			synchronousExecute( task, timeout, unit );
 		} else {
 			List<Task<T>> tasks = new ArrayList<Task<T>>();
@@ -219,13 +419,20 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The event dispatch thread should not be blocked." );
 
 		checkRunning();
-		if( Thread.currentThread() instanceof TaskThread ) {
+		if( isWorkerThread() ) {
+			forkAll( tasks );
+		} else if( Thread.currentThread() instanceof TaskThread ) {
 			synchronousExecute( tasks );
 		} else {
 			for( Task<T> task : tasks ) {
 				submitted( task );
 			}
-			executor.invokeAll( tasks );
+			Semaphore permits = VirtualTaskExecutor.releasePermit();
+			try {
+				executor.invokeAll( tasks );
+			} finally {
+				VirtualTaskExecutor.acquirePermit( permits );
+			}
 		}
 		return new ArrayList<Future<T>>( tasks );
 	}
@@ -244,13 +451,20 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		if( EventQueue.isDispatchThread() ) throw new RuntimeException( "The event dispatch thread should not be blocked." );
 
 		checkRunning();
-		if( Thread.currentThread() instanceof TaskThread ) {
+		if( isWorkerThread() ) {
+			forkAll( tasks );
+		} else if( Thread.currentThread() instanceof TaskThread ) {
 			synchronousExecute( tasks, timeout, unit );
 		} else {
 			for( Task<T> task : tasks ) {
 				submitted( task );
 			}
-			executor.invokeAll( tasks, timeout, unit );
+			Semaphore permits = VirtualTaskExecutor.releasePermit();
+			try {
+				executor.invokeAll( tasks, timeout, unit );
+			} finally {
+				VirtualTaskExecutor.acquirePermit( permits );
+			}
 		}
 		return new ArrayList<Future<T>>( tasks );
 	}
@@ -268,6 +482,8 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		this.settings = settings;
 
 		this.maxThreadCount = settings.getInt( "thread-count", maxThreadCount );
+		this.reservedThreadCount = settings.getInt( "reserved-thread-count", reservedThreadCount );
+		this.progressRate = settings.getInt( "progress-rate", progressRate );
 	}
 
 	@Override
@@ -275,6 +491,8 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		if( settings == null ) return;
 
 		settings.putInt( "thread-count", maxThreadCount );
+		settings.putInt( "reserved-thread-count", reservedThreadCount );
+		settings.putInt( "progress-rate", progressRate );
 	}
 
 	protected void fireTaskEvent( TaskEvent event ) {
@@ -284,7 +502,7 @@ public class TaskManager implements Persistent, ExtendedControllable {
 	}
 
 	protected BlockingQueue<Runnable> getQueue() {
-		return executor.getQueue();
+		return queue;
 	}
 
 	void submitted( Task<?> task ) {
@@ -294,6 +512,56 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		fireTaskEvent( new TaskEvent( this, task, TaskEvent.Type.TASK_SUBMITTED ) );
 	}
 
+	/**
+	 * Fork the tasks onto the deque of the current fork/join thread and join
+	 * them. The current thread runs the first task and then runs or waits for
+	 * the others, helping with other waiting tasks.
+	 */
+	void forkAll( Collection<? extends Task<?>> tasks ) {
+		List<TaskAction> actions = new ArrayList<TaskAction>( tasks.size() );
+		for( Task<?> task : tasks ) {
+			submitted( task );
+			actions.add( new TaskAction( task ) );
+		}
+		ForkJoinTask.invokeAll( actions );
+	}
+
+	/**
+	 * Check if the current thread is a thread of a fork/join task manager.
+	 */
+	static boolean isWorkerThread() {
+		return Thread.currentThread() instanceof TaskWorkerThread;
+	}
+
+	/**
+	 * Called when a dependency of a submitted task is done. The task is queued
+	 * when the last dependency is done, or cancelled if the dependency did not
+	 * succeed.
+	 * 
+	 * @param task The dependent task.
+	 * @param dependency The dependency that is done or null for the count held
+	 *          while the dependencies are registered.
+	 */
+	void dependencyDone( Task<?> task, Task<?> dependency ) {
+		if( dependency != null && dependency.getResult() != Task.Result.SUCCESS ) task.cancel( true );
+		if( task.dependencyDone() && !task.isDone() ) execute( task );
+	}
+
+	/**
+	 * Check if task progress is published at a limited rate.
+	 */
+	boolean isProgressCoalesced() {
+		return progressPublisher != null;
+	}
+
+	/**
+	 * Called by a task the first time its progress changes after it was last
+	 * published.
+	 */
+	void progressChanged( Task<?> task ) {
+		progressed.offer( task );
+	}
+
 	void completed( Task<?> task ) {
 		if( task == null ) throw new NullPointerException();
 		fireTaskEvent( new TaskEvent( this, task, TaskEvent.Type.TASK_COMPLETED ) );
@@ -301,6 +569,41 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		tasks.remove( task );
 	}
 
+	/**
+	 * Queue a submitted task, or if it has dependencies, register it with them
+	 * to be queued when the last one is done. One extra count is held while the
+	 * dependencies are registered so a dependency that is done in the meantime
+	 * cannot queue the task early.
+	 */
+	private <T> Future<T> schedule( Task<T> task ) {
+		List<Task<?>> dependencies = task.getDependencies();
+		if( dependencies.isEmpty() ) return execute( task );
+
+		task.setPendingDependencies( dependencies.size() + 1 );
+		for( Task<?> dependency : dependencies ) {
+			if( !dependency.addDependent( task ) ) dependencyDone( task, dependency );
+		}
+		dependencyDone( task, null );
+		return task;
+	}
+
+	private <T> Future<T> execute( Task<T> task ) {
+		ExecutorService executor = this.executor;
+		try {
+			if( executor == null ) throw new RejectedExecutionException( "TaskManager is not running." );
+			if( executor instanceof ForkJoinPool ) {
+				( (ForkJoinPool)executor ).execute( new TaskAction( task ) );
+				return task;
+			}
+			return executor.submit( task );
+		} catch( RejectedExecutionException exception ) {
+			// A task scheduled by a dependency has no caller to throw to.
+			if( task.getDependencies().isEmpty() ) throw exception;
+			task.cancel( false );
+			return task;
+		}
+	}
+
 	private <T> void synchronousExecute( Task<T> task ) {
 		try {
 			task.invoke();
@@ -329,17 +632,122 @@ public class TaskManager implements Persistent, ExtendedControllable {
 		}
 	}
 
+	private synchronized void startProgressPublisher() {
+		stopProgressPublisher();
+		if( progressRate == 0 ) return;
+
+		long interval = TimeUnit.SECONDS.toNanos( 1 ) / progressRate;
+		progressPublisher = ProgressScheduler.INSTANCE.scheduleAtFixedRate( new Runnable() {
+
+			@Override
+			public void run() {
+				publishProgress();
+			}
+
+		}, interval, interval, TimeUnit.NANOSECONDS );
+	}
+
+	/**
+	 * Stop the publisher and send the progress that is still waiting. Tasks
+	 * still running send their progress right away after this.
+	 */
+	private synchronized void stopProgressPublisher() {
+		ScheduledFuture<?> publisher = progressPublisher;
+		if( publisher == null ) return;
+		progressPublisher = null;
+		publisher.cancel( false );
+		publishProgress();
+	}
+
+	/**
+	 * Send the latest progress of each task that changed since the last publish.
+	 * The waiting tasks are taken before any are sent so a task that changes
+	 * progress while the listeners run is sent on the next publish.
+	 */
+	private void publishProgress() {
+		List<Task<?>> tasks = new ArrayList<Task<?>>();
+		Task<?> task;
+		while( ( task = progressed.poll() ) != null ) {
+			tasks.add( task );
+		}
+
+		for( Task<?> changed : tasks ) {
+			changed.clearProgressPending();
+			try {
+				changed.publishProgress();
+			} catch( RuntimeException exception ) {
+				// An exception would stop the publisher.
+				Log.write( exception );
+			}
+		}
+	}
+
 	private void checkRunning() {
 		if( executor == null ) throw new RuntimeException( "TaskManager is not running." );
 	}
 
-	//	private static final class TaskExecutor extends ThreadPoolExecutor {
-	//
-	//		public TaskExecutor( int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory ) {
-	//			super( corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, new ThreadPoolExecutor.CallerRunsPolicy() );
-	//		}
-	//
-	//	}
+	/**
+	 * Get the number of threads that may run low and medium priority tasks. The
+	 * queue is unbounded so the pool keeps the minimum number of threads.
+	 */
+	private int getLimitedThreadCount() {
+		return Math.max( 1, minThreadCount - reservedThreadCount );
+	}
+
+	/**
+	 * An executor that creates futures carrying the task priority for the task
+	 * queue and tells the queue when a task has run.
+	 */
+	private static final class TaskExecutor extends ThreadPoolExecutor {
+
+		private final TaskQueue queue;
+
+		public TaskExecutor( int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, TaskQueue queue, ThreadFactory threadFactory ) {
+			super( corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, threadFactory );
+			this.queue = queue;
+		}
+
+		@Override
+		protected <T> RunnableFuture<T> newTaskFor( Callable<T> callable ) {
+			Task.Priority priority = callable instanceof Task ? ( (Task<?>)callable ).getPriority() : Task.Priority.MEDIUM;
+			return new TaskQueue.QueuedTask<T>( callable, priority );
+		}
+
+		@Override
+		protected <T> RunnableFuture<T> newTaskFor( Runnable runnable, T value ) {
+			return new TaskQueue.QueuedTask<T>( runnable, value );
+		}
+
+		@Override
+		protected void afterExecute( Runnable runnable, Throwable throwable ) {
+			queue.completed( runnable );
+			super.afterExecute( runnable, throwable );
+		}
+
+	}
+
+	/**
+	 * The single thread that publishes task progress for all task managers.
+	 */
+	private static final class ProgressScheduler {
+
+		private static final ScheduledThreadPoolExecutor INSTANCE;
+
+		static {
+			INSTANCE = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+
+				@Override
+				public Thread newThread( Runnable runnable ) {
+					Thread thread = new Thread( runnable, "TaskProgress" );
+					thread.setDaemon( true );
+					return thread;
+				}
+
+			} );
+			INSTANCE.setRemoveOnCancelPolicy( true );
+		}
+
+	}
 
 	private static final class TaskThreadFactory implements ThreadFactory {
 
@@ -367,6 +775,60 @@ public class TaskManager implements Persistent, ExtendedControllable {
 
 	}
 
+	/**
+	 * Runs a task in a fork/join pool. Exceptions are retrieved from the task so
+	 * joining the action never throws.
+	 */
+	private static final class TaskAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Task<?> task;
+
+		public TaskAction( Task<?> task ) {
+			this.task = task;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				task.call();
+			} catch( Exception exception ) {
+				// Exceptions should be retrieved by calling get().
+			}
+		}
+
+	}
+
+	private static final class TaskWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+
+		private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+		private final String prefix;
+
+		public TaskWorkerThreadFactory() {
+			prefix = "TaskForkJoinPool-" + poolNumber.getAndIncrement() + "-Thread-";
+		}
+
+		@Override
+		public ForkJoinWorkerThread newThread( ForkJoinPool pool ) {
+			ForkJoinWorkerThread thread = new TaskWorkerThread( pool );
+			thread.setName( prefix + threadNumber.getAndIncrement() );
+			return thread;
+		}
+
+	}
+
+	private static final class TaskWorkerThread extends ForkJoinWorkerThread {
+
+		public TaskWorkerThread( ForkJoinPool pool ) {
+			super( pool );
+		}
+
+	}
+
 	private static final class TaskThread extends Thread {
 
 		public TaskThread( ThreadGroup group, Runnable target, String name, long stackSize ) {
@@ -375,12 +837,4 @@ public class TaskManager implements Persistent, ExtendedControllable {
 
 	}
 
-	//	private static final class TaskExecutor extends ThreadPoolExecutor {
-	//
-	//		public TaskExecutor( int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory ) {
-	//			super( corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, new ThreadPoolExecutor.CallerRunsPolicy() );
-	//		}
-	//
-	//	}
-
 }
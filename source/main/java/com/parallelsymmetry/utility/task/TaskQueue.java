@@ -0,0 +1,346 @@
+package com.parallelsymmetry.utility.task;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The work queue of the task manager executor. The queue has a lane for each
+ * task priority and takes the highest priority task first. Tasks with the same
+ * priority are taken in the order they were added.
+ * <p>
+ * With aging the priority of a waiting task is raised by one level for each
+ * aging interval it has waited, so low priority tasks are not starved by a
+ * steady stream of high priority tasks.
+ * <p>
+ * The queue can limit the number of threads running low and medium priority
+ * tasks. When the limit is reached only high and UI priority tasks are taken,
+ * which keeps the remaining threads free for them.
+ */
+final class TaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	private static final Task.Priority[] PRIORITIES = Task.Priority.values();
+
+	private static final int HIGH_LANE = Task.Priority.HIGH.ordinal();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition available = lock.newCondition();
+
+	private final ArrayDeque<Entry>[] lanes;
+
+	private int count;
+
+	private int running;
+
+	private int limit = Integer.MAX_VALUE;
+
+	private volatile long agingInterval;
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public TaskQueue() {
+		lanes = new ArrayDeque[PRIORITIES.length];
+		for( int index = 0; index < lanes.length; index++ ) {
+			lanes[index] = new ArrayDeque<Entry>();
+		}
+	}
+
+	public long getAgingInterval() {
+		return agingInterval;
+	}
+
+	/**
+	 * Set the aging interval in nanoseconds.
+	 *
+	 * @param interval The aging interval or zero to disable aging.
+	 */
+	public void setAgingInterval( long interval ) {
+		this.agingInterval = Math.max( 0, interval );
+	}
+
+	/**
+	 * Set the maximum number of low and medium priority tasks taken from the
+	 * queue that may run at the same time.
+	 *
+	 * @param limit The maximum number of running tasks.
+	 */
+	public void setLimit( int limit ) {
+		lock.lock();
+		try {
+			this.limit = limit;
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Called by the executor after a task taken from the queue has run.
+	 *
+	 * @param runnable The task.
+	 */
+	public void completed( Runnable runnable ) {
+		if( !( runnable instanceof QueuedTask ) ) return;
+
+		lock.lock();
+		try {
+			QueuedTask<?> task = (QueuedTask<?>)runnable;
+			if( !task.limited ) return;
+			task.limited = false;
+			running--;
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer( Runnable runnable ) {
+		if( runnable == null ) throw new NullPointerException();
+
+		lock.lock();
+		try {
+			lanes[getPriority( runnable ).ordinal()].offer( new Entry( runnable, System.nanoTime() ) );
+			count++;
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+		return true;
+	}
+
+	@Override
+	public void put( Runnable runnable ) {
+		offer( runnable );
+	}
+
+	@Override
+	public boolean offer( Runnable runnable, long timeout, TimeUnit unit ) {
+		return offer( runnable );
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			Runnable runnable;
+			while( ( runnable = next() ) == null ) {
+				available.await();
+			}
+			return runnable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll( long timeout, TimeUnit unit ) throws InterruptedException {
+		long nanos = unit.toNanos( timeout );
+		lock.lockInterruptibly();
+		try {
+			Runnable runnable;
+			while( ( runnable = next() ) == null ) {
+				if( nanos <= 0 ) return null;
+				nanos = available.awaitNanos( nanos );
+			}
+			return runnable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return next();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			for( int index = lanes.length - 1; index >= 0; index-- ) {
+				Entry entry = lanes[index].peek();
+				if( entry != null ) return entry.runnable;
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public boolean remove( Object object ) {
+		lock.lock();
+		try {
+			for( ArrayDeque<Entry> lane : lanes ) {
+				Iterator<Entry> iterator = lane.iterator();
+				while( iterator.hasNext() ) {
+					if( iterator.next().runnable.equals( object ) ) {
+						iterator.remove();
+						count--;
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo( Collection<? super Runnable> collection ) {
+		return drainTo( collection, Integer.MAX_VALUE );
+	}
+
+	@Override
+	public int drainTo( Collection<? super Runnable> collection, int maximum ) {
+		lock.lock();
+		try {
+			int drained = 0;
+			for( int index = lanes.length - 1; index >= 0 && drained < maximum; index-- ) {
+				while( drained < maximum && !lanes[index].isEmpty() ) {
+					collection.add( lanes[index].poll().runnable );
+					count--;
+					drained++;
+				}
+			}
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get an iterator over a snapshot of the queue, highest priority first.
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		lock.lock();
+		try {
+			List<Runnable> runnables = new ArrayList<Runnable>( count );
+			for( int index = lanes.length - 1; index >= 0; index-- ) {
+				for( Entry entry : lanes[index] ) {
+					runnables.add( entry.runnable );
+				}
+			}
+			return runnables.iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	static Task.Priority getPriority( Runnable runnable ) {
+		if( runnable instanceof QueuedTask ) return ( (QueuedTask<?>)runnable ).priority;
+		return Task.Priority.MEDIUM;
+	}
+
+	/**
+	 * Remove the next task that may run, highest aged priority first. The first
+	 * task in each lane is the oldest in the lane so only the first tasks are
+	 * compared. When the aged priorities are equal the task from the higher lane
+	 * is taken. Must be called with the lock held.
+	 *
+	 * @return The next task or null if no task may run.
+	 */
+	private Runnable next() {
+		if( count == 0 ) return null;
+
+		int lowest = running >= limit ? HIGH_LANE : 0;
+		long interval = agingInterval;
+		long now = interval > 0 ? System.nanoTime() : 0;
+		int lane = -1;
+		long priority = 0;
+		for( int index = lanes.length - 1; index >= lowest; index-- ) {
+			Entry entry = lanes[index].peek();
+			if( entry == null ) continue;
+			if( interval <= 0 ) {
+				lane = index;
+				break;
+			}
+
+			long aged = index + ( now - entry.time ) / interval;
+			if( lane < 0 || aged > priority ) {
+				lane = index;
+				priority = aged;
+			}
+		}
+		if( lane < 0 ) return null;
+
+		Runnable runnable = lanes[lane].poll().runnable;
+		count--;
+		if( lane < HIGH_LANE && runnable instanceof QueuedTask ) {
+			( (QueuedTask<?>)runnable ).limited = true;
+			running++;
+		}
+		return runnable;
+	}
+
+	/**
+	 * The future the executor creates for a submitted task, which carries the
+	 * priority of the task into the queue.
+	 */
+	static final class QueuedTask<T> extends FutureTask<T> {
+
+		private final Task.Priority priority;
+
+		/**
+		 * True while the task counts against the limit. Guarded by the queue lock.
+		 */
+		private boolean limited;
+
+		public QueuedTask( Callable<T> callable, Task.Priority priority ) {
+			super( callable );
+			this.priority = priority == null ? Task.Priority.MEDIUM : priority;
+		}
+
+		public QueuedTask( Runnable runnable, T value ) {
+			super( runnable, value );
+			this.priority = Task.Priority.MEDIUM;
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final Runnable runnable;
+
+		private final long time;
+
+		public Entry( Runnable runnable, long time ) {
+			this.runnable = runnable;
+			this.time = time;
+		}
+
+	}
+
+}
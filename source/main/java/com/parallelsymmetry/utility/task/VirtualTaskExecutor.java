@@ -0,0 +1,179 @@
+package com.parallelsymmetry.utility.task;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.parallelsymmetry.utility.log.Log;
+
+/**
+ * Runs each task on a new virtual thread. Virtual threads are created through
+ * reflection so the class also loads on Java versions without them, where a
+ * new platform daemon thread is used for each task instead.
+ * <p>
+ * The number of tasks running at the same time can be limited with a
+ * semaphore. A task gives up its permit while it waits for other tasks so a
+ * task that invokes other tasks cannot take all the permits and wait forever.
+ */
+final class VirtualTaskExecutor extends AbstractExecutorService {
+
+	private static final AtomicInteger poolNumber = new AtomicInteger( 1 );
+
+	private static final ThreadLocal<Semaphore> permit = new ThreadLocal<Semaphore>();
+
+	private final ExecutorService executor;
+
+	private final Semaphore permits;
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * Create an executor.
+	 *
+	 * @param maxConcurrency The maximum number of running tasks or zero for no
+	 *          limit.
+	 */
+	public VirtualTaskExecutor( int maxConcurrency ) {
+		String prefix = "TaskVirtual-" + poolNumber.getAndIncrement() + "-Thread-";
+		ExecutorService executor = createVirtualExecutor( prefix );
+		if( executor == null ) {
+			Log.write( Log.DEBUG, "Virtual threads not supported, using a thread per task." );
+			executor = Executors.newCachedThreadPool( new DaemonThreadFactory( prefix ) );
+		}
+		this.executor = executor;
+		this.permits = maxConcurrency > 0 ? new Semaphore( maxConcurrency, true ) : null;
+	}
+
+	/**
+	 * Check if the Java runtime supports virtual threads.
+	 *
+	 * @return True if tasks run on virtual threads.
+	 */
+	public static boolean isVirtualThreadSupported() {
+		try {
+			Thread.class.getMethod( "ofVirtual" );
+			return true;
+		} catch( NoSuchMethodException exception ) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get the number of tasks that are running or waiting for a permit.
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	@Override
+	public void execute( final Runnable runnable ) {
+		executor.execute( new Runnable() {
+
+			@Override
+			public void run() {
+				active.incrementAndGet();
+				try {
+					if( permits != null ) {
+						permits.acquireUninterruptibly();
+						permit.set( permits );
+					}
+					runnable.run();
+				} finally {
+					if( permits != null ) {
+						permit.remove();
+						permits.release();
+					}
+					active.decrementAndGet();
+				}
+			}
+
+		} );
+	}
+
+	@Override
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return executor.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return executor.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination( long timeout, TimeUnit unit ) throws InterruptedException {
+		return executor.awaitTermination( timeout, unit );
+	}
+
+	/**
+	 * Give up the permit of the current task before it waits for other tasks.
+	 *
+	 * @return The semaphore to return the permit to or null if the current
+	 *         thread does not hold a permit.
+	 */
+	static Semaphore releasePermit() {
+		Semaphore permits = permit.get();
+		if( permits == null ) return null;
+		permit.remove();
+		permits.release();
+		return permits;
+	}
+
+	/**
+	 * Take back the permit given up with releasePermit().
+	 *
+	 * @param permits The semaphore returned by releasePermit().
+	 */
+	static void acquirePermit( Semaphore permits ) {
+		if( permits == null ) return;
+		permits.acquireUninterruptibly();
+		permit.set( permits );
+	}
+
+	private static ExecutorService createVirtualExecutor( String prefix ) {
+		try {
+			Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+			Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+			builder = builderClass.getMethod( "name", String.class, long.class ).invoke( builder, prefix, 1L );
+			ThreadFactory factory = (ThreadFactory)builderClass.getMethod( "factory" ).invoke( builder );
+			return (ExecutorService)Executors.class.getMethod( "newThreadPerTaskExecutor", ThreadFactory.class ).invoke( null, factory );
+		} catch( ReflectiveOperationException exception ) {
+			return null;
+		}
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+		private final String prefix;
+
+		public DaemonThreadFactory( String prefix ) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread( Runnable runnable ) {
+			Thread thread = new Thread( runnable, prefix + threadNumber.getAndIncrement() );
+			thread.setDaemon( true );
+			return thread;
+		}
+
+	}
+
+}
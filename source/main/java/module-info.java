@@ -11,6 +11,7 @@ module com.parallelsymmetry.utility {
 
 	exports com.parallelsymmetry.utility;
 	exports com.parallelsymmetry.utility.agent;
+	exports com.parallelsymmetry.utility.event;
 	exports com.parallelsymmetry.utility.log;
 	exports com.parallelsymmetry.utility.math;
 	exports com.parallelsymmetry.utility.product;
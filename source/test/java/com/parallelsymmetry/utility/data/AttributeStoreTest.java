@@ -0,0 +1,128 @@
+package com.parallelsymmetry.utility.data;
+
+import com.parallelsymmetry.utility.BaseTestCase;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttributeStoreTest extends BaseTestCase {
+
+	@Test
+	public void testPutAndGet() {
+		AttributeStore store = new AttributeStore();
+		assertTrue( store.isEmpty() );
+		assertNull( store.get( "a" ) );
+
+		assertNull( store.put( "a", "value-a" ) );
+		assertNull( store.put( "b", "value-b" ) );
+		assertEquals( 2, store.size() );
+		assertEquals( "value-a", store.get( "a" ) );
+		assertEquals( "value-b", store.get( "b" ) );
+
+		assertEquals( "value-a", store.put( "a", "value-c" ) );
+		assertEquals( 2, store.size() );
+		assertEquals( "value-c", store.get( "a" ) );
+	}
+
+	@Test
+	public void testGetWithEqualKey() {
+		AttributeStore store = new AttributeStore();
+		store.put( "name", "value" );
+		assertEquals( "value", store.get( new String( "name" ) ) );
+	}
+
+	@Test
+	public void testPutNullRemovesValue() {
+		AttributeStore store = new AttributeStore();
+		store.put( "a", "value-a" );
+		store.put( "b", "value-b" );
+		store.put( "c", "value-c" );
+
+		assertEquals( "value-b", store.put( "b", null ) );
+		assertEquals( 2, store.size() );
+		assertNull( store.get( "b" ) );
+		assertEquals( "value-a", store.get( "a" ) );
+		assertEquals( "value-c", store.get( "c" ) );
+
+		store.put( "a", null );
+		store.put( "c", null );
+		assertEquals( 0, store.size() );
+		assertTrue( store.isEmpty() );
+	}
+
+	@Test
+	public void testManyEntries() {
+		AttributeStore store = new AttributeStore();
+		for( int index = 0; index < 100; index++ ) {
+			store.put( "key" + index, index );
+		}
+		assertEquals( 100, store.size() );
+		for( int index = 0; index < 100; index++ ) {
+			assertEquals( index, store.get( "key" + index ) );
+		}
+
+		for( int index = 0; index < 100; index += 2 ) {
+			store.put( "key" + index, null );
+		}
+		assertEquals( 50, store.size() );
+		for( int index = 0; index < 100; index++ ) {
+			assertEquals( index % 2 == 0 ? null : index, store.get( "key" + index ) );
+		}
+	}
+
+	@Test
+	public void testOriginals() {
+		AttributeStore store = new AttributeStore();
+		store.put( "a", "new-a" );
+		store.putOriginal( "a", "old-a" );
+		assertTrue( store.containsOriginal( "a" ) );
+		assertEquals( "old-a", store.getOriginal( "a" ) );
+		assertEquals( 1, store.getOriginalCount() );
+
+		// An original is kept when the value is removed.
+		store.put( "a", null );
+		assertFalse( store.isEmpty() );
+		assertEquals( 0, store.size() );
+		assertEquals( "old-a", store.getOriginal( "a" ) );
+
+		store.putOriginal( "a", null );
+		assertFalse( store.containsOriginal( "a" ) );
+		assertTrue( store.isEmpty() );
+	}
+
+	@Test
+	public void testClearOriginals() {
+		AttributeStore store = new AttributeStore();
+		store.put( "a", "new-a" );
+		store.putOriginal( "a", "old-a" );
+		store.putOriginal( "b", "old-b" );
+		assertEquals( 2, store.getOriginalCount() );
+
+		store.clearOriginals();
+		assertEquals( 0, store.getOriginalCount() );
+		assertNull( store.getOriginal( "a" ) );
+		assertNull( store.getOriginal( "b" ) );
+		assertEquals( "new-a", store.get( "a" ) );
+		assertEquals( 1, store.size() );
+	}
+
+	@Test
+	public void testKeySetAndValues() {
+		AttributeStore store = new AttributeStore();
+		store.put( "a", "value-a" );
+		store.put( "b", "value-b" );
+		store.putOriginal( "c", "old-c" );
+
+		Set<String> keys = store.keySet();
+		assertEquals( 2, keys.size() );
+		assertTrue( keys.contains( "a" ) );
+		assertTrue( keys.contains( "b" ) );
+
+		assertEquals( 2, store.values().size() );
+		assertTrue( store.values().contains( "value-a" ) );
+		assertTrue( store.values().contains( "value-b" ) );
+	}
+
+}
@@ -0,0 +1,196 @@
+package com.parallelsymmetry.utility.data;
+
+import com.parallelsymmetry.utility.mock.MockDataList;
+import com.parallelsymmetry.utility.mock.MockDataNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataJournalTest extends DataTestCase {
+
+	private File store;
+
+	@BeforeEach
+	@Override
+	public void setup() throws Exception {
+		super.setup();
+		store = File.createTempFile( "data", ".journal" );
+		store.deleteOnExit();
+	}
+
+	@AfterEach
+	@Override
+	public void teardown() throws Exception {
+		store.delete();
+		super.teardown();
+	}
+
+	@Test
+	public void testLoadMissingJournal() throws Exception {
+		store.delete();
+		assertNull( new DataJournal( store ).load() );
+	}
+
+	@Test
+	public void testCompactAndLoad() throws Exception {
+		MockDataList root = createTree( 10 );
+
+		DataJournal journal = new DataJournal( store );
+		journal.append( root );
+		journal.close();
+		assertFalse( root.isModified() );
+
+		DataNode result = new DataJournal( store ).load();
+		assertTreeEquals( root, result );
+		assertFalse( result.isModified() );
+	}
+
+	@Test
+	public void testAppendOnlyWritesChanges() throws Exception {
+		MockDataList root = createTree( 1000 );
+		DataJournal journal = new DataJournal( store );
+		journal.compact( root );
+		long length = journal.getLength();
+
+		( (DataList<?>)root.get( 500 ) ).get( 1 ).setAttribute( "value", "changed" );
+		journal.append( root );
+		journal.close();
+		assertTrue( journal.getLength() - length < 40, "Delta length: " + ( journal.getLength() - length ) );
+
+		assertTreeEquals( root, new DataJournal( store ).load() );
+	}
+
+	@Test
+	public void testAppendStructureChanges() throws Exception {
+		MockDataList root = createTree( 5 );
+		DataJournal journal = new DataJournal( store );
+		journal.compact( root );
+
+		// Change attributes and add and remove children.
+		root.setAttribute( "name", "renamed" );
+		MockDataNode attribute = new MockDataNode( "attribute" );
+		attribute.setAttribute( "key", 1L );
+		root.setAttribute( "node", attribute );
+		root.remove( 1 );
+		root.add( 0, createTree( 2 ) );
+		root.add( new MockDataNode( "last" ) );
+		( (DataList<?>)root.get( 3 ) ).get( 0 ).setAttribute( "value", null );
+		journal.append( root );
+
+		// Change the new nodes.
+		attribute.setAttribute( "key", 2L );
+		( (MockDataList)root.get( 0 ) ).add( new MockDataNode( "new" ) );
+		root.remove( root.size() - 1 );
+		journal.append( root );
+		journal.close();
+
+		assertTreeEquals( root, new DataJournal( store ).load() );
+	}
+
+	@Test
+	public void testAppendAfterLoad() throws Exception {
+		MockDataList root = createTree( 3 );
+		DataJournal journal = new DataJournal( store );
+		journal.compact( root );
+		root.get( 0 ).setAttribute( "name", "first" );
+		journal.append( root );
+		journal.close();
+
+		journal = new DataJournal( store );
+		MockDataList loaded = (MockDataList)journal.load();
+		loaded.get( 1 ).setAttribute( "name", "second" );
+		loaded.add( new MockDataNode( "added" ) );
+		journal.append( loaded );
+		journal.close();
+
+		DataNode result = new DataJournal( store ).load();
+		assertTreeEquals( loaded, result );
+		assertEquals( "first", ( (DataList<?>)result ).get( 0 ).getAttribute( "name" ) );
+	}
+
+	@Test
+	public void testAppendMoveBetweenLists() throws Exception {
+		MockDataList root = createTree( 2 );
+		MockDataList target = (MockDataList)root.get( 0 );
+		MockDataList source = (MockDataList)root.get( 1 );
+		DataJournal journal = new DataJournal( store );
+		journal.compact( root );
+
+		// The target list is written before the source list.
+		DataNode node = source.get( 0 );
+		source.remove( node );
+		target.add( node );
+		journal.append( root );
+		journal.close();
+
+		DataList<?> result = (DataList<?>)new DataJournal( store ).load();
+		assertEquals( 4, ( (DataList<?>)result.get( 0 ) ).size() );
+		assertEquals( 2, ( (DataList<?>)result.get( 1 ) ).size() );
+		assertTreeEquals( root, result );
+	}
+
+	@Test
+	public void testIncompleteDeltaIsDiscarded() throws Exception {
+		MockDataList root = createTree( 3 );
+		DataJournal journal = new DataJournal( store );
+		journal.compact( root );
+		root.setAttribute( "name", "saved" );
+		journal.append( root );
+		journal.close();
+		long length = journal.getLength();
+
+		// Write part of another delta.
+		FileOutputStream output = new FileOutputStream( store, true );
+		output.write( new byte[] { 0, 0, 0, 20, 1, 2, 3 } );
+		output.close();
+
+		DataNode result = new DataJournal( store ).load();
+		assertEquals( "saved", result.getAttribute( "name" ) );
+		assertEquals( length, store.length() );
+	}
+
+	@Test
+	public void testCorruptDeltaIsDiscarded() throws Exception {
+		MockDataList root = createTree( 3 );
+		DataJournal journal = new DataJournal( store );
+		journal.compact( root );
+		long length = journal.getLength();
+		root.setAttribute( "name", "lost" );
+		journal.append( root );
+		journal.close();
+
+		// Change the last byte of the delta.
+		RandomAccessFile file = new RandomAccessFile( store, "rw" );
+		file.seek( file.length() - 1 );
+		int data = file.read();
+		file.seek( file.length() - 1 );
+		file.write( data ^ 0xFF );
+		file.close();
+
+		DataNode result = new DataJournal( store ).load();
+		assertEquals( "root", result.getAttribute( "name" ) );
+		assertEquals( length, store.length() );
+	}
+
+	private MockDataList createTree( int count ) {
+		MockDataList root = new MockDataList( "root" );
+		root.setAttribute( "name", "root" );
+		for( int index = 0; index < count; index++ ) {
+			MockDataList child = new MockDataList( "child" + index );
+			for( int leaf = 0; leaf < 3; leaf++ ) {
+				MockDataNode node = new MockDataNode( "leaf" + leaf );
+				node.setAttribute( "value", index * 3 + leaf );
+				child.add( node );
+			}
+			root.add( child );
+		}
+		return root;
+	}
+
+}
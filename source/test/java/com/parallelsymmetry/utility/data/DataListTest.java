@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -305,6 +306,146 @@ public class DataListTest extends DataTestCase {
 		assertSame( nodes1.get( 2 ), list.get( 5 ) );
 	}
 
+	@Test
+	public void testAddAllSendsOneChildrenEvent() {
+		MockDataList list = new MockDataList();
+		list.add( new MockDataNode( "0" ) );
+		list.setModified( false );
+
+		List<DataNode> nodes = new ArrayList<DataNode>();
+		nodes.add( new MockDataNode( "1" ) );
+		nodes.add( new MockDataNode( "2" ) );
+		nodes.add( new MockDataNode( "3" ) );
+
+		final List<DataChildrenEvent> events = new ArrayList<DataChildrenEvent>();
+		list.addDataListener( new DataAdapter() {
+
+			@Override
+			public void childrenInserted( DataChildrenEvent event ) {
+				events.add( event );
+			}
+
+		} );
+		DataEventWatcher handler = list.getDataEventWatcher();
+		handler.reset();
+
+		assertTrue( list.addAll( nodes ) );
+		assertEquals( 1, events.size() );
+		assertEquals( 3, events.get( 0 ).getCount() );
+		assertEquals( 1, events.get( 0 ).getIndex( 0 ) );
+		assertEquals( 3, events.get( 0 ).getIndex( 2 ) );
+		assertSame( nodes.get( 2 ), events.get( 0 ).getChild( 2 ) );
+
+		// Listeners that do not handle the children event get one event per child.
+		assertEventCounts( handler, 1, 1, 0, 3, 0 );
+		assertEventState( handler, 0, DataEvent.Type.DATA_CHILD, DataEvent.Action.INSERT, list, list, 1, nodes.get( 0 ) );
+		assertEventState( handler, 2, DataEvent.Type.DATA_CHILD, DataEvent.Action.INSERT, list, list, 3, nodes.get( 2 ) );
+	}
+
+	@Test
+	public void testRemoveAllChildEventIndexes() {
+		MockDataList list = new MockDataList();
+		MockDataNode node0 = new MockDataNode( "0" );
+		MockDataNode node1 = new MockDataNode( "1" );
+		MockDataNode node2 = new MockDataNode( "2" );
+		MockDataNode node3 = new MockDataNode( "3" );
+		list.add( node0 );
+		list.add( node1 );
+		list.add( node2 );
+		list.add( node3 );
+		list.setModified( false );
+
+		DataEventWatcher handler = list.getDataEventWatcher();
+		handler.reset();
+
+		List<DataNode> remove = new ArrayList<DataNode>();
+		remove.add( node3 );
+		remove.add( node1 );
+		assertTrue( list.removeAll( remove ) );
+		assertFalse( list.removeAll( remove ) );
+
+		assertEquals( 2, list.size() );
+		assertNull( node1.getParent() );
+		assertNull( node3.getParent() );
+		assertEventCounts( handler, 1, 1, 0, 0, 2 );
+		assertEventState( handler, 0, DataEvent.Type.DATA_CHILD, DataEvent.Action.REMOVE, list, list, 1, node1 );
+		assertEventState( handler, 1, DataEvent.Type.DATA_CHILD, DataEvent.Action.REMOVE, list, list, 2, node3 );
+
+		handler.reset();
+		list.add( node1 );
+		list.add( node3 );
+		assertFalse( list.isModified() );
+	}
+
+	@Test
+	public void testIndexed() {
+		MockDataList list = new MockDataList();
+		list.setIndexed( true );
+		assertTrue( list.isIndexed() );
+
+		List<DataNode> expected = new ArrayList<DataNode>();
+		List<DataNode> removed = new ArrayList<DataNode>();
+		Random random = new Random( 42 );
+		for( int count = 0; count < 500; count++ ) {
+			int size = expected.size();
+			switch( random.nextInt( 5 ) ) {
+				case 0: {
+					MockDataNode node = new MockDataNode( String.valueOf( count ) );
+					list.add( node );
+					expected.add( node );
+					break;
+				}
+				case 1: {
+					MockDataNode node = new MockDataNode( String.valueOf( count ) );
+					int index = random.nextInt( size + 1 );
+					list.add( index, node );
+					expected.add( index, node );
+					break;
+				}
+				case 2: {
+					if( size == 0 ) break;
+					DataNode node = expected.remove( random.nextInt( size ) );
+					assertTrue( list.remove( node ) );
+					removed.add( node );
+					break;
+				}
+				case 3: {
+					List<DataNode> nodes = new ArrayList<DataNode>();
+					for( int item = 0; item < 3 && item < size; item++ ) {
+						nodes.add( expected.get( random.nextInt( size ) ) );
+					}
+					list.removeAll( nodes );
+					expected.removeAll( nodes );
+					removed.addAll( nodes );
+					break;
+				}
+				case 4: {
+					List<DataNode> nodes = new ArrayList<DataNode>();
+					nodes.add( new MockDataNode( count + "a" ) );
+					nodes.add( new MockDataNode( count + "b" ) );
+					int index = random.nextInt( size + 1 );
+					list.addAll( index, nodes );
+					expected.addAll( index, nodes );
+					break;
+				}
+			}
+
+			assertEquals( expected.size(), list.size() );
+			if( expected.size() > 0 ) {
+				DataNode node = expected.get( random.nextInt( expected.size() ) );
+				assertEquals( expected.indexOf( node ), list.indexOf( node ) );
+				assertTrue( list.contains( node ) );
+			}
+		}
+
+		for( int index = 0; index < expected.size(); index++ ) {
+			assertEquals( index, list.indexOf( expected.get( index ) ) );
+		}
+		for( DataNode node : removed ) {
+			if( !expected.contains( node ) ) assertFalse( list.contains( node ) );
+		}
+	}
+
 	@Test
 	public void testSet() {
 		MockDataList list = new MockDataList();
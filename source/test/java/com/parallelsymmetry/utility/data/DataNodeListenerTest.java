@@ -2,8 +2,21 @@ package com.parallelsymmetry.utility.data;
 
 import com.parallelsymmetry.utility.mock.DataEventWatcher;
 import com.parallelsymmetry.utility.mock.MockDataList;
+import com.parallelsymmetry.utility.mock.MockDataNode;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class DataNodeListenerTest extends DataTestCase {
 
 	@Test
@@ -36,4 +49,173 @@ public class DataNodeListenerTest extends DataTestCase {
 		handler.reset();
 	}
 
+	@Test
+	public void testAncestorEventsWithoutIntermediateListeners() {
+		MockDataNode root = new MockDataNode( "root" );
+		DataNode middle = new DataNode() {};
+		MockDataNode leaf = new MockDataNode( "leaf" );
+		root.setAttribute( "child", middle );
+		middle.setAttribute( "child", leaf );
+		root.setModified( false );
+
+		DataEventWatcher rootHandler = root.getDataEventWatcher();
+		DataEventWatcher leafHandler = leaf.getDataEventWatcher();
+		rootHandler.reset();
+		leafHandler.reset();
+
+		leaf.setAttribute( "key", "value" );
+		assertEventCounts( leafHandler, 1, 1, 1 );
+		assertEventCounts( rootHandler, 1, 1, 1 );
+		assertEquals( root, rootHandler.getDataAttributeEvents().get( 0 ).getSender() );
+		assertEquals( leaf, rootHandler.getDataAttributeEvents().get( 0 ).getCause() );
+		assertTrue( middle.isModified() );
+
+		DataEventWatcher middleHandler = new DataEventWatcher();
+		middle.addDataListener( middleHandler );
+		rootHandler.reset();
+		leafHandler.reset();
+
+		leaf.setAttribute( "key", "other" );
+		assertEventCounts( leafHandler, 1, 0, 1 );
+		assertEventCounts( middleHandler, 1, 0, 1 );
+		assertEventCounts( rootHandler, 1, 0, 1 );
+		assertEquals( middle, middleHandler.getDataAttributeEvents().get( 0 ).getSender() );
+	}
+
+	@Test
+	public void testAsyncDataListener() throws Exception {
+		final MockDataNode node = new MockDataNode();
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final CountDownLatch delivered = new CountDownLatch( 3 );
+		final List<Object> values = Collections.synchronizedList( new ArrayList<Object>() );
+
+		node.addDataListener( new DataAdapter() {
+
+			@Override
+			public void dataAttributeChanged( DataAttributeEvent event ) {
+				try {
+					release.await( 5, TimeUnit.SECONDS );
+				} catch( InterruptedException exception ) {
+					return;
+				}
+				values.add( event.getNewValue() );
+
+				// Asynchronous listeners are allowed to modify the data.
+				if( "key".equals( event.getAttributeName() ) ) node.setAttribute( "copy", event.getNewValue() );
+				delivered.countDown();
+			}
+
+		}, true );
+
+		// The commits should not wait for the blocked listener.
+		node.setAttribute( "key", 1 );
+		node.setAttribute( "key", 2 );
+		assertEquals( 2, (int)(Integer)node.getAttribute( "key" ) );
+		assertEquals( 0, values.size() );
+		assertEquals( 2, node.getDataEventWatcher().getDataAttributeEvents().size() );
+
+		release.countDown();
+		assertTrue( delivered.await( 5, TimeUnit.SECONDS ) );
+		assertEquals( 1, values.get( 0 ) );
+		assertEquals( 2, values.get( 1 ) );
+		assertEquals( 2, (int)(Integer)node.getAttribute( "copy" ) );
+	}
+
+	@Test
+	public void testAsyncDataListenerAfterCommit() {
+		final MockDataNode node = new MockDataNode();
+		final List<Object> values = new ArrayList<Object>();
+
+		node.addDataListener( new DataAdapter() {
+
+			@Override
+			public void dataAttributeChanged( DataAttributeEvent event ) {
+				values.add( event.getNewValue() );
+
+				// Only allowed if the commit has released the commit stripes.
+				if( "key".equals( event.getAttributeName() ) ) node.setAttribute( "copy", event.getNewValue() );
+			}
+
+		}, true );
+
+		Executor executor = AsyncDataDispatcher.getExecutor();
+		AsyncDataDispatcher.setExecutor( new DirectExecutor() );
+		try {
+			node.setAttribute( "key", 1 );
+		} finally {
+			AsyncDataDispatcher.setExecutor( executor );
+		}
+
+		assertEquals( 1, (int)(Integer)node.getAttribute( "copy" ) );
+		assertEquals( 2, values.size() );
+	}
+
+	@Test
+	public void testAsyncDataListenerAfterRejectedExecution() {
+		MockDataNode node = new MockDataNode();
+		final List<Object> values = new ArrayList<Object>();
+
+		node.addDataListener( new DataAdapter() {
+
+			@Override
+			public void dataAttributeChanged( DataAttributeEvent event ) {
+				values.add( event.getNewValue() );
+			}
+
+		}, true );
+
+		Executor executor = AsyncDataDispatcher.getExecutor();
+		AsyncDataDispatcher.setExecutor( new DirectExecutor() {
+
+			private boolean rejected;
+
+			@Override
+			public void execute( Runnable command ) {
+				if( rejected ) {
+					super.execute( command );
+				} else {
+					rejected = true;
+					throw new RejectedExecutionException();
+				}
+			}
+
+		} );
+		try {
+			node.setAttribute( "key", 1 );
+			assertEquals( 0, values.size() );
+
+			node.setAttribute( "key", 2 );
+		} finally {
+			AsyncDataDispatcher.setExecutor( executor );
+		}
+
+		assertEquals( 2, values.size() );
+		assertEquals( 1, values.get( 0 ) );
+		assertEquals( 2, values.get( 1 ) );
+	}
+
+	@Test
+	public void testRemoveAsyncDataListener() {
+		MockDataNode mock = new MockDataNode();
+		DataNode node = mock;
+		node.removeDataListener( mock.getDataEventWatcher() );
+		assertFalse( node.hasDataListeners() );
+
+		DataAdapter listener = new DataAdapter();
+		node.addDataListener( listener, true );
+		assertTrue( node.hasDataListeners() );
+
+		node.removeDataListener( listener );
+		assertFalse( node.hasDataListeners() );
+	}
+
+	private static class DirectExecutor implements Executor {
+
+		@Override
+		public void execute( Runnable command ) {
+			command.run();
+		}
+
+	}
+
 }
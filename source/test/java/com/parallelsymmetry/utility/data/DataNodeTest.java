@@ -9,7 +9,9 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Modifier;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -119,6 +121,30 @@ public class DataNodeTest extends DataTestCase {
 		assertEquals( value, check, "Integer value not equal" );
 	}
 
+	@Test
+	public void testSetAttributes() {
+		MockDataNode node = new MockDataNode();
+		node.setAttribute( "a", "A" );
+		node.setAttribute( "b", "B" );
+		node.setModified( false );
+		DataEventWatcher handler = node.getDataEventWatcher();
+		handler.reset();
+
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		values.put( "a", "A" );
+		values.put( "b", null );
+		values.put( "c", "C" );
+		node.setAttributes( values );
+
+		assertEquals( "A", node.getAttribute( "a" ) );
+		assertNull( node.getAttribute( "b" ) );
+		assertEquals( "C", node.getAttribute( "c" ) );
+		assertEquals( 2, node.getModifiedAttributeCount() );
+		assertEventCounts( handler, 1, 1, 2 );
+		assertEventState( handler, 0, DataEvent.Type.DATA_ATTRIBUTE, DataEvent.Action.REMOVE, node, node, "b", "B", null );
+		assertEventState( handler, 1, DataEvent.Type.DATA_ATTRIBUTE, DataEvent.Action.INSERT, node, node, "c", null, "C" );
+	}
+
 	@Test
 	public void testSetNullAttributeToNull() {
 		MockDataNode data = new MockDataNode();
@@ -349,6 +375,35 @@ public class DataNodeTest extends DataTestCase {
 		assertEventCounts( handler, 0, 0, 0 );
 	}
 
+	@Test
+	public void testConcurrentPutResource() throws Exception {
+		final MockDataNode data = new MockDataNode();
+		final int count = 1000;
+		Thread[] threads = new Thread[4];
+		for( int index = 0; index < threads.length; index++ ) {
+			final String prefix = "thread" + index + "-";
+			threads[index] = new Thread() {
+
+				@Override
+				public void run() {
+					for( int key = 0; key < count; key++ ) {
+						data.putResource( prefix + key, key );
+					}
+				}
+
+			};
+		}
+		for( Thread thread : threads ) {
+			thread.start();
+		}
+		for( Thread thread : threads ) {
+			thread.join();
+		}
+
+		assertEquals( threads.length * count, data.getResourceKeys().size() );
+		assertEquals( count - 1, data.<Integer> getResource( "thread0-" + ( count - 1 ) ).intValue() );
+	}
+
 	@Test
 	public void testDataEventNotification() {
 		MockDataNode data = new MockDataNode();
@@ -0,0 +1,116 @@
+package com.parallelsymmetry.utility.data;
+
+import com.parallelsymmetry.utility.mock.MockDataList;
+import com.parallelsymmetry.utility.mock.MockDataNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataSnapshotTest extends DataTestCase {
+
+	@Test
+	public void testAttributes() {
+		MockDataNode node = new MockDataNode();
+		node.setAttribute( "a", "A" );
+		node.setAttribute( "b", 1 );
+
+		DataSnapshot snapshot = node.getSnapshot();
+		assertEquals( MockDataNode.class, snapshot.getType() );
+		assertEquals( 2, snapshot.getAttributeCount() );
+		assertEquals( "A", snapshot.getAttribute( "a" ) );
+		assertEquals( Integer.valueOf( 1 ), snapshot.getAttribute( "b" ) );
+		assertNull( snapshot.getAttribute( "c" ) );
+		assertTrue( snapshot.isModified() );
+		assertSame( snapshot, node.getSnapshot() );
+	}
+
+	@Test
+	public void testSnapshotDoesNotChange() {
+		MockDataNode node = new MockDataNode();
+		node.setAttribute( "a", "A" );
+		DataSnapshot snapshot = node.getSnapshot();
+
+		node.setAttribute( "a", "B" );
+		node.setModified( false );
+		assertEquals( "A", snapshot.getAttribute( "a" ) );
+		assertTrue( snapshot.isModified() );
+
+		DataSnapshot next = node.getSnapshot();
+		assertNotSame( snapshot, next );
+		assertEquals( "B", next.getAttribute( "a" ) );
+		assertFalse( next.isModified() );
+		assertTrue( next.getVersion() > snapshot.getVersion() );
+	}
+
+	@Test
+	public void testChildSnapshotsAreShared() {
+		MockDataList list = new MockDataList();
+		MockDataNode node0 = new MockDataNode( "0" );
+		MockDataNode node1 = new MockDataNode( "1" );
+		MockDataNode leaf = new MockDataNode( "leaf" );
+		list.add( node0 );
+		list.add( node1 );
+		node1.setAttribute( "leaf", leaf );
+
+		DataSnapshot snapshot = list.getSnapshot();
+		assertEquals( 2, snapshot.getChildCount() );
+		DataSnapshot leafSnapshot = snapshot.getChild( 1 ).getAttribute( "leaf" );
+		assertSame( leaf.getSnapshot(), leafSnapshot );
+
+		leaf.setAttribute( "value", "changed" );
+		DataSnapshot next = list.getSnapshot();
+		assertNotSame( snapshot, next );
+		assertSame( snapshot.getChild( 0 ), next.getChild( 0 ) );
+		assertNotSame( snapshot.getChild( 1 ), next.getChild( 1 ) );
+		assertNull( leafSnapshot.getAttribute( "value" ) );
+		assertEquals( "changed", next.getChild( 1 ).<DataSnapshot> getAttribute( "leaf" ).getAttribute( "value" ) );
+
+		list.remove( node0 );
+		DataSnapshot removed = list.getSnapshot();
+		assertEquals( 1, removed.getChildCount() );
+		assertSame( next.getChild( 1 ), removed.getChild( 0 ) );
+		assertEquals( 2, next.getChildCount() );
+	}
+
+	@Test
+	public void testSnapshotsDoNotSeePartialCommits() throws Exception {
+		final MockDataList list = new MockDataList();
+		final MockDataNode node = new MockDataNode();
+		list.add( node );
+
+		final int commitCount = 2000;
+		final AtomicBoolean running = new AtomicBoolean( true );
+		final AtomicInteger failures = new AtomicInteger();
+
+		Thread reader = new Thread( new Runnable() {
+
+			@Override
+			public void run() {
+				while( running.get() ) {
+					DataSnapshot snapshot = list.getSnapshot().getChild( 0 );
+					Object a = snapshot.getAttribute( "a" );
+					Object b = snapshot.getAttribute( "b" );
+					if( a == null ? b != null : !a.equals( b ) ) failures.incrementAndGet();
+				}
+			}
+
+		} );
+		reader.start();
+
+		for( int count = 0; count < commitCount; count++ ) {
+			Transaction.create();
+			node.setAttribute( "a", count );
+			node.setAttribute( "b", count );
+			Transaction.commit();
+		}
+		running.set( false );
+		reader.join();
+
+		assertEquals( 0, failures.get() );
+		assertEquals( Integer.valueOf( commitCount - 1 ), list.getSnapshot().getChild( 0 ).getAttribute( "b" ) );
+	}
+
+}
@@ -3,6 +3,7 @@ package com.parallelsymmetry.utility.data;
 import com.parallelsymmetry.utility.BaseTestCase;
 import com.parallelsymmetry.utility.mock.DataEventWatcher;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 public abstract class DataTestCase extends BaseTestCase {
@@ -29,6 +30,34 @@ public abstract class DataTestCase extends BaseTestCase {
 		assertEquals( childRemoveEventCount, handler.getChildRemovedEvents().size() );
 	}
 
+	/**
+	 * Assert that the trees have the same node types, attributes and children.
+	 */
+	protected void assertTreeEquals( DataNode expected, DataNode actual ) {
+		assertEquals( expected.getClass(), actual.getClass() );
+		assertEquals( expected.getAttributeKeys(), actual.getAttributeKeys() );
+		for( String key : expected.getAttributeKeys() ) {
+			Object expectedValue = expected.getAttribute( key );
+			Object actualValue = actual.getAttribute( key );
+			if( expectedValue instanceof DataNode ) {
+				assertTreeEquals( (DataNode)expectedValue, (DataNode)actualValue );
+			} else if( expectedValue instanceof byte[] ) {
+				assertArrayEquals( (byte[])expectedValue, (byte[])actualValue );
+			} else {
+				assertEquals( expectedValue, actualValue, key );
+			}
+		}
+
+		if( expected instanceof DataList ) {
+			DataList<?> expectedList = (DataList<?>)expected;
+			DataList<?> actualList = (DataList<?>)actual;
+			assertEquals( expectedList.size(), actualList.size() );
+			for( int index = 0; index < expectedList.size(); index++ ) {
+				assertTreeEquals( expectedList.get( index ), actualList.get( index ) );
+			}
+		}
+	}
+
 	/**
 	 * For use with DataChangedEvents.
 	 */
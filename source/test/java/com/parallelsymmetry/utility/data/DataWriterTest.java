@@ -0,0 +1,103 @@
+package com.parallelsymmetry.utility.data;
+
+import com.parallelsymmetry.utility.mock.MockDataList;
+import com.parallelsymmetry.utility.mock.MockDataNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataWriterTest extends DataTestCase {
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		MockDataList root = new MockDataList( "root" );
+		root.setAttribute( "string", "value \u00e9" );
+		root.setAttribute( "true", true );
+		root.setAttribute( "false", false );
+		root.setAttribute( "byte", (byte)-3 );
+		root.setAttribute( "short", (short)-300 );
+		root.setAttribute( "character", 'c' );
+		root.setAttribute( "integer", Integer.MIN_VALUE );
+		root.setAttribute( "long", Long.MAX_VALUE );
+		root.setAttribute( "float", 1.5f );
+		root.setAttribute( "double", -2.25 );
+		root.setAttribute( "bytes", new byte[] { 1, 2, 3 } );
+		root.setAttribute( "enum", DataEvent.Action.MODIFY );
+		root.setAttribute( "date", new Date( 1234567890L ) );
+
+		MockDataNode attribute = new MockDataNode( "attribute" );
+		attribute.setAttribute( "key", "value" );
+		root.setAttribute( "node", attribute );
+
+		MockDataList child = new MockDataList( "child" );
+		child.add( new MockDataNode( "grandchild0" ) );
+		child.add( new MockDataNode( "grandchild1" ) );
+		root.add( new MockDataNode( "child0" ) );
+		root.add( child );
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataWriter writer = new DataWriter( buffer );
+		writer.write( root );
+		writer.write( new MockDataNode( "second" ) );
+		writer.close();
+
+		DataReader reader = new DataReader( new ByteArrayInputStream( buffer.toByteArray() ) );
+		DataNode result = reader.read();
+		assertTreeEquals( root, result );
+		assertFalse( result.isModified() );
+		assertSame( result, ( (DataList<?>)result ).get( 1 ).getParent() );
+		assertEquals( "second", reader.read().getAttribute( "name" ) );
+		assertNull( reader.read() );
+		reader.close();
+	}
+
+	@Test
+	public void testRepeatedKeysAreWrittenOnce() throws Exception {
+		MockDataList list = new MockDataList();
+		for( int index = 0; index < 100; index++ ) {
+			MockDataNode node = new MockDataNode();
+			node.setAttribute( "a-long-attribute-key", index );
+			list.add( node );
+		}
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataWriter writer = new DataWriter( buffer );
+		writer.write( list );
+		writer.close();
+
+		// Each node needs a type, a key reference, a count and a small value.
+		assertTrue( buffer.size() < 100 * 8 + 100, "Size: " + buffer.size() );
+		assertTreeEquals( list, new DataReader( new ByteArrayInputStream( buffer.toByteArray() ) ).read() );
+	}
+
+	@Test
+	public void testUnsupportedValue() throws Exception {
+		MockDataNode node = new MockDataNode();
+		node.setAttribute( "object", new Object() );
+
+		DataWriter writer = new DataWriter( new ByteArrayOutputStream() );
+		try {
+			writer.write( node );
+			fail( "IOException should be thrown." );
+		} catch( IOException exception ) {
+			assertEquals( "Unsupported attribute value type: java.lang.Object", exception.getMessage() );
+		}
+	}
+
+	@Test
+	public void testReadInvalidStream() throws Exception {
+		DataReader reader = new DataReader( new ByteArrayInputStream( new byte[] { 1, 2, 3, 4, 5 } ) );
+		try {
+			reader.read();
+			fail( "IOException should be thrown." );
+		} catch( IOException exception ) {
+			assertEquals( "Not a data stream.", exception.getMessage() );
+		}
+	}
+
+}
@@ -9,6 +9,11 @@ import lombok.Getter;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TransactionTest extends DataTestCase {
@@ -320,6 +325,67 @@ public class TransactionTest extends DataTestCase {
 		watcher.reset();
 	}
 
+	@Test
+	public void testTransactionByModifyingManySiblingsUnderDeepParent() {
+		MockDataList root = new MockDataList( "root" );
+		MockDataList middle = root;
+		MockDataList parent = root;
+		for( int level = 0; level < 10; level++ ) {
+			MockDataList child = new MockDataList( "level" + level );
+			parent.add( child );
+			if( level == 5 ) middle = child;
+			parent = child;
+		}
+		MockDataNode[] children = new MockDataNode[100];
+		for( int index = 0; index < children.length; index++ ) {
+			children[index] = new MockDataNode( "child" + index );
+			parent.add( children[index] );
+		}
+		root.setModified( false );
+		DataEventWatcher rootWatcher = root.getDataEventWatcher();
+		DataEventWatcher middleWatcher = middle.getDataEventWatcher();
+		rootWatcher.reset();
+		middleWatcher.reset();
+
+		// Modify all the siblings and a node on the path in one transaction.
+		Transaction.create();
+		for( MockDataNode child : children ) {
+			child.setAttribute( "key", "value" );
+		}
+		middle.setAttribute( "key", "value" );
+		Transaction.commit();
+		assertListState( parent, true, 0, 100 );
+		assertListState( middle, true, 1, 1 );
+		assertListState( root, true, 0, 1 );
+		assertEventCounts( rootWatcher, 1, 1, 101 );
+		assertEventCounts( middleWatcher, 1, 1, 101 );
+		rootWatcher.reset();
+		middleWatcher.reset();
+
+		// Unmodify half of the siblings.
+		Transaction.create();
+		for( int index = 0; index < children.length / 2; index++ ) {
+			children[index].setAttribute( "key", null );
+		}
+		Transaction.commit();
+		assertListState( parent, true, 0, 50 );
+		assertListState( root, true, 0, 1 );
+		assertEventCounts( rootWatcher, 1, 0, 50 );
+		rootWatcher.reset();
+
+		// Unmodify the rest of the siblings and the node on the path.
+		Transaction.create();
+		for( int index = children.length / 2; index < children.length; index++ ) {
+			children[index].setAttribute( "key", null );
+		}
+		middle.setAttribute( "key", null );
+		Transaction.commit();
+		assertListState( parent, false, 0, 0 );
+		assertListState( middle, false, 0, 0 );
+		assertListState( root, false, 0, 0 );
+		assertEventCounts( rootWatcher, 1, 1, 51 );
+	}
+
 	/**
 	 * This is a fairly complex test to ensure that the transaction handling can
 	 * handle two nodes that have overridden the equals() and hashCode() methods
@@ -462,6 +528,176 @@ public class TransactionTest extends DataTestCase {
 		}
 	}
 
+	@Test
+	public void testModifyFromDataListener() {
+		final MockDataNode data = new MockDataNode();
+		data.addDataListener( new DataAdapter() {
+
+			@Override
+			public void dataChanged( DataChangedEvent event ) {
+				data.setAttribute( "attribute1", "value1" );
+			}
+
+		} );
+
+		try {
+			data.setAttribute( "attribute0", "value0" );
+			fail( "Modifying data from a data listener should throw a TransactionException." );
+		} catch( TransactionException exception ) {
+			// Intentionally ignore exception.
+		}
+		assertNull( data.getAttribute( "attribute1" ) );
+	}
+
+	@Test
+	public void testModifyOtherTreeFromDataListener() {
+		final MockDataNode data = new MockDataNode();
+		final MockDataNode other = new MockDataNode();
+		data.addDataListener( new DataAdapter() {
+
+			@Override
+			public void dataChanged( DataChangedEvent event ) {
+				other.setAttribute( "attribute", data.getAttribute( "attribute" ) );
+			}
+
+		} );
+
+		data.setAttribute( "attribute", "value" );
+		assertEquals( "value", other.getAttribute( "attribute" ) );
+		assertNodeState( other, true, 1 );
+		assertEventCounts( other.getDataEventWatcher(), 1, 1, 1 );
+	}
+
+	@Test
+	public void testCrossTreeCommitsFromDataListeners() throws Exception {
+		// The trees must use different commit stripes.
+		final MockDataNode node0 = new MockDataNode();
+		MockDataNode candidate = new MockDataNode();
+		while( Transaction.getStripeIndex( candidate ) == Transaction.getStripeIndex( node0 ) ) {
+			candidate = new MockDataNode();
+		}
+		final MockDataNode node1 = candidate;
+
+		// Each listener waits until both commits are dispatching events and then
+		// commits to the tree locked by the other thread.
+		CyclicBarrier barrier = new CyclicBarrier( 2 );
+		node0.addDataListener( new CrossCommitHandler( node0, node1, barrier ) );
+		node1.addDataListener( new CrossCommitHandler( node1, node0, barrier ) );
+
+		final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+		Thread thread0 = new CommitThread( node0, 0, errors );
+		Thread thread1 = new CommitThread( node1, 1, errors );
+		thread0.start();
+		thread1.start();
+		thread0.join( 10000 );
+		thread1.join( 10000 );
+
+		assertFalse( thread0.isAlive() );
+		assertFalse( thread1.isAlive() );
+		assertEquals( 0, errors.size(), String.valueOf( errors ) );
+		assertEquals( 1, (int)(Integer)node0.getAttribute( "copy" ) );
+		assertEquals( 0, (int)(Integer)node1.getAttribute( "copy" ) );
+	}
+
+	@Test
+	public void testConcurrentCommitsOnSeparateTrees() throws Exception {
+		int treeCount = 8;
+		final int commitCount = 500;
+
+		final MockDataList[] lists = new MockDataList[treeCount];
+		final MockDataNode[] nodes = new MockDataNode[treeCount];
+		for( int index = 0; index < treeCount; index++ ) {
+			lists[index] = new MockDataList();
+			nodes[index] = new MockDataNode();
+			lists[index].add( nodes[index] );
+			lists[index].setModified( false );
+			lists[index].getDataEventWatcher().reset();
+		}
+
+		Thread[] threads = new Thread[treeCount];
+		for( int index = 0; index < treeCount; index++ ) {
+			final MockDataNode node = nodes[index];
+			threads[index] = new Thread( new Runnable() {
+
+				@Override
+				public void run() {
+					for( int count = 0; count < commitCount; count++ ) {
+						node.setAttribute( "value", count );
+					}
+				}
+
+			} );
+		}
+		for( Thread thread : threads ) {
+			thread.start();
+		}
+		for( Thread thread : threads ) {
+			thread.join();
+		}
+
+		for( int index = 0; index < treeCount; index++ ) {
+			assertEquals( commitCount - 1, (int)(Integer)nodes[index].getAttribute( "value" ) );
+			assertNodeState( nodes[index], true, 1 );
+			assertListState( lists[index], true, 0, 1 );
+			assertEquals( commitCount, lists[index].getDataEventWatcher().getDataChangedEvents().size() );
+		}
+	}
+
+	private static class CrossCommitHandler extends DataAdapter {
+
+		private final MockDataNode source;
+
+		private final MockDataNode target;
+
+		private final CyclicBarrier barrier;
+
+		private boolean done;
+
+		public CrossCommitHandler( MockDataNode source, MockDataNode target, CyclicBarrier barrier ) {
+			this.source = source;
+			this.target = target;
+			this.barrier = barrier;
+		}
+
+		@Override
+		public void dataChanged( DataChangedEvent event ) {
+			if( done ) return;
+			done = true;
+			try {
+				barrier.await( 10, TimeUnit.SECONDS );
+			} catch( Exception exception ) {
+				throw new RuntimeException( exception );
+			}
+			target.setAttribute( "copy", source.getAttribute( "value" ) );
+		}
+
+	}
+
+	private static class CommitThread extends Thread {
+
+		private final MockDataNode node;
+
+		private final int value;
+
+		private final List<Throwable> errors;
+
+		public CommitThread( MockDataNode node, int value, List<Throwable> errors ) {
+			this.node = node;
+			this.value = value;
+			this.errors = errors;
+		}
+
+		@Override
+		public void run() {
+			try {
+				node.setAttribute( "value", value );
+			} catch( Throwable throwable ) {
+				errors.add( throwable );
+			}
+		}
+
+	}
+
 	private static class ExecutorThread extends Thread {
 
 		private boolean execute = true;
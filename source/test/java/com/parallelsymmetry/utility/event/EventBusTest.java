@@ -4,10 +4,18 @@ import com.parallelsymmetry.utility.Accessor;
 import com.parallelsymmetry.utility.BaseTestCase;
 import org.junit.jupiter.api.Test;
 
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -241,12 +249,856 @@ public class EventBusTest extends BaseTestCase {
 		bus.stopAndWait();
 	}
 
+	@Test
+	public void testSubmitFromManyThreads() throws Exception {
+		final EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener );
+		bus.startAndWait();
+
+		Thread[] producers = new Thread[8];
+		for( int index = 0; index < producers.length; index++ ) {
+			producers[index] = new Thread( new Runnable() {
+
+				@Override
+				public void run() {
+					for( int count = 0; count < 1000; count++ ) {
+						bus.submit( new TestEvent( this ) );
+					}
+				}
+
+			} );
+			producers[index].start();
+		}
+		for( Thread producer : producers ) {
+			producer.join();
+		}
+
+		bus.eventWait();
+		assertEquals( 8000, listener.getEvents().size() );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testSubmitByPriority() throws Exception {
+		EventBus bus = new EventBus();
+		final CountDownLatch blocked = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( new EventListener<TestEvent>() {
+
+			@Override
+			public void eventOccurred( TestEvent event ) {
+				if( !"block".equals( event.getSource() ) ) return;
+				blocked.countDown();
+				try {
+					release.await();
+				} catch( InterruptedException exception ) {
+					// Intentionally ignore exception.
+				}
+			}
+
+		}, TestEvent.class );
+		bus.addEventListener( listener, TestEvent.class );
+		bus.startAndWait();
+
+		// Hold the event bus thread so the next events are queued together.
+		bus.submit( new TestEvent( "block" ) );
+		blocked.await();
+		Event low = new TestEvent( "low", Event.LOWEST_PRIORITY );
+		Event first = new TestEvent( "first" );
+		Event second = new TestEvent( "second" );
+		Event high = new TestEvent( "high", Event.HIGHEST_PRIORITY );
+		bus.submit( low );
+		bus.submit( first );
+		bus.submit( second );
+		bus.submit( high );
+		release.countDown();
+		low.waitFor();
+
+		List<Event> events = listener.getEvents();
+		assertEquals( 5, events.size() );
+		assertEquals( high, events.get( 1 ) );
+		assertEquals( first, events.get( 2 ) );
+		assertEquals( second, events.get( 3 ) );
+		assertEquals( low, events.get( 4 ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testSubmitAfterListenersChange() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		MockEventListener classListener = new MockEventListener();
+		bus.startAndWait();
+
+		bus.addEventListener( listener );
+		Event event = new TestEvent( getClass() );
+		bus.submit( event );
+		event.waitFor();
+		assertEquals( 1, listener.getEvents().size() );
+
+		bus.addEventListener( classListener, TestEvent.class );
+		event = new TestEvent( getClass() );
+		bus.submit( event );
+		event.waitFor();
+		assertEquals( 2, listener.getEvents().size() );
+		assertEquals( event, classListener.getEvents().get( 0 ) );
+
+		bus.removeEventListener( listener );
+		event = new TestEvent( getClass() );
+		bus.submit( event );
+		event.waitFor();
+		assertEquals( 2, listener.getEvents().size() );
+		assertEquals( 2, classListener.getEvents().size() );
+
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testSubmitToListenerOfClassAndSuperclass() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, Event.class );
+		bus.addEventListener( listener, TestEvent.class );
+		bus.startAndWait();
+
+		Event event = new TestEvent( getClass() );
+		bus.submit( event );
+		event.waitFor();
+		assertEquals( 1, listener.getEvents().size() );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testStopWorkerFromDispatchThread() throws Exception {
+		final EventBus bus = new EventBus();
+		bus.setDispatchMode( EventBus.DispatchMode.PARALLEL );
+		final CountDownLatch stopped = new CountDownLatch( 1 );
+		bus.addEventListener( new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {
+				try {
+					bus.stopWorker();
+					stopped.countDown();
+				} catch( InterruptedException exception ) {
+					// Intentionally ignore exception.
+				}
+			}
+
+		}, TEST_QUEUE_NAME, TestEvent.class );
+		bus.startAndWait();
+
+		// The dispatch thread should not wait for itself.
+		bus.submit( new TestEvent( getClass() ), TEST_QUEUE_NAME );
+		assertTrue( stopped.await( 5, TimeUnit.SECONDS ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testParallelDispatch() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setDispatchMode( EventBus.DispatchMode.PARALLEL );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {
+				try {
+					release.await();
+				} catch( InterruptedException exception ) {
+					// Intentionally ignore exception.
+				}
+			}
+
+		}, "slow" );
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.startAndWait();
+
+		// A blocked listener on one queue does not delay another queue.
+		Event slow = new TestEvent( "slow" );
+		bus.submit( slow, "slow" );
+		for( int index = 0; index < 20; index++ ) {
+			bus.submit( new TestEvent( index ), TEST_QUEUE_NAME );
+		}
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 20, listener.getEvents().size() );
+		for( int index = 0; index < 20; index++ ) {
+			assertEquals( index, listener.getEvents().get( index ).getSource() );
+		}
+
+		release.countDown();
+		slow.waitFor();
+		bus.eventWait( "slow" );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testParallelDispatchByGroup() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setDispatchMode( EventBus.DispatchMode.PARALLEL );
+		bus.setQueueGroup( "a", "group" );
+		bus.setQueueGroup( "b", "group" );
+		assertEquals( "group", bus.getQueueGroup( "a" ) );
+		assertEquals( "c", bus.getQueueGroup( "c" ) );
+
+		final Set<Thread> threads = new CopyOnWriteArraySet<Thread>();
+		EventListener<Event> listener = new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {
+				threads.add( Thread.currentThread() );
+			}
+
+		};
+		bus.addEventListener( listener, "a" );
+		bus.addEventListener( listener, "b" );
+		bus.startAndWait();
+
+		bus.eventWait( "a" );
+		bus.eventWait( "b" );
+		bus.submit( new TestEvent( "a" ), "a" );
+		bus.submit( new TestEvent( "b" ), "b" );
+		bus.eventWait( "a" );
+		bus.eventWait( "b" );
+		assertEquals( 1, threads.size() );
+
+		try {
+			bus.setQueueGroup( "c", "group" );
+			fail( "IllegalStateException should be thrown." );
+		} catch( IllegalStateException exception ) {
+			// Intentionally ignore exception.
+		}
+
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testDispatchModeChangeKeepsEvents() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.submit( new TestEvent( getClass() ), TEST_QUEUE_NAME );
+
+		bus.setDispatchMode( EventBus.DispatchMode.PARALLEL );
+		bus.startAndWait();
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 1, listener.getEvents().size() );
+		bus.stopAndWait();
+
+		bus.setDispatchMode( EventBus.DispatchMode.SHARED );
+		bus.submit( new TestEvent( getClass() ), TEST_QUEUE_NAME );
+		bus.startAndWait();
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 2, listener.getEvents().size() );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testAgingInterval() throws Exception {
+		EventBus bus = new EventBus();
+		assertEquals( 0, bus.getAgingInterval( TimeUnit.MILLISECONDS ) );
+		bus.setAgingInterval( 100, TimeUnit.MILLISECONDS );
+		assertEquals( 100, bus.getAgingInterval( TimeUnit.MILLISECONDS ) );
+
+		try {
+			bus.setAgingInterval( -1, TimeUnit.MILLISECONDS );
+			fail( "IllegalArgumentException should be thrown." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+	}
+
+	@Test
+	public void testQueueCapacityBlockTimeout() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setQueueCapacity( TEST_QUEUE_NAME, 2, EventBus.OverflowPolicy.BLOCK, 20, TimeUnit.MILLISECONDS );
+		assertEquals( 2, bus.getQueueCapacity( TEST_QUEUE_NAME ) );
+		assertEquals( EventBus.OverflowPolicy.BLOCK, bus.getOverflowPolicy( TEST_QUEUE_NAME ) );
+
+		bus.submit( new TestEvent( 0 ), TEST_QUEUE_NAME );
+		bus.submit( new TestEvent( 1 ), TEST_QUEUE_NAME );
+		Event event = new TestEvent( 2 );
+		bus.submit( event, TEST_QUEUE_NAME );
+		assertTrue( event.isCancelled() );
+		assertEquals( 1, bus.getBlockedCount( TEST_QUEUE_NAME ) );
+		assertEquals( 1, bus.getDroppedCount( TEST_QUEUE_NAME ) );
+	}
+
+	@Test
+	public void testQueueCapacityBlock() throws Exception {
+		final EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.setQueueCapacity( TEST_QUEUE_NAME, 1, EventBus.OverflowPolicy.BLOCK );
+		bus.submit( new TestEvent( 0 ), TEST_QUEUE_NAME );
+
+		Thread producer = new Thread( new Runnable() {
+
+			@Override
+			public void run() {
+				bus.submit( new TestEvent( 1 ), TEST_QUEUE_NAME );
+			}
+
+		} );
+		producer.start();
+		while( bus.getBlockedCount( TEST_QUEUE_NAME ) == 0 ) {
+			Thread.sleep( 1 );
+		}
+		assertTrue( producer.isAlive() );
+
+		bus.startAndWait();
+		producer.join();
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 2, listener.getEvents().size() );
+		assertEquals( 1, listener.getEvents().get( 1 ).getSource() );
+		assertEquals( 0, bus.getDroppedCount( TEST_QUEUE_NAME ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testQueueCapacityDropNewest() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.setQueueCapacity( TEST_QUEUE_NAME, 2, EventBus.OverflowPolicy.DROP_NEWEST );
+		Event first = new TestEvent( 0 );
+		Event second = new TestEvent( 1 );
+		Event third = new TestEvent( 2 );
+		bus.submit( first, TEST_QUEUE_NAME );
+		bus.submit( second, TEST_QUEUE_NAME );
+		bus.submit( third, TEST_QUEUE_NAME );
+		assertTrue( third.isCancelled() );
+		assertTrue( third.waitFor() );
+		assertEquals( 1, bus.getDroppedCount( TEST_QUEUE_NAME ) );
+
+		bus.startAndWait();
+		second.waitFor();
+		assertEquals( first, listener.getEvents().get( 0 ) );
+		assertEquals( second, listener.getEvents().get( 1 ) );
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 2, listener.getEvents().size() );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testQueueCapacityDropOldest() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.setQueueCapacity( TEST_QUEUE_NAME, 2, EventBus.OverflowPolicy.DROP_OLDEST );
+		Event low = new TestEvent( "low", Event.LOWEST_PRIORITY );
+		Event first = new TestEvent( "first" );
+		Event second = new TestEvent( "second" );
+		bus.submit( first, TEST_QUEUE_NAME );
+		bus.submit( low, TEST_QUEUE_NAME );
+		bus.submit( second, TEST_QUEUE_NAME );
+		assertTrue( low.isCancelled() );
+		assertEquals( 1, bus.getDroppedCount( TEST_QUEUE_NAME ) );
+
+		bus.startAndWait();
+		second.waitFor();
+		assertEquals( first, listener.getEvents().get( 0 ) );
+		assertEquals( second, listener.getEvents().get( 1 ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testQueueCapacityCallerRuns() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.setQueueCapacity( TEST_QUEUE_NAME, 1, EventBus.OverflowPolicy.CALLER_RUNS );
+		Event first = new TestEvent( 0 );
+		Event second = new TestEvent( 1 );
+		bus.submit( first, TEST_QUEUE_NAME );
+		bus.submit( second, TEST_QUEUE_NAME );
+		assertEquals( 1, listener.getEvents().size() );
+		assertEquals( second, listener.getEvents().get( 0 ) );
+
+		bus.startAndWait();
+		first.waitFor();
+		assertEquals( first, listener.getEvents().get( 1 ) );
+		assertEquals( 0, bus.getDroppedCount( TEST_QUEUE_NAME ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testQueueCapacityCoalesce() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.setQueueCapacity( TEST_QUEUE_NAME, 2, EventBus.OverflowPolicy.COALESCE );
+		Event a1 = new KeyedEvent( "a" );
+		Event b1 = new KeyedEvent( "b" );
+		Event a2 = new KeyedEvent( "a" );
+		Event a3 = new KeyedEvent( "a" );
+		Event c1 = new KeyedEvent( "c" );
+		bus.submit( a1, TEST_QUEUE_NAME );
+		bus.submit( b1, TEST_QUEUE_NAME );
+		bus.submit( a2, TEST_QUEUE_NAME );
+		bus.submit( a3, TEST_QUEUE_NAME );
+		bus.submit( c1, TEST_QUEUE_NAME );
+		assertTrue( a1.waitFor() );
+		assertTrue( a2.waitFor() );
+		assertFalse( a1.isCancelled() );
+		assertTrue( c1.isCancelled() );
+		assertEquals( 2, bus.getCoalescedCount( TEST_QUEUE_NAME ) );
+		assertEquals( 1, bus.getDroppedCount( TEST_QUEUE_NAME ) );
+
+		// The latest event takes the place of the first event with the key.
+		bus.startAndWait();
+		b1.waitFor();
+		assertEquals( 2, listener.getEvents().size() );
+		assertEquals( a3, listener.getEvents().get( 0 ) );
+		assertEquals( b1, listener.getEvents().get( 1 ) );
+
+		Event a4 = new KeyedEvent( "a" );
+		bus.submit( a4, TEST_QUEUE_NAME );
+		a4.waitFor();
+		assertEquals( a4, listener.getEvents().get( 2 ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testBatchListener() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		MockBatchEventListener batchListener = new MockBatchEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.addEventListener( batchListener, TEST_QUEUE_NAME, TestEvent.class );
+
+		Event cancelled = new TestEvent( "cancelled" );
+		for( int index = 0; index < 10; index++ ) {
+			bus.submit( new TestEvent( index ), TEST_QUEUE_NAME );
+			if( index == 5 ) bus.submit( cancelled, TEST_QUEUE_NAME );
+		}
+		cancelled.cancel();
+		bus.startAndWait();
+		bus.eventWait( TEST_QUEUE_NAME );
+
+		assertEquals( 1, batchListener.getBatches().size() );
+		List<Event> batch = batchListener.getBatches().get( 0 );
+		assertEquals( 10, batch.size() );
+		for( int index = 0; index < 10; index++ ) {
+			assertEquals( index, batch.get( index ).getSource() );
+			assertSame( batch.get( index ), listener.getEvents().get( index ) );
+		}
+
+		Event event = new TestEvent( 10 );
+		bus.submit( event, TEST_QUEUE_NAME );
+		event.waitFor();
+		assertEquals( 2, batchListener.getBatches().size() );
+		assertEquals( event, batchListener.getBatches().get( 1 ).get( 0 ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testRemoveBatchListener() throws Exception {
+		EventBus bus = new EventBus();
+		MockBatchEventListener batchListener = new MockBatchEventListener();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( batchListener, TEST_QUEUE_NAME );
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.removeEventListener( batchListener, TEST_QUEUE_NAME );
+		Set<String> batchQueues = Accessor.getField( bus, "batchQueues" );
+		assertFalse( batchQueues.contains( TEST_QUEUE_NAME ) );
+
+		bus.startAndWait();
+		Event event = new TestEvent( getClass() );
+		bus.submit( event, TEST_QUEUE_NAME );
+		event.waitFor();
+		assertEquals( 0, batchListener.getBatches().size() );
+		assertEquals( event, listener.getEvents().get( 0 ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		assertNull( bus.getMetrics( TEST_QUEUE_NAME ) );
+
+		Event cancelled = new TestEvent( "cancelled" );
+		for( int index = 0; index < 10; index++ ) {
+			bus.submit( new TestEvent( index ), TEST_QUEUE_NAME );
+		}
+		bus.submit( cancelled, TEST_QUEUE_NAME );
+		cancelled.cancel();
+
+		EventQueueMetrics metrics = bus.getMetrics( TEST_QUEUE_NAME );
+		assertEquals( TEST_QUEUE_NAME, metrics.getName() );
+		assertEquals( 11, metrics.getDepth() );
+		assertEquals( 11, metrics.getHighWaterMark() );
+		assertEquals( 0, metrics.getDeliveredCount() );
+
+		bus.startAndWait();
+		Event event = new TestEvent( 10 );
+		bus.submit( event, TEST_QUEUE_NAME );
+		event.waitFor();
+		bus.stopAndWait();
+
+		metrics = bus.getMetrics( TEST_QUEUE_NAME );
+		assertEquals( 0, metrics.getDepth() );
+		assertEquals( 11, metrics.getHighWaterMark() );
+		assertEquals( 11, metrics.getDeliveredCount() );
+		assertEquals( 1, metrics.getCancelledCount() );
+		assertTrue( metrics.getDispatchLatency().getMax( TimeUnit.NANOSECONDS ) > 0 );
+		assertEquals( 11, metrics.getListenerTimes().get( listener ).getCount() );
+		assertEquals( metrics.getName(), bus.getMetrics().get( TEST_QUEUE_NAME ).getName() );
+
+		bus.removeEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		assertNull( bus.getMetrics( TEST_QUEUE_NAME ).getListenerTimes().get( listener ) );
+	}
+
+	@Test
+	public void testJmxEnabled() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setName( "jmx" );
+		bus.submit( new TestEvent( 0 ), TEST_QUEUE_NAME );
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName( "com.parallelsymmetry.utility.event:type=EventBus,bus=\"jmx\",queue=\"test\"" );
+		ObjectName other = new ObjectName( "com.parallelsymmetry.utility.event:type=EventBus,bus=\"jmx\",queue=\"other\"" );
+		assertFalse( server.isRegistered( name ) );
+
+		bus.setJmxEnabled( true );
+		assertTrue( bus.isJmxEnabled() );
+		assertTrue( server.isRegistered( name ) );
+		assertEquals( TEST_QUEUE_NAME, server.getAttribute( name, "Name" ) );
+		assertEquals( 1, server.getAttribute( name, "Depth" ) );
+
+		bus.submit( new TestEvent( 1 ), "other" );
+		assertTrue( server.isRegistered( other ) );
+
+		bus.setJmxEnabled( false );
+		assertFalse( server.isRegistered( name ) );
+		assertFalse( server.isRegistered( other ) );
+	}
+
+	@Test
+	public void testJmxAttributes() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setName( "jmx-attributes" );
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+		bus.startAndWait();
+		bus.submit( new TestEvent( 0 ), TEST_QUEUE_NAME );
+		bus.eventWait();
+		bus.setJmxEnabled( true );
+
+		// Every attribute must be readable through the platform server.
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName( "com.parallelsymmetry.utility.event:type=EventBus,bus=\"jmx-attributes\",queue=\"test\"" );
+		MBeanAttributeInfo[] attributes = server.getMBeanInfo( name ).getAttributes();
+		assertEquals( 13, attributes.length );
+		for( MBeanAttributeInfo attribute : attributes ) {
+			server.getAttribute( name, attribute.getName() );
+		}
+		assertEquals( 1L, server.getAttribute( name, "DeliveredCount" ) );
+		assertEquals( 0, server.getAttribute( name, "Depth" ) );
+
+		bus.setJmxEnabled( false );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testEventCompletion() throws Exception {
+		EventBus bus = new EventBus();
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME, TestEvent.class );
+
+		Event event = new TestEvent( 0 );
+		Event cancelled = new TestEvent( 1 );
+		CompletableFuture<Event> completion = event.getCompletion();
+		CompletableFuture<Event> cancelledCompletion = cancelled.getCompletion();
+		bus.submit( event, TEST_QUEUE_NAME );
+		bus.submit( cancelled, TEST_QUEUE_NAME );
+		cancelled.cancel();
+		assertFalse( completion.isDone() );
+		assertTrue( cancelledCompletion.isCompletedExceptionally() );
+		assertTrue( cancelled.waitFor() );
+
+		// Completing the returned future does not complete the event.
+		event.getCompletion().complete( event );
+		assertFalse( completion.isDone() );
+
+		bus.startAndWait();
+		assertSame( event, completion.get( 10, TimeUnit.SECONDS ) );
+		assertTrue( event.isProcessed() );
+		assertTrue( event.getCompletion().isDone() );
+		bus.stopAndWait();
+
+		assertEquals( 1, listener.getEvents().size() );
+	}
+
+	@Test
+	public void testEventWaitOnAllQueues() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setDispatchMode( EventBus.DispatchMode.PARALLEL );
+		MockEventListener listener = new MockEventListener();
+		for( int index = 0; index < 4; index++ ) {
+			bus.addEventListener( listener, "queue" + index );
+		}
+		bus.startAndWait();
+
+		for( int index = 0; index < 100; index++ ) {
+			bus.submit( new TestEvent( index, Event.LOWEST_PRIORITY ), "queue" + index % 4 );
+		}
+		bus.eventWait();
+		assertEquals( 100, listener.getEvents().size() );
+
+		bus.eventWait( "empty" );
+		assertEquals( 100, listener.getEvents().size() );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testEventWaitWithHigherPriorityEvents() throws Exception {
+		final EventBus bus = new EventBus();
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final MockEventListener listener = new MockEventListener();
+		bus.addEventListener( new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {
+				try {
+					release.await( 10, TimeUnit.SECONDS );
+				} catch( InterruptedException exception ) {
+					// Intentionally ignore exception.
+				}
+				listener.eventOccurred( event );
+			}
+
+		}, TEST_QUEUE_NAME );
+		bus.startAndWait();
+
+		// Hold the dispatcher on the first event while the others are queued.
+		bus.submit( new TestEvent( "first" ), TEST_QUEUE_NAME );
+		final Event low = new TestEvent( "low", Event.LOWEST_PRIORITY );
+		bus.submit( low, TEST_QUEUE_NAME );
+
+		final CountDownLatch waited = new CountDownLatch( 1 );
+		final List<Boolean> processed = new CopyOnWriteArrayList<Boolean>();
+		Thread waiter = new Thread() {
+
+			@Override
+			public void run() {
+				bus.eventWait( TEST_QUEUE_NAME );
+				processed.add( low.isProcessed() );
+				waited.countDown();
+			}
+
+		};
+		waiter.start();
+
+		// Events submitted after the wait are delivered before the low priority
+		// event but must not release the waiting thread early.
+		for( int index = 0; index < 10; index++ ) {
+			bus.submit( new TestEvent( index, Event.HIGHEST_PRIORITY ), TEST_QUEUE_NAME );
+		}
+		release.countDown();
+
+		assertTrue( waited.await( 10, TimeUnit.SECONDS ) );
+		assertEquals( 1, processed.size() );
+		assertTrue( processed.get( 0 ) );
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 12, listener.getEvents().size() );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testChannel() throws Exception {
+		EventBus bus = new EventBus();
+		final List<Long> sequences = new CopyOnWriteArrayList<Long>();
+		final List<Long> values = new CopyOnWriteArrayList<Long>();
+		final List<Long> batchEnds = new CopyOnWriteArrayList<Long>();
+		bus.addEventListener( new EventListener<RingBufferEvent>() {
+
+			@Override
+			public void eventOccurred( RingBufferEvent event ) {
+				sequences.add( event.getSequence() );
+				values.add( event.getLong( 0 ) + event.getType() );
+				if( event.isEndOfBatch() ) batchEnds.add( event.getSequence() );
+			}
+
+		}, TEST_QUEUE_NAME, RingBufferEvent.class );
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( listener, TEST_QUEUE_NAME );
+
+		RingBufferChannel channel = new RingBufferChannel( 16, 1, 0 );
+		bus.setChannel( TEST_QUEUE_NAME, channel );
+		assertSame( channel, bus.getChannel( TEST_QUEUE_NAME ) );
+		for( int index = 0; index < 10; index++ ) {
+			channel.publish( 100, (long)index );
+		}
+		assertEquals( 10, bus.getMetrics( TEST_QUEUE_NAME ).getDepth() );
+
+		bus.startAndWait();
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 10, sequences.size() );
+		for( int index = 0; index < 10; index++ ) {
+			assertEquals( index, sequences.get( index ).longValue() );
+			assertEquals( 100 + index, values.get( index ).longValue() );
+		}
+		assertEquals( 1, batchEnds.size() );
+		assertEquals( 9, batchEnds.get( 0 ).longValue() );
+
+		// Listeners for all events also receive the slots.
+		assertEquals( 10, listener.getEvents().size() );
+
+		// Publish more slots than the capacity while the event bus takes them.
+		for( int index = 10; index < 100; index++ ) {
+			channel.publish( 100, (long)index );
+		}
+		bus.eventWait( TEST_QUEUE_NAME );
+		assertEquals( 100, sequences.size() );
+		assertEquals( 99, sequences.get( 99 ).longValue() );
+		assertEquals( 99, batchEnds.get( batchEnds.size() - 1 ).longValue() );
+		bus.stopAndWait();
+
+		try {
+			bus.setChannel( "other", channel );
+			fail( "IllegalStateException should be thrown." );
+		} catch( IllegalStateException exception ) {
+			// Intentionally ignore exception.
+		}
+
+		bus.setChannel( TEST_QUEUE_NAME, null );
+		assertNull( bus.getChannel( TEST_QUEUE_NAME ) );
+		bus.setChannel( "other", channel );
+		assertSame( channel, bus.getChannel( "other" ) );
+	}
+
+	@Test
+	public void testCallSitePolicy() throws Exception {
+		EventBus bus = new EventBus();
+		assertEquals( EventBus.CallSitePolicy.FULL, bus.getCallSitePolicy() );
+
+		Event event = new TestEvent( getClass() );
+		bus.submit( event );
+		assertTrue( event.getCallStackThrowable().getStackTrace().length > bus.getCallSiteFrameCount() );
+
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.OFF );
+		event = new TestEvent( getClass() );
+		bus.submit( event );
+		assertNull( event.getCallStackThrowable() );
+
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.SAMPLED );
+		bus.setCallSiteSampleRate( 1 );
+		event = new TestEvent( getClass() );
+		bus.submit( event );
+		assertNotNull( event.getCallStackThrowable() );
+
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.LIGHTWEIGHT );
+		bus.setCallSiteFrameCount( 2 );
+		event = new TestEvent( getClass() );
+		bus.submit( event );
+		StackTraceElement[] trace = event.getCallStackThrowable().getStackTrace();
+		assertEquals( 2, trace.length );
+		assertEquals( getClass().getName(), trace[0].getClassName() );
+		assertEquals( "testCallSitePolicy", trace[0].getMethodName() );
+	}
+
+	@Test
+	public void testListenerExceptionWithoutCallSite() throws Exception {
+		EventBus bus = new EventBus();
+		bus.setCallSitePolicy( EventBus.CallSitePolicy.OFF );
+		MockEventListener listener = new MockEventListener();
+		bus.addEventListener( new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {
+				throw new RuntimeException( "Intentional exception." );
+			}
+
+		} );
+		bus.addEventListener( listener );
+		bus.startAndWait();
+
+		Event event = new TestEvent( getClass() );
+		bus.submit( event );
+		event.waitFor();
+		assertEquals( event, listener.getEvents().get( 0 ) );
+		bus.stopAndWait();
+	}
+
+	@Test
+	public void testBatchListenerException() throws Exception {
+		EventBus bus = new EventBus();
+		MockBatchEventListener batchListener = new MockBatchEventListener();
+		bus.addEventListener( new EventListener<Event>() {
+
+			@Override
+			public void eventOccurred( Event event ) {
+				throw new RuntimeException( "Intentional exception." );
+			}
+
+		}, TEST_QUEUE_NAME, TestEvent.class );
+		bus.addEventListener( new BatchEventListener<Event>() {
+
+			@Override
+			public void eventsOccurred( List<Event> events ) {
+				throw new RuntimeException( "Intentional exception." );
+			}
+
+		}, TEST_QUEUE_NAME, TestEvent.class );
+		bus.addEventListener( batchListener, TEST_QUEUE_NAME, TestEvent.class );
+
+		// Both failing listeners report the first event with its call site.
+		Event event = new TestEvent( getClass() );
+		bus.submit( event, TEST_QUEUE_NAME );
+		bus.startAndWait();
+		event.getCompletion().get( 5, TimeUnit.SECONDS );
+		assertEquals( 1, batchListener.getBatches().size() );
+		assertSame( event, batchListener.getBatches().get( 0 ).get( 0 ) );
+		bus.stopAndWait();
+	}
+
 	private static class TestEvent extends Event {
 
 		public TestEvent( Object source ) {
 			super( source );
 		}
 
+		public TestEvent( Object source, int priority ) {
+			super( source, priority );
+		}
+
+	}
+
+	private static class KeyedEvent extends TestEvent {
+
+		private final Object key;
+
+		public KeyedEvent( Object key ) {
+			super( key );
+			this.key = key;
+		}
+
+		@Override
+		public Object getCoalescingKey() {
+			return key;
+		}
+
+	}
+
+	private static class MockBatchEventListener implements BatchEventListener<Event> {
+
+		private final List<List<Event>> batches = new CopyOnWriteArrayList<List<Event>>();
+
+		@Override
+		public void eventsOccurred( List<Event> events ) {
+			batches.add( events );
+		}
+
+		public List<List<Event>> getBatches() {
+			return batches;
+		}
+
 	}
 
 	private static class MockEventListener implements EventListener<Event> {
@@ -3,7 +3,9 @@ package com.parallelsymmetry.utility.event;
 import com.parallelsymmetry.utility.BaseTestCase;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 public class EventTest extends BaseTestCase {
 
@@ -26,4 +28,27 @@ public class EventTest extends BaseTestCase {
 		assertEquals( priority, event.getPriority() );
 	}
 
+	@Test
+	public void testCompletion() throws Exception {
+		Event event = new Event( this );
+		CompletableFuture<Event> completion = event.getCompletion();
+		assertFalse( completion.isDone() );
+
+		event.processed();
+		assertTrue( event.isProcessed() );
+		assertSame( event, completion.getNow( null ) );
+		assertSame( event, event.getCompletion().getNow( null ) );
+		assertTrue( event.waitFor() );
+	}
+
+	@Test
+	public void testCompletionOfCancelledEvent() throws Exception {
+		Event event = new Event( this );
+		CompletableFuture<Event> completion = event.getCompletion();
+		event.cancel();
+		assertTrue( completion.isCompletedExceptionally() );
+		assertTrue( event.getCompletion().isCompletedExceptionally() );
+		assertTrue( event.waitFor() );
+	}
+
 }
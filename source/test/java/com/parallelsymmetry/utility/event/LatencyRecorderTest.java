@@ -0,0 +1,63 @@
+package com.parallelsymmetry.utility.event;
+
+import com.parallelsymmetry.utility.BaseTestCase;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyRecorderTest extends BaseTestCase {
+
+	@Test
+	public void testGetBucket() {
+		assertEquals( 0, LatencyRecorder.getBucket( 0 ) );
+		assertEquals( 1, LatencyRecorder.getBucket( 1 ) );
+		assertEquals( 2, LatencyRecorder.getBucket( 2 ) );
+		assertEquals( 2, LatencyRecorder.getBucket( 3 ) );
+		assertEquals( 11, LatencyRecorder.getBucket( 1024 ) );
+		assertEquals( 63, LatencyRecorder.getBucket( Long.MAX_VALUE ) );
+
+		for( int bucket = 1; bucket < 63; bucket++ ) {
+			assertEquals( bucket, LatencyRecorder.getBucket( LatencyHistogram.getBucketLimit( bucket ) ) );
+			assertEquals( bucket + 1, LatencyRecorder.getBucket( LatencyHistogram.getBucketLimit( bucket ) + 1 ) );
+		}
+	}
+
+	@Test
+	public void testHistogram() {
+		LatencyRecorder recorder = new LatencyRecorder();
+		LatencyHistogram histogram = recorder.getHistogram();
+		assertEquals( 0, histogram.getCount() );
+		assertEquals( 0, histogram.getMean( TimeUnit.NANOSECONDS ) );
+		assertEquals( 0, histogram.getPercentile( 99, TimeUnit.NANOSECONDS ) );
+
+		for( int index = 1; index <= 100; index++ ) {
+			recorder.record( index * 1000 );
+		}
+		recorder.record( -5 );
+
+		histogram = recorder.getHistogram();
+		assertEquals( 101, histogram.getCount() );
+		assertEquals( 1, histogram.getBucketValue( 0 ) );
+		assertEquals( 5050000, histogram.getTotal( TimeUnit.NANOSECONDS ) );
+		assertEquals( 50, histogram.getMean( TimeUnit.MICROSECONDS ) );
+		assertEquals( 100, histogram.getMax( TimeUnit.MICROSECONDS ) );
+
+		// Percentiles are the upper bound of the bucket but never above the max.
+		assertEquals( 65535, histogram.getPercentile( 50, TimeUnit.NANOSECONDS ) );
+		assertEquals( 100000, histogram.getPercentile( 99, TimeUnit.NANOSECONDS ) );
+		assertEquals( 0, histogram.getPercentile( 0, TimeUnit.NANOSECONDS ) );
+	}
+
+	@Test
+	public void testInvalidPercentile() {
+		try {
+			new LatencyRecorder().getHistogram().getPercentile( 101, TimeUnit.NANOSECONDS );
+			fail( "IllegalArgumentException should be thrown." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package com.parallelsymmetry.utility.event;
+
+import com.parallelsymmetry.utility.BaseTestCase;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PriorityEventQueueTest extends BaseTestCase {
+
+	@Test
+	public void testPollByPriority() {
+		PriorityEventQueue queue = new PriorityEventQueue();
+		assertTrue( queue.isEmpty() );
+		assertNull( queue.poll() );
+
+		Event low = new Event( this, Event.LOWEST_PRIORITY );
+		Event normal = new Event( this );
+		Event high = new Event( this, Event.HIGHEST_PRIORITY );
+		queue.add( low );
+		queue.add( normal );
+		queue.add( high );
+		assertFalse( queue.isEmpty() );
+
+		assertSame( high, queue.poll() );
+		assertSame( normal, queue.poll() );
+		assertSame( low, queue.poll() );
+		assertNull( queue.poll() );
+		assertTrue( queue.isEmpty() );
+	}
+
+	@Test
+	public void testPollInSubmitOrder() {
+		PriorityEventQueue queue = new PriorityEventQueue();
+		Event[] events = new Event[100];
+		for( int index = 0; index < events.length; index++ ) {
+			events[index] = new Event( this );
+			queue.add( events[index] );
+		}
+
+		for( Event event : events ) {
+			assertSame( event, queue.poll() );
+		}
+	}
+
+	@Test
+	public void testPriorityOutOfRange() {
+		PriorityEventQueue queue = new PriorityEventQueue();
+		Event low = new Event( this, Event.LOWEST_PRIORITY - 10 );
+		Event high = new Event( this, Event.HIGHEST_PRIORITY + 10 );
+		queue.add( low );
+		queue.add( high );
+
+		assertSame( high, queue.poll() );
+		assertSame( low, queue.poll() );
+	}
+
+	@Test
+	public void testPollWithAging() {
+		long interval = TimeUnit.SECONDS.toNanos( 1 );
+		long now = System.nanoTime();
+		PriorityEventQueue queue = new PriorityEventQueue();
+
+		// A low priority event that has waited eight intervals is equal to a new
+		// high priority event and the high priority event is first.
+		Event low = createEvent( Event.LOWEST_PRIORITY, now - 8 * interval - interval / 2 );
+		Event high = createEvent( Event.HIGHEST_PRIORITY, now );
+		queue.add( low );
+		queue.add( high );
+		assertSame( high, queue.poll( interval ) );
+		assertSame( low, queue.poll( interval ) );
+
+		// A low priority event that has waited nine intervals is first.
+		low = createEvent( Event.LOWEST_PRIORITY, now - 9 * interval - interval / 2 );
+		high = createEvent( Event.HIGHEST_PRIORITY, now );
+		queue.add( low );
+		queue.add( high );
+		assertSame( low, queue.poll( interval ) );
+		assertSame( high, queue.poll( interval ) );
+
+		// Without aging the high priority event is first.
+		low = createEvent( Event.LOWEST_PRIORITY, now - 100 * interval );
+		high = createEvent( Event.HIGHEST_PRIORITY, now );
+		queue.add( low );
+		queue.add( high );
+		assertSame( high, queue.poll( 0 ) );
+		assertSame( low, queue.poll( 0 ) );
+		assertNull( queue.poll( interval ) );
+	}
+
+	private Event createEvent( int priority, long submitTime ) {
+		Event event = new Event( this, priority );
+		event.setSubmitTime( submitTime );
+		return event;
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.parallelsymmetry.utility.event;
+
+import com.parallelsymmetry.utility.BaseTestCase;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RingBufferChannelTest extends BaseTestCase {
+
+	@Test
+	public void testPublishAndConsume() {
+		RingBufferChannel channel = new RingBufferChannel( 4, 2, 1 );
+		assertTrue( channel.isEmpty() );
+		assertEquals( -1, channel.getAvailable( 0 ) );
+
+		long sequence = channel.next();
+		assertEquals( 0, sequence );
+		channel.setType( sequence, 7 );
+		channel.setLong( sequence, 0, 10 );
+		channel.setLong( sequence, 1, 20 );
+		channel.setDouble( sequence, 0, 1.5 );
+
+		// A claimed slot is not available until it is published.
+		assertEquals( 1, channel.size() );
+		assertTrue( channel.isEmpty() );
+		assertEquals( -1, channel.getAvailable( 0 ) );
+
+		channel.publish( sequence );
+		assertFalse( channel.isEmpty() );
+		assertEquals( 0, channel.getAvailable( 0 ) );
+		assertEquals( 7, channel.getType( 0 ) );
+		assertEquals( 10, channel.getLong( 0, 0 ) );
+		assertEquals( 20, channel.getLong( 0, 1 ) );
+		assertEquals( 1.5, channel.getDouble( 0, 0 ) );
+
+		channel.setConsumed( 1 );
+		assertTrue( channel.isEmpty() );
+		assertEquals( 0, channel.size() );
+	}
+
+	@Test
+	public void testAvailableStopsAtGap() {
+		RingBufferChannel channel = new RingBufferChannel( 8, 1, 0 );
+		long first = channel.next();
+		long second = channel.next();
+		long third = channel.next();
+		channel.publish( first );
+		channel.publish( third );
+		assertEquals( first, channel.getAvailable( 0 ) );
+
+		channel.publish( second );
+		assertEquals( third, channel.getAvailable( 0 ) );
+	}
+
+	@Test
+	public void testWrapAround() {
+		RingBufferChannel channel = new RingBufferChannel( 2, 1, 0 );
+		for( int index = 0; index < 10; index++ ) {
+			long sequence = channel.publish( 1, (long)index );
+			assertEquals( index, sequence );
+			assertEquals( sequence, channel.getAvailable( sequence ) );
+			assertEquals( index, channel.getLong( sequence, 0 ) );
+			channel.setConsumed( sequence + 1 );
+		}
+
+		// A slot from the previous round is not available.
+		assertEquals( 9, channel.getAvailable( 10 ) );
+	}
+
+	@Test
+	public void testInvalidCapacity() {
+		try {
+			new RingBufferChannel( 3, 1, 0 );
+			fail( "IllegalArgumentException should be thrown." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+	}
+
+	@Test
+	public void testPublishWithoutValues() {
+		RingBufferChannel channel = new RingBufferChannel( 4, 0, 1 );
+		try {
+			channel.publish( 1, 5L );
+			fail( "IndexOutOfBoundsException should be thrown." );
+		} catch( IndexOutOfBoundsException exception ) {
+			// Intentionally ignore exception.
+		}
+
+		// The failed publish must not leave a gap.
+		assertEquals( 0, channel.size() );
+		long sequence = channel.publish( 1, 2.5 );
+		assertEquals( 0, sequence );
+		assertEquals( sequence, channel.getAvailable( 0 ) );
+
+		channel = new RingBufferChannel( 4, 1, 0 );
+		try {
+			channel.publish( 1, 2.5 );
+			fail( "IndexOutOfBoundsException should be thrown." );
+		} catch( IndexOutOfBoundsException exception ) {
+			// Intentionally ignore exception.
+		}
+		assertEquals( 0, channel.size() );
+	}
+
+	@Test
+	public void testNextWaitsWhenFull() throws Exception {
+		final RingBufferChannel channel = new RingBufferChannel( 2, 1, 0 );
+		channel.publish( 1, 1L );
+		channel.publish( 1, 2L );
+
+		final AtomicLong sequence = new AtomicLong( -1 );
+		Thread producer = new Thread() {
+
+			@Override
+			public void run() {
+				sequence.set( channel.publish( 1, 3L ) );
+			}
+
+		};
+		producer.start();
+		producer.join( 50 );
+		assertTrue( producer.isAlive() );
+		assertEquals( -1, sequence.get() );
+		assertEquals( 2, channel.size() );
+
+		channel.setConsumed( 1 );
+		producer.join( 5000 );
+		assertFalse( producer.isAlive() );
+		assertEquals( 2, sequence.get() );
+		assertEquals( 2, channel.size() );
+	}
+
+	@Test
+	public void testInvalidIndex() {
+		RingBufferChannel channel = new RingBufferChannel( 2, 1, 0 );
+		try {
+			channel.setDouble( 0, 0, 1.0 );
+			fail( "IndexOutOfBoundsException should be thrown." );
+		} catch( IndexOutOfBoundsException exception ) {
+			// Intentionally ignore exception.
+		}
+	}
+
+}
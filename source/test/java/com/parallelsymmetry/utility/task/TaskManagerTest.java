@@ -1,14 +1,19 @@
 package com.parallelsymmetry.utility.task;
 
 import com.parallelsymmetry.utility.BaseTestCase;
+import com.parallelsymmetry.utility.ThreadUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -283,6 +288,502 @@ public class TaskManagerTest extends BaseTestCase {
 		assertEquals( TaskEvent.Type.TASK_COMPLETED, listener.events.get( index++ ).getType() );
 	}
 
+	@Test
+	public void testReservedThreads() throws Exception {
+		manager.setReservedThreadCount( 1 );
+		assertEquals( 1, manager.getReservedThreadCount() );
+		manager.startAndWait();
+
+		// Fill every unreserved thread with low priority tasks.
+		final CountDownLatch release = new CountDownLatch( 1 );
+		List<Task<Object>> lowTasks = new ArrayList<Task<Object>>();
+		for( int index = 0; index < 64; index++ ) {
+			Task<Object> task = new Task<Object>( "low", Task.Priority.LOW ) {
+
+				@Override
+				public Object execute() throws Exception {
+					release.await();
+					return null;
+				}
+
+			};
+			lowTasks.add( task );
+			manager.submit( task );
+		}
+
+		Object result = new Object();
+		MockTask highTask = new MockTask( manager, result );
+		highTask.setPriority( Task.Priority.HIGH );
+		manager.submit( highTask );
+		assertEquals( result, highTask.get( 10, TimeUnit.SECONDS ) );
+		assertFalse( lowTasks.get( lowTasks.size() - 1 ).isDone() );
+
+		release.countDown();
+		for( Task<Object> task : lowTasks ) {
+			task.get( 10, TimeUnit.SECONDS );
+		}
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testAgingInterval() throws Exception {
+		assertEquals( 0, manager.getAgingInterval( TimeUnit.MILLISECONDS ) );
+		manager.setAgingInterval( 500, TimeUnit.MILLISECONDS );
+		assertEquals( 500, manager.getAgingInterval( TimeUnit.MILLISECONDS ) );
+
+		try {
+			manager.setAgingInterval( -1, TimeUnit.MILLISECONDS );
+			fail( "IllegalArgumentException should be thrown." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+	}
+
+	@Test
+	public void testForkJoinInvokeAllRunsInParallel() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.FORK_JOIN );
+		assertEquals( TaskManager.ExecutionMode.FORK_JOIN, manager.getExecutionMode() );
+		manager.startAndWait();
+
+		// Each subtask waits for the other so they only finish if run in parallel.
+		final CountDownLatch latch = new CountDownLatch( 2 );
+		final List<Task<Boolean>> subtasks = new ArrayList<Task<Boolean>>();
+		for( int index = 0; index < 2; index++ ) {
+			subtasks.add( new Task<Boolean>() {
+
+				@Override
+				public Boolean execute() throws Exception {
+					latch.countDown();
+					return latch.await( 10, TimeUnit.SECONDS );
+				}
+
+			} );
+		}
+
+		Task<Object> task = new Task<Object>() {
+
+			@Override
+			public Object execute() throws Exception {
+				manager.invokeAll( subtasks );
+				return null;
+			}
+
+		};
+		manager.submit( task ).get( 20, TimeUnit.SECONDS );
+		for( Task<Boolean> subtask : subtasks ) {
+			assertTrue( subtask.get() );
+		}
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testForkJoinRecursiveInvoke() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.FORK_JOIN );
+		manager.startAndWait();
+
+		SumTask task = new SumTask( manager, 0, 4096 );
+		assertEquals( 4096L * 4095L / 2, manager.submit( task ).get( 20, TimeUnit.SECONDS ).longValue() );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testForkJoinBlockingGet() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.FORK_JOIN );
+		manager.startAndWait();
+
+		// More tasks than threads block on the result of another task.
+		List<Task<Object>> tasks = new ArrayList<Task<Object>>();
+		for( int index = 0; index < 64; index++ ) {
+			final Object result = new Object();
+			Task<Object> task = new Task<Object>() {
+
+				@Override
+				public Object execute() throws Exception {
+					return manager.submit( new MockTask( manager, result, 1 ) ).get();
+				}
+
+			};
+			tasks.add( task );
+			manager.submit( task );
+		}
+		for( Task<Object> task : tasks ) {
+			assertNotNull( task.get( 20, TimeUnit.SECONDS ) );
+		}
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testForkJoinCompositeTask() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.FORK_JOIN );
+		manager.startAndWait();
+
+		CompositeTask inner = new CompositeTask();
+		inner.addTask( new MockTask( manager, 1 ) );
+		inner.addTask( new MockTask( manager, 1 ) );
+		CompositeTask outer = new CompositeTask();
+		outer.addTask( inner );
+		outer.addTask( new MockTask( manager, 1 ) );
+
+		manager.submit( outer ).get( 20, TimeUnit.SECONDS );
+		assertEquals( Task.Result.SUCCESS, outer.getResult() );
+		assertEquals( 2, outer.getFutures().size() );
+		assertEquals( 2, inner.getFutures().size() );
+		for( Future<?> future : inner.getFutures() ) {
+			assertTrue( future.isDone() );
+		}
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testVirtualExecution() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.VIRTUAL );
+		manager.startAndWait();
+		MockTaskListener listener = new MockTaskListener();
+		manager.addTaskListener( listener );
+
+		// More tasks than the maximum thread count block until all are running.
+		final CountDownLatch latch = new CountDownLatch( 64 );
+		List<Task<Boolean>> tasks = new ArrayList<Task<Boolean>>();
+		for( int index = 0; index < 64; index++ ) {
+			Task<Boolean> task = new Task<Boolean>() {
+
+				@Override
+				public Boolean execute() throws Exception {
+					latch.countDown();
+					return latch.await( 10, TimeUnit.SECONDS );
+				}
+
+			};
+			tasks.add( task );
+			manager.submit( task );
+		}
+		for( Task<Boolean> task : tasks ) {
+			assertTrue( task.get( 20, TimeUnit.SECONDS ) );
+			assertEquals( Task.Result.SUCCESS, task.getResult() );
+		}
+		manager.stopAndWait();
+
+		int started = 0;
+		for( TaskEvent event : listener.events ) {
+			if( event.getType() == TaskEvent.Type.TASK_START ) started++;
+		}
+		assertEquals( 64, started );
+	}
+
+	@Test
+	public void testVirtualMaxConcurrency() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.VIRTUAL );
+		manager.setMaxConcurrency( 2 );
+		assertEquals( 2, manager.getMaxConcurrency() );
+		manager.startAndWait();
+
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maximum = new AtomicInteger();
+		List<Task<Object>> tasks = new ArrayList<Task<Object>>();
+		for( int index = 0; index < 16; index++ ) {
+			Task<Object> task = new Task<Object>() {
+
+				@Override
+				public Object execute() throws Exception {
+					int count = running.incrementAndGet();
+					int mark = maximum.get();
+					while( count > mark && !maximum.compareAndSet( mark, count ) ) {
+						mark = maximum.get();
+					}
+					Thread.sleep( 5 );
+					running.decrementAndGet();
+					return null;
+				}
+
+			};
+			tasks.add( task );
+			manager.submit( task );
+		}
+		for( Task<Object> task : tasks ) {
+			task.get( 20, TimeUnit.SECONDS );
+		}
+		assertTrue( maximum.get() <= 2, "Maximum: " + maximum.get() );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testVirtualNestedInvokeWithLimit() throws Exception {
+		manager.setExecutionMode( TaskManager.ExecutionMode.VIRTUAL );
+		manager.setMaxConcurrency( 1 );
+		manager.startAndWait();
+
+		// The nested task needs the only permit held by the outer task.
+		Object result = new Object();
+		MockTask nested = new MockTask( manager, result );
+		MockTask task = new MockTask( manager, null, nested );
+		manager.submit( task ).get( 20, TimeUnit.SECONDS );
+		assertEquals( result, nested.get( 20, TimeUnit.SECONDS ) );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testDependencies() throws Exception {
+		for( TaskManager.ExecutionMode mode : TaskManager.ExecutionMode.values() ) {
+			manager.setExecutionMode( mode );
+			manager.startAndWait();
+
+			List<String> order = new CopyOnWriteArrayList<String>();
+			StepTask parse = new StepTask( "parse", order );
+			StepTask index = new StepTask( "index", order, parse );
+			StepTask thumbnail = new StepTask( "thumbnail", order, parse );
+			StepTask publish = new StepTask( "publish", order, index, thumbnail );
+
+			// Submit the tasks in reverse order to show the order does not matter.
+			manager.submit( publish );
+			manager.submit( thumbnail );
+			manager.submit( index );
+			manager.submit( parse );
+
+			assertEquals( "publish(index(parse()),thumbnail(parse()))", publish.get( 20, TimeUnit.SECONDS ), mode.name() );
+			assertEquals( 4, order.size() );
+			assertEquals( "parse", order.get( 0 ) );
+			assertEquals( "publish", order.get( 3 ) );
+			manager.stopAndWait();
+		}
+	}
+
+	@Test
+	public void testDependencyAlreadyDone() throws Exception {
+		manager.startAndWait();
+
+		List<String> order = new CopyOnWriteArrayList<String>();
+		StepTask parse = new StepTask( "parse", order );
+		manager.submit( parse ).get( 20, TimeUnit.SECONDS );
+
+		StepTask index = new StepTask( "index", order, parse );
+		assertEquals( "index(parse())", manager.submit( index ).get( 20, TimeUnit.SECONDS ) );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testDependentStartsAfterDependencyFinish() throws Exception {
+		manager.startAndWait();
+
+		final List<String> order = new CopyOnWriteArrayList<String>();
+		StepTask parse = new StepTask( "parse", order );
+		StepTask index = new StepTask( "index", order, parse );
+		parse.addTaskListener( new TaskListener() {
+
+			@Override
+			public void handleEvent( TaskEvent event ) {
+				if( event.getType() != TaskEvent.Type.TASK_FINISH ) return;
+				ThreadUtil.pause( 100 );
+				order.add( "parse finished" );
+			}
+
+		} );
+
+		manager.submit( index );
+		manager.submit( parse );
+
+		assertEquals( "index(parse())", index.get( 20, TimeUnit.SECONDS ) );
+		assertEquals( 3, order.size() );
+		assertEquals( "parse", order.get( 0 ) );
+		assertEquals( "parse finished", order.get( 1 ) );
+		assertEquals( "index", order.get( 2 ) );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testDependencyFailureCancelsDependents() throws Exception {
+		manager.startAndWait();
+
+		List<String> order = new CopyOnWriteArrayList<String>();
+		MockTask parse = new MockTask( manager, null, true );
+		StepTask index = new StepTask( "index", order, parse );
+		StepTask publish = new StepTask( "publish", order, index );
+		List<Task<Object>> tasks = new ArrayList<Task<Object>>();
+		tasks.add( parse );
+		manager.submit( publish );
+		manager.submit( index );
+		manager.submitAll( tasks );
+
+		try {
+			publish.get( 20, TimeUnit.SECONDS );
+			fail( "Dependent task should be cancelled." );
+		} catch( CancellationException exception ) {
+			// Intentionally ignore exception.
+		}
+		assertEquals( Task.Result.FAILED, parse.getResult() );
+		assertEquals( Task.Result.CANCELLED, index.getResult() );
+		assertEquals( Task.Result.CANCELLED, publish.getResult() );
+		assertEquals( 0, order.size() );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testCancelDependency() throws Exception {
+		manager.startAndWait();
+
+		final CountDownLatch started = new CountDownLatch( 1 );
+		Task<String> parse = new Task<String>() {
+
+			@Override
+			public String execute() throws Exception {
+				started.countDown();
+				new CountDownLatch( 1 ).await();
+				return null;
+			}
+
+		};
+		List<String> order = new CopyOnWriteArrayList<String>();
+		StepTask index = new StepTask( "index", order, parse );
+		manager.submit( parse );
+		manager.submit( index );
+		assertTrue( started.await( 20, TimeUnit.SECONDS ) );
+
+		parse.cancel( true );
+		index.waitForState( Task.State.DONE, 20, TimeUnit.SECONDS );
+		assertTrue( index.isCancelled() );
+		assertEquals( 0, order.size() );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testDependencyCycle() throws Exception {
+		List<String> order = new CopyOnWriteArrayList<String>();
+		StepTask parse = new StepTask( "parse", order );
+		StepTask index = new StepTask( "index", order, parse );
+		StepTask publish = new StepTask( "publish", order, index );
+
+		assertTrue( publish.dependsOn( parse ) );
+		assertFalse( parse.dependsOn( publish ) );
+		try {
+			parse.addDependency( publish );
+			fail( "Cyclic dependency should cause an exception." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+		try {
+			parse.addDependency( parse );
+			fail( "Dependency on itself should cause an exception." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+	}
+
+	@Test
+	public void testProgressCoalescing() throws Exception {
+		assertEquals( 20, manager.getProgressRate() );
+		manager.startAndWait();
+
+		ProgressTask task = new ProgressTask( 1000000, 200 );
+		MockTaskListener listener = new MockTaskListener();
+		task.addTaskListener( listener );
+		manager.submit( task ).get( 20, TimeUnit.SECONDS );
+
+		List<TaskEvent> progress = getEvents( listener, TaskEvent.Type.TASK_PROGRESS );
+		assertTrue( progress.size() >= 2, "Progress events: " + progress.size() );
+		assertTrue( progress.size() <= 10, "Progress events: " + progress.size() );
+
+		// The last progress event is sent before the finish event.
+		TaskEvent last = progress.get( progress.size() - 1 );
+		assertEquals( task.getMaximum(), last.getProgress() );
+		assertEquals( TaskEvent.Type.TASK_FINISH, listener.events.get( listener.events.indexOf( last ) + 1 ).getType() );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testNoProgressAfterFinish() throws Exception {
+		manager.startAndWait();
+
+		// The task finishes while the progress thread is sending its progress.
+		final CountDownLatch publishing = new CountDownLatch( 1 );
+		Task<Object> task = new Task<Object>() {
+
+			@Override
+			public Object execute() throws Exception {
+				setProgress( 1 );
+				assertTrue( publishing.await( 10, TimeUnit.SECONDS ) );
+				return null;
+			}
+
+		};
+		task.setMaximum( 2 );
+
+		final List<TaskEvent> events = new CopyOnWriteArrayList<TaskEvent>();
+		final CountDownLatch finished = new CountDownLatch( 1 );
+		task.addTaskListener( new TaskListener() {
+
+			@Override
+			public void handleEvent( TaskEvent event ) {
+				if( event.getType() == TaskEvent.Type.TASK_PROGRESS && event.getProgress() == 1 ) {
+					publishing.countDown();
+					try {
+						Thread.sleep( 100 );
+					} catch( InterruptedException exception ) {
+						// Intentionally ignore exception.
+					}
+				}
+				events.add( event );
+				if( event.getType() == TaskEvent.Type.TASK_FINISH ) finished.countDown();
+			}
+
+		} );
+		manager.submit( task ).get( 20, TimeUnit.SECONDS );
+
+		// Allow a late progress event to arrive.
+		assertTrue( finished.await( 10, TimeUnit.SECONDS ) );
+		Thread.sleep( 200 );
+		assertEquals( TaskEvent.Type.TASK_FINISH, events.get( events.size() - 1 ).getType() );
+		TaskEvent last = events.get( events.size() - 2 );
+		assertEquals( TaskEvent.Type.TASK_PROGRESS, last.getType() );
+		assertEquals( 2, last.getProgress() );
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testProgressRateZero() throws Exception {
+		manager.setProgressRate( 0 );
+		assertEquals( 0, manager.getProgressRate() );
+		manager.startAndWait();
+
+		ProgressTask task = new ProgressTask( 100, 0 );
+		MockTaskListener listener = new MockTaskListener();
+		task.addTaskListener( listener );
+		manager.submit( task ).get( 20, TimeUnit.SECONDS );
+
+		// Every change is sent, followed by the final progress.
+		List<TaskEvent> progress = getEvents( listener, TaskEvent.Type.TASK_PROGRESS );
+		assertEquals( 101, progress.size() );
+		for( int index = 0; index < 100; index++ ) {
+			assertEquals( index + 1, progress.get( index ).getProgress() );
+		}
+		manager.stopAndWait();
+	}
+
+	@Test
+	public void testSetProgressRate() throws Exception {
+		try {
+			manager.setProgressRate( -1 );
+			fail( "Negative progress rate should cause an exception." );
+		} catch( IllegalArgumentException exception ) {
+			// Intentionally ignore exception.
+		}
+
+		manager.startAndWait();
+		manager.setProgressRate( 0 );
+		ProgressTask task = new ProgressTask( 10, 0 );
+		MockTaskListener listener = new MockTaskListener();
+		task.addTaskListener( listener );
+		manager.submit( task ).get( 20, TimeUnit.SECONDS );
+		assertEquals( 11, getEvents( listener, TaskEvent.Type.TASK_PROGRESS ).size() );
+		manager.stopAndWait();
+	}
+
+	private List<TaskEvent> getEvents( MockTaskListener listener, TaskEvent.Type type ) {
+		List<TaskEvent> events = new ArrayList<TaskEvent>();
+		for( TaskEvent event : listener.events ) {
+			if( event.getType() == type ) events.add( event );
+		}
+		return events;
+	}
+
 	private static class MockTaskListener implements TaskListener {
 
 		public List<TaskEvent> events = new CopyOnWriteArrayList<TaskEvent>();
@@ -294,4 +795,101 @@ public class TaskManagerTest extends BaseTestCase {
 
 	}
 
+	/**
+	 * A pipeline step that records when it runs and returns its name followed by
+	 * the results of its dependencies.
+	 */
+	private static class StepTask extends Task<String> {
+
+		private final List<String> order;
+
+		public StepTask( String name, List<String> order, Task<?>... dependencies ) {
+			super( name );
+			this.order = order;
+			for( Task<?> dependency : dependencies ) {
+				addDependency( dependency );
+			}
+		}
+
+		@Override
+		public String execute() throws Exception {
+			order.add( getName() );
+			StringBuilder builder = new StringBuilder( getName() );
+			builder.append( "(" );
+			boolean first = true;
+			for( Task<?> dependency : getDependencies() ) {
+				if( !first ) builder.append( "," );
+				builder.append( getDependencyResult( dependency ) );
+				first = false;
+			}
+			builder.append( ")" );
+			return builder.toString();
+		}
+
+	}
+
+	/**
+	 * Sets the progress for every step and runs for at least a minimum time.
+	 */
+	private static class ProgressTask extends Task<Object> {
+
+		private final long steps;
+
+		private final long duration;
+
+		public ProgressTask( long steps, long duration ) {
+			this.steps = steps;
+			this.duration = TimeUnit.MILLISECONDS.toNanos( duration );
+			setMaximum( steps );
+		}
+
+		@Override
+		public Object execute() throws Exception {
+			long start = System.nanoTime();
+			for( long step = 1; step <= steps; step++ ) {
+				setProgress( step );
+			}
+			while( System.nanoTime() - start < duration ) {
+				setProgress( steps );
+				Thread.sleep( 1 );
+			}
+			return null;
+		}
+
+	}
+
+	private static class SumTask extends Task<Long> {
+
+		private final TaskManager manager;
+
+		private final long start;
+
+		private final long end;
+
+		public SumTask( TaskManager manager, long start, long end ) {
+			this.manager = manager;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public Long execute() throws Exception {
+			if( end - start <= 16 ) {
+				long sum = 0;
+				for( long value = start; value < end; value++ ) {
+					sum += value;
+				}
+				return sum;
+			}
+
+			long middle = ( start + end ) / 2;
+			List<SumTask> tasks = new ArrayList<SumTask>();
+			tasks.add( new SumTask( manager, start, middle ) );
+			tasks.add( new SumTask( manager, middle, end ) );
+			manager.invokeAll( tasks );
+			return tasks.get( 0 ).get() + tasks.get( 1 ).get();
+		}
+
+	}
+
 }
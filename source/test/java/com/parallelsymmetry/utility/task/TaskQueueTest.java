@@ -0,0 +1,122 @@
+package com.parallelsymmetry.utility.task;
+
+import com.parallelsymmetry.utility.BaseTestCase;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskQueueTest extends BaseTestCase {
+
+	@Test
+	public void testTakeByPriority() throws Exception {
+		TaskQueue queue = new TaskQueue();
+		assertNull( queue.poll() );
+
+		Runnable low = createTask( Task.Priority.LOW );
+		Runnable medium1 = createTask( Task.Priority.MEDIUM );
+		Runnable high = createTask( Task.Priority.HIGH );
+		Runnable medium2 = createTask( Task.Priority.MEDIUM );
+		Runnable ui = createTask( Task.Priority.UI );
+		queue.offer( low );
+		queue.offer( medium1 );
+		queue.offer( high );
+		queue.offer( medium2 );
+		queue.offer( ui );
+		assertEquals( 5, queue.size() );
+		assertSame( ui, queue.peek() );
+
+		assertSame( ui, queue.take() );
+		assertSame( high, queue.take() );
+		assertSame( medium1, queue.take() );
+		assertSame( medium2, queue.take() );
+		assertSame( low, queue.take() );
+		assertTrue( queue.isEmpty() );
+		assertNull( queue.poll( 10, TimeUnit.MILLISECONDS ) );
+	}
+
+	@Test
+	public void testAging() throws Exception {
+		TaskQueue queue = new TaskQueue();
+		queue.setAgingInterval( TimeUnit.MILLISECONDS.toNanos( 10 ) );
+
+		Runnable low = createTask( Task.Priority.LOW );
+		queue.offer( low );
+		Thread.sleep( 50 );
+		Runnable high = createTask( Task.Priority.HIGH );
+		queue.offer( high );
+
+		// The low priority task has waited long enough to be raised above high.
+		assertSame( low, queue.poll() );
+		assertSame( high, queue.poll() );
+	}
+
+	@Test
+	public void testLimit() throws Exception {
+		TaskQueue queue = new TaskQueue();
+		queue.setLimit( 1 );
+
+		Runnable low1 = createTask( Task.Priority.LOW );
+		Runnable low2 = createTask( Task.Priority.LOW );
+		Runnable high = createTask( Task.Priority.HIGH );
+		queue.offer( low1 );
+		queue.offer( low2 );
+
+		assertSame( low1, queue.poll() );
+		assertNull( queue.poll() );
+
+		// Only high priority tasks are taken while the limit is reached.
+		queue.offer( high );
+		assertSame( high, queue.poll() );
+		queue.completed( high );
+		assertNull( queue.poll() );
+
+		queue.completed( low1 );
+		assertSame( low2, queue.poll() );
+	}
+
+	@Test
+	public void testDrainTo() throws Exception {
+		TaskQueue queue = new TaskQueue();
+		Runnable low = createTask( Task.Priority.LOW );
+		Runnable high = createTask( Task.Priority.HIGH );
+		queue.offer( low );
+		queue.offer( high );
+
+		List<Runnable> runnables = new ArrayList<Runnable>();
+		assertEquals( 2, queue.drainTo( runnables ) );
+		assertSame( high, runnables.get( 0 ) );
+		assertSame( low, runnables.get( 1 ) );
+		assertEquals( 0, queue.size() );
+	}
+
+	@Test
+	public void testRemove() throws Exception {
+		TaskQueue queue = new TaskQueue();
+		Runnable low = createTask( Task.Priority.LOW );
+		Runnable high = createTask( Task.Priority.HIGH );
+		queue.offer( low );
+		queue.offer( high );
+
+		assertTrue( queue.remove( low ) );
+		assertFalse( queue.remove( low ) );
+		assertEquals( 1, queue.size() );
+		assertSame( high, queue.iterator().next() );
+	}
+
+	private Runnable createTask( Task.Priority priority ) {
+		return new TaskQueue.QueuedTask<Object>( new Callable<Object>() {
+
+			@Override
+			public Object call() {
+				return null;
+			}
+
+		}, priority );
+	}
+
+}
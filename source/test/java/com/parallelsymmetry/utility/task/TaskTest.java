@@ -5,6 +5,8 @@ import com.parallelsymmetry.utility.ThreadUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -39,6 +41,31 @@ public class TaskTest extends BaseTestCase {
 		assertEquals( Task.Priority.LOW, task.getPriority() );
 	}
 
+	@Test
+	public void testAddProgress() throws Exception {
+		final Task<?> task = new MockTask( manager );
+		List<Thread> threads = new ArrayList<Thread>();
+		for( int index = 0; index < 4; index++ ) {
+			threads.add( new Thread() {
+
+				@Override
+				public void run() {
+					for( int count = 0; count < 10000; count++ ) {
+						task.addProgress( 1 );
+					}
+				}
+
+			} );
+		}
+		for( Thread thread : threads ) {
+			thread.start();
+		}
+		for( Thread thread : threads ) {
+			thread.join();
+		}
+		assertEquals( 40000, task.getProgress() );
+	}
+
 	@Test
 	public void testSuccess() throws Exception {
 		Task<?> task = new MockTask( manager, 4 * delay );